@@ -0,0 +1,206 @@
+package com.example.userservicemodule.Benchmark;
+
+import com.example.userservicemodule.Controller.AdminUserController;
+import com.example.userservicemodule.Entity.Resource;
+import com.example.userservicemodule.Entity.Role;
+import com.example.userservicemodule.Entity.User;
+import com.example.userservicemodule.Repository.ResourceRepository;
+import com.example.userservicemodule.Repository.RoleRepository;
+import com.example.userservicemodule.Repository.UserRepository;
+import com.example.userservicemodule.Service.AuditLogWriter;
+import com.example.userservicemodule.Service.PasswordHashingService;
+import com.example.userservicemodule.Service.QuotaReservationService;
+import com.example.userservicemodule.Service.UserExportService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Armado de las respuestas de {@code GET /Admin/users} y {@code GET /Admin/resources}: el controlador real
+ * sobre los repositorios de Spring Data contra H2 en memoria. Cada invocación abre su propia sesión de
+ * Hibernate (como open-in-view en una petición), así las cargas perezosas de un N+1 se miden.
+ * El controlador sale del contexto de Spring; los servicios que los listados no usan son stubs.
+ * Al preparar los datos se cuenta cuántas sentencias usa cada listado y falla si es más de una.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdminUserListingBenchmark {
+
+    @Configuration
+    @ImportAutoConfiguration({DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+            TransactionAutoConfiguration.class})
+    @EntityScan("com.example.userservicemodule.Entity")
+    @EnableJpaRepositories("com.example.userservicemodule.Repository")
+    @Import(AdminUserController.class)
+    static class ListingConfig {
+
+        @Bean
+        PasswordHashingService passwordHashingService() {
+            return stub(PasswordHashingService.class);
+        }
+
+        @Bean
+        UserExportService userExportService() {
+            return stub(UserExportService.class);
+        }
+
+        @Bean
+        QuotaReservationService quotaReservationService() {
+            return stub(QuotaReservationService.class);
+        }
+
+        @Bean
+        AuditLogWriter auditLogWriter() {
+            return stub(AuditLogWriter.class);
+        }
+
+        private static <T> T stub(Class<T> type) {
+            return mock(type, withSettings().stubOnly());
+        }
+    }
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate request;
+    private AdminUserController controller;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(ListingConfig.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:listing;MODE=MySQL",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+                        "spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+                        "spring.jpa.properties.hibernate.generate_statistics=true")
+                .run();
+
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        ResourceRepository resourceRepository = context.getBean(ResourceRepository.class);
+        request = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        request.setReadOnly(true);
+        populate(context.getBean(RoleRepository.class), userRepository, resourceRepository);
+
+        controller = context.getBean(AdminUserController.class);
+
+        // Sanidad del arreglo: una fila por elemento y una sola sentencia por listado
+        Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        checkListing("GET /Admin/users", this::getAllUsers, statistics);
+        checkListing("GET /Admin/resources", this::getAllUserResources, statistics);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object getAllUsers() {
+        return request.execute(status -> controller.getAllUsers(null, null).getBody());
+    }
+
+    @Benchmark
+    public Object getAllUserResources() {
+        return request.execute(status -> controller.getAllUserResources().getBody());
+    }
+
+    private void checkListing(String name, Supplier<Object> listing, Statistics statistics) {
+        statistics.clear();
+        Object body = listing.get();
+        if (!(body instanceof List<?> rows) || rows.size() != size) {
+            throw new IllegalStateException(name + " no devolvió " + size + " filas: " + body);
+        }
+        long statements = statistics.getPrepareStatementCount();
+        if (statements != 1) {
+            throw new IllegalStateException(name + " usó " + statements + " sentencias para " + size + " filas (¿N+1?)");
+        }
+    }
+
+    /**
+     * Usuarios con su recurso, con límites y usos aleatorios y semilla fija.
+     */
+    private void populate(RoleRepository roleRepository, UserRepository userRepository,
+                          ResourceRepository resourceRepository) {
+        Random random = new Random(7);
+        Role role = new Role();
+        role.setName("User");
+        role = roleRepository.save(role);
+
+        List<User> users = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            User user = new User();
+            user.setUsername("user" + i + "@pucp.edu.pe");
+            user.setPassword("x");
+            user.setCode(String.valueOf(20_000_000 + i));
+            user.setRole(role);
+            user.setState(i % 17 == 0 ? "0" : "1");
+            user.setName("Nombre" + i);
+            user.setLastname("Apellido" + i);
+            user.setCreatedAt(LocalDateTime.of(2025, 1, 1, 8, 0).plusMinutes(random.nextInt(500_000)));
+            users.add(user);
+        }
+        users = userRepository.saveAll(users);
+
+        List<Resource> resources = new ArrayList<>(size);
+        for (User user : users) {
+            Resource resource = new Resource();
+            resource.setUser(user);
+            resource.setCpu(4 + random.nextInt(60));
+            resource.setRam(4_096 + random.nextInt(60_000));
+            resource.setDisk(BigDecimal.valueOf(50 + random.nextInt(950)));
+            resource.setSlices(1 + random.nextInt(10));
+            if (random.nextInt(5) != 0) {
+                resource.setUsedCpu(random.nextInt(resource.getCpu() + 1));
+                resource.setUsedRam(random.nextInt(resource.getRam() + 1));
+                resource.setUsedDisk(BigDecimal.valueOf(random.nextInt(resource.getDisk().intValue() + 1)));
+                resource.setUsedSlices(random.nextInt(resource.getSlices() + 1));
+            }
+            resources.add(resource);
+        }
+        resourceRepository.saveAll(resources);
+    }
+}
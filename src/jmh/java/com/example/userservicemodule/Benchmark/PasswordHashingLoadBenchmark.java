@@ -0,0 +1,108 @@
+package com.example.userservicemodule.Benchmark;
+
+import com.example.userservicemodule.Config.AdaptivePasswordEncoder;
+import com.example.userservicemodule.Service.PasswordHashingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencia (p50/p99/p99.9 de {@code Mode.SampleTime}) de peticiones livianas y de contraseña bajo carga mixta.
+ * Los hilos de JMH son los clientes: cada uno envía una petición a los hilos de "Tomcat" y espera la respuesta,
+ * así la latencia incluye la espera por un hilo libre. En el grupo {@code mixed} corren a la vez clientes que
+ * codifican contraseñas y clientes de peticiones livianas (E/S de BD simulada con una espera).
+ * <ul>
+ *     <li>{@code threads}: pool de 200 hilos de plataforma, como Tomcat, o un hilo virtual por petición;</li>
+ *     <li>{@code hashing}: BCrypt en el hilo de la petición (comportamiento anterior) o en {@link PasswordHashingService}.</li>
+ * </ul>
+ * Los hilos virtuales requieren Java 21; con una JVM anterior esas combinaciones fallan en el setup:
+ * <pre>
+ * mvn -Pbenchmarks,java21 test-compile exec:exec -Djmh.include=PasswordHashingLoad
+ * </pre>
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Group)
+public class PasswordHashingLoadBenchmark {
+
+    private static final int TOMCAT_THREADS = 200;
+    private static final int BCRYPT_STRENGTH = 10;
+    private static final long LIGHT_IO_MS = 5;
+    private static final String PASSWORD = "Benchmark#2025";
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"inline", "pooled"})
+    public String hashing;
+
+    private ExecutorService requestThreads;
+    private AdaptivePasswordEncoder encoder;
+    private PasswordHashingService hashingService;
+
+    @Setup
+    public void setUp() {
+        encoder = new AdaptivePasswordEncoder(BCRYPT_STRENGTH);
+        hashingService = new PasswordHashingService(encoder, 0, 64, 10_000);
+        requestThreads = "virtual".equals(threads) ? newVirtualThreadExecutor() : Executors.newFixedThreadPool(TOMCAT_THREADS);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        requestThreads.shutdownNow();
+        requestThreads.awaitTermination(10, TimeUnit.SECONDS);
+        hashingService.shutdown();
+    }
+
+    /**
+     * Alta o cambio de contraseña: un hash BCrypt.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(8)
+    public String hash() throws Exception {
+        return requestThreads.submit(() -> "pooled".equals(hashing) ? hashingService.encode(PASSWORD) : encoder.encode(PASSWORD)).get();
+    }
+
+    /**
+     * Petición liviana: una consulta a la BD, simulada con una espera.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(24)
+    public Object light() throws Exception {
+        return requestThreads.submit(() -> {
+            Thread.sleep(LIGHT_IO_MS);
+            return Boolean.TRUE;
+        }).get();
+    }
+
+    /**
+     * {@code Executors.newVirtualThreadPerTaskExecutor()} por reflexión: el proyecto compila para Java 17.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Los hilos virtuales requieren Java 21 (perfil -Pjava21)", e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.userservicemodule.Benchmark;
+
+import com.example.userservicemodule.DTO.Projections.ZoneServerTotalsView;
+import com.example.userservicemodule.DTO.Projections.ZoneSummaryView;
+import com.example.userservicemodule.DTO.Projections.ZoneVmUsageView;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Grafos de entidades y proyecciones generados en memoria para los benchmarks, con semilla fija para que
+ * dos corridas con el mismo tamaño midan exactamente los mismos datos.
+ */
+public final class SyntheticData {
+
+    private SyntheticData() {
+    }
+
+    public static List<ZoneSummaryView> zoneSummaries(int count) {
+        List<ZoneSummaryView> zones = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            int id = i;
+            long slices = (i * 7L) % 50;
+            zones.add(new ZoneSummaryView() {
+                public Integer getId() { return id; }
+                public String getName() { return "zona-" + id; }
+                public String getDescription() { return "Zona de disponibilidad " + id; }
+                public Long getSliceCount() { return slices; }
+            });
+        }
+        return zones;
+    }
+
+    /**
+     * Totales de servidores para nueve de cada diez zonas (las restantes no tienen servidores).
+     */
+    public static List<ZoneServerTotalsView> zoneServerTotals(int zoneCount) {
+        List<ZoneServerTotalsView> totals = new ArrayList<>(zoneCount);
+        for (int i = 1; i <= zoneCount; i++) {
+            if (i % 10 == 0) {
+                continue;
+            }
+            int id = i;
+            long servers = 1 + i % 8;
+            totals.add(new ZoneServerTotalsView() {
+                public Integer getZoneId() { return id; }
+                public Long getServerCount() { return servers; }
+                public Long getTotalVcpu() { return servers * 32; }
+                public Long getTotalRam() { return servers * 131_072; }
+                public Long getTotalDisk() { return servers * 2_000; }
+            });
+        }
+        return totals;
+    }
+
+    /**
+     * Uso de VMs para cuatro de cada cinco zonas.
+     */
+    public static List<ZoneVmUsageView> zoneVmUsage(int zoneCount) {
+        List<ZoneVmUsageView> usage = new ArrayList<>(zoneCount);
+        for (int i = 1; i <= zoneCount; i++) {
+            if (i % 5 == 0) {
+                continue;
+            }
+            int id = i;
+            long vms = 3 + i % 40;
+            usage.add(new ZoneVmUsageView() {
+                public Integer getZoneId() { return id; }
+                public Long getVmCount() { return vms; }
+                public Long getUsedVcpu() { return vms * 2; }
+                public Long getUsedRam() { return vms * 2_048; }
+                public BigDecimal getUsedDisk() { return BigDecimal.valueOf(vms * 20); }
+            });
+        }
+        return usage;
+    }
+
+    /**
+     * Filas con la forma del SELECT nativo de slices: id, nombre, propietario, topología, vCPU, RAM, estado
+     * e ID del propietario.
+     */
+    public static List<Object[]> sliceRows(int count) {
+        Random random = new Random(11);
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            int ownerId = 1 + random.nextInt(500);
+            rows.add(new Object[]{
+                    i,
+                    "slice-" + i,
+                    "Nombre" + ownerId,
+                    random.nextBoolean() ? "lineal" : "anillo",
+                    BigDecimal.valueOf(1 + random.nextInt(32)),
+                    BigDecimal.valueOf(1 + random.nextInt(64)),
+                    random.nextInt(4) == 0 ? "stopped" : "running",
+                    ownerId
+            });
+        }
+        return rows;
+    }
+}
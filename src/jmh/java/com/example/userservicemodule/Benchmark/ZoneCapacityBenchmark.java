@@ -0,0 +1,64 @@
+package com.example.userservicemodule.Benchmark;
+
+import com.example.userservicemodule.DTO.AvailabilityZoneDTO;
+import com.example.userservicemodule.Repository.AvailabilityZoneRepository;
+import com.example.userservicemodule.Repository.PhysicalServerRepository;
+import com.example.userservicemodule.Repository.VirtualMachineRepository;
+import com.example.userservicemodule.Service.AvailabilityZoneService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Combinación de los tres resultados agrupados (zonas, servidores y VMs) en {@code AvailabilityZoneService.getAllZonesDTO}.
+ * Los repositorios son stubs que devuelven los datos sintéticos solo en las tres consultas que usa el método.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ZoneCapacityBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int zones;
+
+    private AvailabilityZoneService service;
+
+    @Setup
+    public void setUp() {
+        var summaries = SyntheticData.zoneSummaries(zones);
+        var serverTotals = SyntheticData.zoneServerTotals(zones);
+        var vmUsage = SyntheticData.zoneVmUsage(zones);
+
+        AvailabilityZoneRepository zoneRepository = mock(AvailabilityZoneRepository.class, withSettings().stubOnly());
+        when(zoneRepository.findAllSummaries()).thenReturn(summaries);
+        VirtualMachineRepository vmRepository = mock(VirtualMachineRepository.class, withSettings().stubOnly());
+        when(vmRepository.sumUsageByZone()).thenReturn(vmUsage);
+        PhysicalServerRepository serverRepository = mock(PhysicalServerRepository.class, withSettings().stubOnly());
+        when(serverRepository.sumCapacityByZone()).thenReturn(serverTotals);
+
+        service = new AvailabilityZoneService(zoneRepository, vmRepository, serverRepository, null);
+    }
+
+    @Benchmark
+    public List<AvailabilityZoneDTO> getAllZonesDTO() {
+        return service.getAllZonesDTO();
+    }
+}
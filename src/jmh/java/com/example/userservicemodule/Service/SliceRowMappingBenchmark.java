@@ -0,0 +1,50 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.Benchmark.SyntheticData;
+import com.example.userservicemodule.DTO.Slices.SliceSummaryDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapeo de filas del listado de slices ({@code SliceService.mapRow}) sobre filas sintéticas con la forma del SELECT nativo.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SliceRowMappingBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private List<Object[]> rows;
+
+    @Setup
+    public void setUp() {
+        rows = SyntheticData.sliceRows(size);
+    }
+
+    @Benchmark
+    public List<SliceSummaryDTO> mapRows() {
+        List<SliceSummaryDTO> slices = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            slices.add(SliceService.mapRow(row));
+        }
+        return slices;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.userservicemodule.BeansRequest;
+
+import com.example.userservicemodule.Beans.ImageRequest;
+import lombok.Data;
+
+/**
+ * Inicio de una subida de imagen por partes.
+ */
+@Data
+public class ChunkedUploadRequest {
+    private ImageRequest imageData;
+    private String filename;
+    private Long totalSize;    // Tamaño total del archivo en bytes
+    private Integer chunkSize; // Tamaño de cada parte en bytes (la última puede ser menor); opcional
+}
@@ -0,0 +1,34 @@
+package com.example.userservicemodule.BeansRequest;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Recursos requeridos para una operación (reserva o verificación de cuota).
+ * Los campos no enviados se consideran 0.
+ */
+@Data
+public class ResourceRequirementRequest {
+    private Integer userId;  // Solo se usa en operaciones por lote; en el resto viene en la ruta
+    private Integer cpu;
+    private Integer ram;
+    private BigDecimal disk;
+    private Integer slices;
+
+    public int cpuOrZero() {
+        return cpu != null ? cpu : 0;
+    }
+
+    public int ramOrZero() {
+        return ram != null ? ram : 0;
+    }
+
+    public BigDecimal diskOrZero() {
+        return disk != null ? disk : BigDecimal.ZERO;
+    }
+
+    public int slicesOrZero() {
+        return slices != null ? slices : 0;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.userservicemodule.Config;
+
+import com.example.userservicemodule.Util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Codificador de contraseñas que delega en BCrypt con un costo fijado al arranque (configurado o calibrado
+ * para el hardware) y registra el tiempo de cada hash. Los hashes guardados con un costo menor se verifican
+ * igual (BCrypt lee el costo del propio hash) y {@link #upgradeEncoding(String)} indica que deben rehacerse.
+ * <p>
+ * Los hashes se guardan sin prefijo {@code {bcrypt}}: la tabla de usuarios la leen otros módulos con BCrypt plano.
+ */
+@Slf4j
+public class AdaptivePasswordEncoder implements PasswordEncoder {
+
+    private static final String CALIBRATION_PASSWORD = "calibracion-bcrypt";
+
+    private final BCryptPasswordEncoder delegate;
+    private final int strength;
+    private final LatencyHistogram encodeTimes = new LatencyHistogram();
+    private final LatencyHistogram matchTimes = new LatencyHistogram();
+    private final LongAdder upgradesRequested = new LongAdder();
+
+    public AdaptivePasswordEncoder(int strength) {
+        this.strength = strength;
+        this.delegate = new BCryptPasswordEncoder(strength);
+    }
+
+    /**
+     * Elige el mayor costo entre {@code minStrength} y {@code maxStrength} cuyo hash no supere {@code targetMs}.
+     * Mide el costo mínimo (mejor de tres, tras un calentamiento) y extrapola: cada punto de costo duplica el tiempo.
+     */
+    public static int calibrate(long targetMs, int minStrength, int maxStrength) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(minStrength);
+        probe.encode(CALIBRATION_PASSWORD);
+
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            probe.encode(CALIBRATION_PASSWORD);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+
+        double measuredMs = Math.max(bestNanos / 1_000_000.0, 0.001);
+        int strength = minStrength;
+        double estimatedMs = measuredMs;
+        while (strength < maxStrength && estimatedMs * 2 <= targetMs) {
+            strength++;
+            estimatedMs *= 2;
+        }
+        log.info("BCrypt calibrado: costo {} (~{} ms por hash; costo {} midió {} ms, objetivo {} ms)",
+                strength, Math.round(estimatedMs), minStrength, Math.round(measuredMs), targetMs);
+        return strength;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        long start = System.nanoTime();
+        try {
+            return delegate.encode(rawPassword);
+        } finally {
+            encodeTimes.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        long start = System.nanoTime();
+        try {
+            return delegate.matches(rawPassword, encodedPassword);
+        } finally {
+            matchTimes.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Verdadero si el hash se generó con un costo menor al actual y conviene rehacerlo tras verificarlo.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+        boolean upgrade = delegate.upgradeEncoding(encodedPassword);
+        if (upgrade) {
+            upgradesRequested.increment();
+        }
+        return upgrade;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    /**
+     * Costo vigente, histogramas de tiempo de encode/matches y cantidad de hashes marcados para rehacer.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("bcryptStrength", strength);
+        stats.put("encode", encodeTimes.snapshot());
+        stats.put("matches", matchTimes.snapshot());
+        stats.put("upgradesRequested", upgradesRequested.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.userservicemodule.Config;
+
+import com.example.userservicemodule.Beans.ErrorResponse;
+import com.example.userservicemodule.Entity.User;
+import com.example.userservicemodule.Repository.UserRepository;
+import com.example.userservicemodule.Service.AuditLogWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Exige y valida el administrador que realiza una mutación auditada. La cabecera
+ * {@value AuditLogWriter#ACTOR_HEADER} debe traer el ID de un usuario existente y activo; si falta o no es
+ * válida, la petición se rechaza con 400 antes de llegar al controlador. El actor validado queda en el
+ * atributo {@value AuditLogWriter#ACTOR_ATTRIBUTE}, de donde lo toma {@link AuditLogWriter}.
+ */
+@Component
+@Slf4j
+public class AuditActorInterceptor implements HandlerInterceptor {
+
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+
+    public AuditActorInterceptor(UserRepository userRepository, ObjectMapper objectMapper) {
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod())
+                || HttpMethod.OPTIONS.matches(request.getMethod())) {
+            return true;
+        }
+
+        String header = request.getHeader(AuditLogWriter.ACTOR_HEADER);
+        if (header == null || header.isBlank()) {
+            return reject(request, response, "MISSING_ACTOR", "La cabecera " + AuditLogWriter.ACTOR_HEADER + " es obligatoria");
+        }
+
+        Optional<User> actor;
+        try {
+            actor = userRepository.findById(Integer.valueOf(header.trim()));
+        } catch (NumberFormatException e) {
+            return reject(request, response, "INVALID_ACTOR", "La cabecera " + AuditLogWriter.ACTOR_HEADER + " debe ser el ID de un usuario");
+        }
+        if (actor.isEmpty() || !"1".equals(actor.get().getState())) {
+            return reject(request, response, "INVALID_ACTOR", "La cabecera " + AuditLogWriter.ACTOR_HEADER + " no corresponde a un usuario activo");
+        }
+
+        request.setAttribute(AuditLogWriter.ACTOR_ATTRIBUTE,
+                new AuditLogWriter.Actor(actor.get().getId(), actor.get().getUsername()));
+        return true;
+    }
+
+    private boolean reject(HttpServletRequest request, HttpServletResponse response, String code, String message) throws IOException {
+        log.warn("Mutación auditada rechazada ({} {}): {}", request.getMethod(), request.getRequestURI(), message);
+        response.setStatus(HttpStatus.BAD_REQUEST.value());
+        response.setHeader("X-Error-Type", "VALIDATION_ERROR");
+        response.setHeader("X-Error-Code", code);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorResponse(message));
+        return false;
+    }
+}
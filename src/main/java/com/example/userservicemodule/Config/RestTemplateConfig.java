@@ -1,10 +1,12 @@
 package com.example.userservicemodule.Config;
 
 import io.swagger.v3.oas.models.ExternalDocumentation;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.servers.Server;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.info.Info;
@@ -23,11 +25,12 @@ public class RestTemplateConfig {
      * Proporciona una instancia de RestTemplate para realizar peticiones HTTP
      * a otros microservicios a través del API Gateway.
      *
+     * @param httpClient Cliente HTTP compartido con pool de conexiones
      * @return Instancia de RestTemplate
      */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(CloseableHttpClient httpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
     }
 
 
@@ -1,15 +1,24 @@
 package com.example.userservicemodule.Config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 
 @Configuration
 public class SecurityConfig {
 
+    /**
+     * BCrypt con costo fijo ({@code security.password.bcrypt-strength}) o, si es 0, calibrado al arranque
+     * para que un hash tome cerca de {@code security.password.target-hash-ms} en este hardware.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public AdaptivePasswordEncoder passwordEncoder(@Value("${security.password.bcrypt-strength:0}") int strength,
+                                                   @Value("${security.password.target-hash-ms:100}") long targetHashMs,
+                                                   @Value("${security.password.min-strength:10}") int minStrength,
+                                                   @Value("${security.password.max-strength:14}") int maxStrength) {
+        if (strength > 0) {
+            return new AdaptivePasswordEncoder(strength);
+        }
+        return new AdaptivePasswordEncoder(AdaptivePasswordEncoder.calibrate(targetHashMs, minStrength, maxStrength));
     }
 }
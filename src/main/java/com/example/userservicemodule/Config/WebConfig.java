@@ -0,0 +1,38 @@
+package com.example.userservicemodule.Config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final AuditActorInterceptor auditActorInterceptor;
+
+    public WebConfig(AuditActorInterceptor auditActorInterceptor) {
+        this.auditActorInterceptor = auditActorInterceptor;
+    }
+
+    /**
+     * Mutaciones administrativas que quedan en la auditoría: requieren un actor válido.
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(auditActorInterceptor).addPathPatterns(
+                "/Admin/createUser",
+                "/Admin/updateUser/*",
+                "/Admin/deleteUser/*",
+                "/Admin/banUser/*",
+                "/Admin/unbanUser/*",
+                "/Admin/user/*/resources",
+                "/Admin/user/*/resources/init",
+                "/Admin/flavors/create",
+                "/Admin/flavors/update/*",
+                "/Admin/flavors/delete/*",
+                "/Admin/images/create",
+                "/Admin/images/create/stream",
+                "/Admin/images/uploads/*/complete",
+                "/Admin/images/update/*",
+                "/Admin/images/delete/*");
+    }
+}
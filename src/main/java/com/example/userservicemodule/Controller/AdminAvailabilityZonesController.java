@@ -3,9 +3,13 @@ package com.example.userservicemodule.Controller;
 import com.example.userservicemodule.DTO.AvailabilityZoneDTO;
 import com.example.userservicemodule.DTO.ZoneDetails.ZoneDetailDTO;
 import com.example.userservicemodule.Entity.AvailabilityZone;
+import com.example.userservicemodule.Events.CapacityChangedEvent;
 import com.example.userservicemodule.Service.AvailabilityZoneService;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -16,15 +20,35 @@ import java.util.List;
 public class AdminAvailabilityZonesController {
 
     private final AvailabilityZoneService availabilityZoneService;
+    private final ApplicationEventPublisher eventPublisher;
 
 
-    public AdminAvailabilityZonesController(AvailabilityZoneService availabilityZoneService) {
+    public AdminAvailabilityZonesController(AvailabilityZoneService availabilityZoneService,
+                                            ApplicationEventPublisher eventPublisher) {
         this.availabilityZoneService = availabilityZoneService;
+        this.eventPublisher = eventPublisher;
     }
 
+    /**
+     * Capacidad de todas las zonas, servida desde una foto en caché.
+     * La cabecera X-Snapshot-Age indica la antigüedad de la foto en segundos.
+     */
     @GetMapping("/all_zones")
-    public List<AvailabilityZoneDTO> getAllAvailabilityZones() {
-        return availabilityZoneService.getAllZonesDTO();
+    public ResponseEntity<List<AvailabilityZoneDTO>> getAllAvailabilityZones() {
+        AvailabilityZoneService.ZoneCapacitySnapshot snapshot = availabilityZoneService.getZonesSnapshot();
+        return ResponseEntity.ok()
+                .header("X-Snapshot-Age", String.valueOf(snapshot.getAge().toSeconds()))
+                .body(snapshot.getZones());
+    }
+
+    /**
+     * Invalida la foto de capacidad. Lo usan los servicios que crean o eliminan VMs para que el
+     * siguiente listado refleje el cambio sin esperar al refresco periódico.
+     */
+    @PostMapping("/capacity/invalidate")
+    public ResponseEntity<Void> invalidateCapacity() {
+        eventPublisher.publishEvent(new CapacityChangedEvent(null, "invalidación externa"));
+        return ResponseEntity.noContent().build();
     }
 
     @GetMapping("/zone_service/{id}")
@@ -0,0 +1,59 @@
+package com.example.userservicemodule.Controller;
+
+import com.example.userservicemodule.Config.AdaptivePasswordEncoder;
+import com.example.userservicemodule.Service.AuditLogWriter;
+import com.example.userservicemodule.Service.HttpPoolMetrics;
+import com.example.userservicemodule.Service.PasswordHashingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@Slf4j
+@RequestMapping("/Admin/diagnostics")
+public class AdminDiagnosticsController {
+
+    @Autowired
+    private HttpPoolMetrics httpPoolMetrics;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private AdaptivePasswordEncoder passwordEncoder;
+
+    @Autowired
+    private AuditLogWriter auditLogWriter;
+
+    /**
+     * Ocupación del pool de conexiones HTTP salientes (Feign, RestTemplate y subidas al almacenamiento).
+     */
+    @GetMapping("/http-pool")
+    public ResponseEntity<?> getHttpPoolStats() {
+        return ResponseEntity.ok(httpPoolMetrics.snapshot());
+    }
+
+    /**
+     * Ocupación del pool de hash de contraseñas, costo BCrypt vigente e histogramas de tiempo por hash.
+     */
+    @GetMapping("/password-hashing")
+    public ResponseEntity<?> getPasswordHashingStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(passwordHashingService.stats());
+        stats.put("encoder", passwordEncoder.stats());
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Buffer de auditoría: ocupación, eventos escritos, descartados por buffer lleno y tiempos por lote.
+     */
+    @GetMapping("/audit-log")
+    public ResponseEntity<?> getAuditLogStats() {
+        return ResponseEntity.ok(auditLogWriter.stats());
+    }
+}
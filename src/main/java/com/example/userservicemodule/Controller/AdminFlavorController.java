@@ -2,11 +2,12 @@ package com.example.userservicemodule.Controller;
 
 import com.example.userservicemodule.Beans.ErrorResponse;
 import com.example.userservicemodule.BeansRequest.FlavorRequest;
+import com.example.userservicemodule.DTO.Projections.FlavorUsageView;
 import com.example.userservicemodule.Entity.Flavor;
 import com.example.userservicemodule.Entity.User;
-import com.example.userservicemodule.Entity.VirtualMachine;
 import com.example.userservicemodule.Repository.FlavorRepository;
 import com.example.userservicemodule.Repository.UserRepository;
+import com.example.userservicemodule.Service.AuditLogWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -26,6 +27,8 @@ public class AdminFlavorController {
     FlavorRepository flavorRepository;
     @Autowired
     UserRepository userRepository;
+    @Autowired
+    AuditLogWriter auditLogWriter;
 
     //METODOS PARA FLAVORS
     @GetMapping("/flavors/list/{userId}")
@@ -61,10 +64,10 @@ public class AdminFlavorController {
 
         try {
             // Obtener los flavors del usuario
-            List<Flavor> flavors = flavorRepository.findFlavorsByUserId(userId);
+            List<FlavorUsageView> flavors = flavorRepository.findFlavorUsageByUserId(userId);
             LinkedHashMap<String , Object > json = new LinkedHashMap<>();
             ArrayList<LinkedHashMap<String , Object >> content =  new ArrayList<>();
-            for(Flavor f : flavors){
+            for(FlavorUsageView f : flavors){
                 if(f.getState().equals("active")){
                     LinkedHashMap<String , Object > jsonContent = new LinkedHashMap<>();
                     jsonContent.put("idFlavor" , f.getId());
@@ -73,13 +76,8 @@ public class AdminFlavorController {
                     jsonContent.put("vcpu" , f.getVcpu());
                     jsonContent.put("disk" , f.getDisk());
                     jsonContent.put("type" , f.getType());
-                    Integer count = 0 ;
-                    for(VirtualMachine vm  : f.getVirtualMachines()){
-                        if(vm.getStatus().equals("running")){
-                           count =  count +1 ;
-                        }
-                    }
-                    jsonContent.put("state" ,! (count>0)  );
+                    // Editable/eliminable solo si no tiene VMs en ejecución
+                    jsonContent.put("state" , f.getRunningVms() == 0);
                     content.add(jsonContent);
                 }
             }
@@ -297,6 +295,7 @@ public class AdminFlavorController {
             log.info("Successfully created {} flavor with ID: {}",
                     savedFlavor.getType(),
                     savedFlavor.getId());
+            auditLogWriter.record("flavor_creation", "Flavor created: " + savedFlavor.getName());
 
             return ResponseEntity
                     .status(HttpStatus.CREATED)
@@ -354,19 +353,20 @@ public class AdminFlavorController {
             Flavor flavor = flavorOptional.get();
 
             // Verificar si el flavor está siendo utilizado por alguna máquina virtual
-            if (flavor.getVirtualMachines() != null && !flavor.getVirtualMachines().isEmpty()) {
+            long vmCount = flavorRepository.countVirtualMachinesByFlavorId(flavorId);
+            if (vmCount > 0) {
                 headers.add("X-Error-Type", "BUSINESS_ERROR");
                 headers.add("X-Error-Code", "FLAVOR_IN_USE");
-                headers.add("X-VMs-Count", String.valueOf(flavor.getVirtualMachines().size()));
+                headers.add("X-VMs-Count", String.valueOf(vmCount));
 
                 log.error("Business error: Cannot delete flavor with ID: {} because it is being used by {} virtual machines",
-                        flavorId, flavor.getVirtualMachines().size());
+                        flavorId, vmCount);
 
                 return ResponseEntity
                         .status(HttpStatus.CONFLICT)
                         .headers(headers)
                         .body(new ErrorResponse("Cannot delete flavor because it is being used by " +
-                                flavor.getVirtualMachines().size() + " virtual machine(s)"));
+                                vmCount + " virtual machine(s)"));
             }
 
             // Si el flavor no está siendo utilizado, proceder con la eliminación
@@ -374,6 +374,7 @@ public class AdminFlavorController {
             flavorRepository.save(flavor);
 
             log.info("Successfully deleted flavor with ID: {}", flavorId);
+            auditLogWriter.record("flavor_deletion", "Flavor deleted: " + flavor.getName());
 
             headers.add("X-Resource-Id", String.valueOf(flavorId));
             headers.add("X-Resource-Type", "flavor");
@@ -491,19 +492,20 @@ public class AdminFlavorController {
             }
 
             // Verificar si el flavor está siendo utilizado por alguna máquina virtual
-            if (flavor.getVirtualMachines() != null && !flavor.getVirtualMachines().isEmpty()) {
+            long vmCount = flavorRepository.countVirtualMachinesByFlavorId(flavorId);
+            if (vmCount > 0) {
                 headers.add("X-Error-Type", "BUSINESS_ERROR");
                 headers.add("X-Error-Code", "FLAVOR_IN_USE");
-                headers.add("X-VMs-Count", String.valueOf(flavor.getVirtualMachines().size()));
+                headers.add("X-VMs-Count", String.valueOf(vmCount));
 
                 log.error("Business error: Cannot update flavor with ID: {} because it is being used by {} virtual machines",
-                        flavorId, flavor.getVirtualMachines().size());
+                        flavorId, vmCount);
 
                 return ResponseEntity
                         .status(HttpStatus.CONFLICT)
                         .headers(headers)
                         .body(new ErrorResponse("Cannot update flavor because it is being used by " +
-                                flavor.getVirtualMachines().size() + " virtual machine(s)"));
+                                vmCount + " virtual machine(s)"));
             }
 
             // Validar los datos de entrada básicos
@@ -630,6 +632,7 @@ public class AdminFlavorController {
             headers.add("X-Operation-Result", "UPDATED");
 
             log.info("Successfully updated flavor with ID: {}", updatedFlavor.getId());
+            auditLogWriter.record("flavor_update", "Flavor updated: " + updatedFlavor.getName());
 
             return ResponseEntity
                     .ok()
@@ -2,19 +2,25 @@ package com.example.userservicemodule.Controller;
 
 import com.example.userservicemodule.Beans.ErrorResponse;
 import com.example.userservicemodule.Beans.ImageRequest;
+import com.example.userservicemodule.BeansRequest.ChunkedUploadRequest;
+import com.example.userservicemodule.DTO.Projections.ImageUsageView;
 import com.example.userservicemodule.Entity.Image;
 import com.example.userservicemodule.Entity.User;
-import com.example.userservicemodule.Entity.VirtualMachine;
 import com.example.userservicemodule.Repository.ImageRepository;
 import com.example.userservicemodule.Repository.UserRepository;
 import com.example.userservicemodule.Repository.VirtualMachineRepository;
+import com.example.userservicemodule.Service.AuditLogWriter;
+import com.example.userservicemodule.Service.ChunkedUploadService;
+import com.example.userservicemodule.Service.ImageIngestService;
+import com.example.userservicemodule.Service.ImageService;
+import com.example.userservicemodule.Service.ServiceInstanceResolver;
 import com.example.userservicemodule.Service.StorageFeignService;
+import com.example.userservicemodule.Service.StorageStreamClient;
+import com.example.userservicemodule.Service.UploadMetrics;
+import com.example.userservicemodule.Util.ContentHash;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.netflix.appinfo.InstanceInfo;
-import com.netflix.discovery.EurekaClient;
-import com.netflix.discovery.shared.Application;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -26,14 +32,11 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
-import java.math.BigDecimal;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @Slf4j
@@ -50,6 +53,27 @@ public class AdminImageController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private StorageStreamClient storageStreamClient;
+
+    @Autowired
+    private UploadMetrics uploadMetrics;
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    private ServiceInstanceResolver serviceInstanceResolver;
+
+    @Autowired
+    private AuditLogWriter auditLogWriter;
+
+    @Autowired
+    private ImageIngestService imageIngestService;
+
 
 
     @GetMapping("/images/list/{userId}")
@@ -89,6 +113,20 @@ public class AdminImageController {
             LinkedHashMap<String, Object> json = new LinkedHashMap<>();
             ArrayList<LinkedHashMap<String, Object>> content = new ArrayList<>();
 
+            // Uso de las imágenes activas en una sola consulta agrupada
+            List<Integer> activeImageIds = new ArrayList<>();
+            for (Image img : images) {
+                if (img.getState().equals("active")) {
+                    activeImageIds.add(img.getId());
+                }
+            }
+            Map<Integer, Long> vmCountByImage = new HashMap<>();
+            if (!activeImageIds.isEmpty()) {
+                for (ImageUsageView usage : virtualMachineRepository.countByImageIds(activeImageIds)) {
+                    vmCountByImage.put(usage.getImageId(), usage.getVmCount());
+                }
+            }
+
             for (Image img : images) {
                 if (img.getState().equals("active")) {
                     LinkedHashMap<String, Object> jsonContent = new LinkedHashMap<>();
@@ -102,17 +140,8 @@ public class AdminImageController {
                     jsonContent.put("disco", img.getDisco());
                     jsonContent.put("size", img.getSize());
                     jsonContent.put("description" , img.getDescription());
-                    Integer count = 0;
-                    for(VirtualMachine vm : virtualMachineRepository.findAll()){
-                        if(vm.getImage().getId() ==  img.getId()){
-                            count =  count + 1 ;
-                        }
-                    }
-                    if(count>0){
-                        jsonContent.put("show" , false);
-                    }else{
-                        jsonContent.put("show" , true);
-                    }
+                    // show = true solo si ninguna VM usa la imagen
+                    jsonContent.put("show", vmCountByImage.getOrDefault(img.getId(), 0L) == 0L);
                     content.add(jsonContent);
                 }
             }
@@ -154,81 +183,27 @@ public class AdminImageController {
 
     @PostMapping(value = "/images/create", consumes = {MediaType.MULTIPART_FORM_DATA_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
     public ResponseEntity<?> createImage(@RequestPart("imageData") ImageRequest imageRequest,
-                                         @RequestPart(value = "file", required = false) MultipartFile file) {
+                                         @RequestPart(value = "file", required = false) MultipartFile file,
+                                         @RequestParam(value = "async", defaultValue = "false") boolean async) {
         // Crear un objeto para las cabeceras HTTP personalizadas
         HttpHeaders headers = new HttpHeaders();
 
         try {
             // Validar los datos de entrada básicos
-            if (imageRequest.getName() == null || imageRequest.getName().trim().isEmpty()) {
-                headers.add("X-Error-Type", "VALIDATION_ERROR");
-                headers.add("X-Error-Code", "IMAGE_NAME_REQUIRED");
-
-                log.error("Validation error: Image name is required");
-
-                return ResponseEntity
-                        .badRequest()
-                        .headers(headers)
-                        .body(new ErrorResponse("Image name is required"));
-            }
-
-            // Validar que el campo type esté presente y sea "public" o "private"
-            if (imageRequest.getType() == null || imageRequest.getType().trim().isEmpty()) {
-                headers.add("X-Error-Type", "VALIDATION_ERROR");
-                headers.add("X-Error-Code", "IMAGE_TYPE_REQUIRED");
-
-                log.error("Validation error: Image type is required");
-
-                return ResponseEntity
-                        .badRequest()
-                        .headers(headers)
-                        .body(new ErrorResponse("Image type is required"));
-            }
-
-            // Validar que el tipo sea "public" o "private"
-            String type = imageRequest.getType().trim().toLowerCase();
-            if (!type.equals("public") && !type.equals("private")) {
-                headers.add("X-Error-Type", "VALIDATION_ERROR");
-                headers.add("X-Error-Code", "INVALID_IMAGE_TYPE");
-
-                log.error("Validation error: Invalid image type: {}. Must be 'public' or 'private'", imageRequest.getType());
-
-                return ResponseEntity
-                        .badRequest()
-                        .headers(headers)
-                        .body(new ErrorResponse("Invalid image type. Must be 'public' or 'private'"));
-            }
-
-            // Validar la consistencia de los datos según sea public o private
-            boolean isPublic = "public".equals(type);
-
-            if (!isPublic && imageRequest.getUserId() == null) {
-                headers.add("X-Error-Type", "VALIDATION_ERROR");
-                headers.add("X-Error-Code", "USER_ID_REQUIRED_FOR_PRIVATE");
-
-                log.error("Validation error: userId is required for private images");
-
-                return ResponseEntity
-                        .badRequest()
-                        .headers(headers)
-                        .body(new ErrorResponse("For private images, userId is required"));
+            Optional<ImageService.ValidationError> validationError = imageService.validate(imageRequest);
+            if (validationError.isPresent()) {
+                return validationErrorResponse(headers, validationError.get());
             }
 
-            if (isPublic && imageRequest.getUserId() != null) {
-                headers.add("X-Error-Type", "VALIDATION_ERROR");
-                headers.add("X-Error-Code", "USER_ID_NOT_ALLOWED_FOR_PUBLIC");
-
-                log.error("Validation error: userId should not be provided for public images");
-
-                return ResponseEntity
-                        .badRequest()
-                        .headers(headers)
-                        .body(new ErrorResponse("For public images, userId should not be provided"));
+            if (async) {
+                return submitIngestJob(headers, imageRequest, file);
             }
 
             // Procesar el archivo de imagen si está presente
             String savedFilename = null;
             String fileUrl = null;
+            String contentHash = null;
+            boolean deduplicated = false;
 
             if (file != null && !file.isEmpty()) {
                 // Validar tipo de archivo (solo permitir formatos de imagen)
@@ -243,103 +218,357 @@ public class AdminImageController {
                             .body(new ErrorResponse("Invalid file type. Only image files are allowed."));
                 }
 
-                try {
-                    // Usar Feign Client para subir el archivo al servicio de almacenamiento
-                    Object uploadResponse = createImage(file);
+                // El multipart ya está en disco local: calcular el digest antes de transferirlo permite
+                // reutilizar un archivo idéntico ya almacenado
+                try (InputStream content = file.getInputStream()) {
+                    contentHash = ContentHash.of(content);
+                }
+                Optional<Image> existing = imageService.findByContentHash(contentHash);
 
-                    // Extraer la información necesaria del resultado (asumiendo estructura LinkedHashMap)
-                    if (uploadResponse instanceof LinkedHashMap) {
-                        LinkedHashMap<String, Object> responseMap = (LinkedHashMap<String, Object>) uploadResponse;
-                        savedFilename = (String) responseMap.get("savedFilename");
-                        fileUrl = (String) responseMap.get("fileUrl");
+                if (existing.isPresent()) {
+                    savedFilename = imageService.storedFilename(existing.get());
+                    deduplicated = true;
+                    log.info("File content already stored by image ID: {}, reusing {}", existing.get().getId(), savedFilename);
+                } else {
+                    try (InputStream content = file.getInputStream()) {
+                        Map<String, Object> uploadResponse = storageStreamClient.upload(
+                                file.getOriginalFilename(), contentType, content, file.getSize());
+                        savedFilename = (String) uploadResponse.get("savedFilename");
+                        fileUrl = (String) uploadResponse.get("fileUrl");
 
                         log.info("File uploaded successfully to storage service. Saved filename: {}", savedFilename);
-                    } else {
-                        log.warn("Unexpected response format from storage service: {}", uploadResponse);
-                        // Manejar respuesta no esperada
-                        savedFilename = UUID.randomUUID().toString(); // Fallback
+                    } catch (Exception e) {
+                        log.error("Error uploading file to storage service", e);
+                        headers.add("X-Error-Type", "SERVER_ERROR");
+                        headers.add("X-Error-Code", "STORAGE_SERVICE_ERROR");
+                        return ResponseEntity
+                                .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                .headers(headers)
+                                .body(new ErrorResponse("Error uploading file to storage service: " + e.getMessage()));
                     }
-                } catch (Exception e) {
-                    log.error("Error uploading file to storage service", e);
-                    headers.add("X-Error-Type", "SERVER_ERROR");
-                    headers.add("X-Error-Code", "STORAGE_SERVICE_ERROR");
-                    return ResponseEntity
-                            .status(HttpStatus.INTERNAL_SERVER_ERROR)
-                            .headers(headers)
-                            .body(new ErrorResponse("Error uploading file to storage service: " + e.getMessage()));
                 }
             }
 
-            // Crear un nuevo objeto Image
-            Image image = new Image();
-            image.setName(imageRequest.getName());
-            image.setPath("images/" + savedFilename); // Guardamos el nombre del archivo generado por el servicio
-            image.setType(imageRequest.getType().toLowerCase().trim());
-            image.setState("active");
-            image.setDisco((new BigDecimal(imageRequest.getDisco().replace(" GB" , ""))));
-            image.setDescription(imageRequest.getDescription());
-            image.setSo(imageRequest.getOs());
-            image.setSize(imageRequest.getImageSize());
-            image.setVersion(imageRequest.getVersion());
-            // Asignar usuario según el tipo de imagen
-            if (!isPublic) {
-                // Buscar el usuario por ID
-                User user = userRepository.findById(imageRequest.getUserId())
-                        .orElse(null);
-
-                if (user == null) {
-                    headers.add("X-Error-Type", "RESOURCE_ERROR");
-                    headers.add("X-Error-Code", "USER_NOT_FOUND");
-                    log.error("Resource error: User not found with ID: {}", imageRequest.getUserId());
-                    return ResponseEntity
-                            .status(HttpStatus.NOT_FOUND)
-                            .headers(headers)
-                            .body(new ErrorResponse("User not found with ID: " + imageRequest.getUserId()));
-                }
+            return registerImage(headers, imageRequest, savedFilename, fileUrl, contentHash, deduplicated);
+
+        } catch (Exception e) {
+            headers.add("X-Error-Type", "SERVER_ERROR");
+            headers.add("X-Error-Code", "DATABASE_ERROR");
+            log.error("Error creating image: {}", e.getMessage(), e);
+            return ResponseEntity
+                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .headers(headers)
+                    .body(new ErrorResponse("Error creating image: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Crea una imagen reenviando el cuerpo de la petición (application/octet-stream) directamente al
+     * servicio de almacenamiento, sin pasar por el parseo multipart ni guardarlo en un archivo temporal.
+     * Los datos de la imagen van como parámetros de la URL. El SHA-256 se calcula sobre los bytes recibidos
+     * durante la transferencia; si ya existe una imagen con ese contenido, se descarta la copia recién subida y
+     * se reutiliza su archivo. X-Content-SHA256 es opcional y solo sirve para verificar la integridad: si no
+     * coincide con lo recibido se responde 422.
+     */
+    @PostMapping(value = "/images/create/stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> createImageStream(@RequestParam("name") String name,
+                                               @RequestParam("type") String type,
+                                               @RequestParam(value = "userId", required = false) Integer userId,
+                                               @RequestParam("disco") String disco,
+                                               @RequestParam(value = "description", required = false) String description,
+                                               @RequestParam(value = "version", required = false) String version,
+                                               @RequestParam(value = "os", required = false) String os,
+                                               @RequestParam(value = "imageSize", required = false) Integer imageSize,
+                                               @RequestParam("filename") String filename,
+                                               @RequestHeader(value = "X-Content-SHA256", required = false) String declaredHash,
+                                               HttpServletRequest request) {
+        HttpHeaders headers = new HttpHeaders();
 
-                // Asignar el usuario a la imagen
-                image.setUser(user);
-                log.info("Creating private image assigned to user ID: {}", user.getId());
-            } else {
-                // Es una imagen pública (sin usuario asignado)
-                image.setUser(null);
-                log.info("Creating public image (no user assigned)");
+        ImageRequest imageRequest = new ImageRequest();
+        imageRequest.setName(name);
+        imageRequest.setType(type);
+        imageRequest.setUserId(userId);
+        imageRequest.setDisco(disco);
+        imageRequest.setDescription(description);
+        imageRequest.setVersion(version);
+        imageRequest.setOs(os);
+        imageRequest.setImageSize(imageSize);
+
+        try {
+            Optional<ImageService.ValidationError> validationError = imageService.validate(imageRequest);
+            if (validationError.isPresent()) {
+                return validationErrorResponse(headers, validationError.get());
             }
 
-            // Guardar la imagen en la base de datos
-            Image savedImage = imageRepository.save(image);
+            // Verificar el usuario antes de transferir el archivo
+            if (userId != null && !userRepository.existsById(userId)) {
+                headers.add("X-Error-Type", "RESOURCE_ERROR");
+                headers.add("X-Error-Code", "USER_NOT_FOUND");
+                log.error("Resource error: User not found with ID: {}", userId);
+                return ResponseEntity
+                        .status(HttpStatus.NOT_FOUND)
+                        .headers(headers)
+                        .body(new ErrorResponse("User not found with ID: " + userId));
+            }
 
-            // Crear la respuesta con los datos de la imagen creada
-            LinkedHashMap<String, Object> json = new LinkedHashMap<>();
-            LinkedHashMap<String, Object> content = new LinkedHashMap<>();
+            String expectedHash = ContentHash.normalize(declaredHash);
+            if (declaredHash != null && expectedHash == null) {
+                headers.add("X-Error-Type", "VALIDATION_ERROR");
+                headers.add("X-Error-Code", "INVALID_CONTENT_HASH");
+                log.error("Validation error: X-Content-SHA256 is not a hex SHA-256 digest");
+                return ResponseEntity
+                        .badRequest()
+                        .headers(headers)
+                        .body(new ErrorResponse("X-Content-SHA256 must be a hex-encoded SHA-256 digest"));
+            }
 
-            content.put("idImage", savedImage.getId());
-            content.put("name", savedImage.getName());
-            content.put("path", savedImage.getPath());
-            content.put("type", savedImage.getType());
-            content.put("state", savedImage.getState());
-            content.put("fileUrl", fileUrl); // Incluir la URL del archivo
+            // La deduplicación solo se decide con el digest calculado; el declarado no es confiable
+            String savedFilename;
+            String fileUrl;
+            String contentHash;
+            try {
+                Map<String, Object> uploadResponse = storageStreamClient.upload(
+                        filename, MediaType.APPLICATION_OCTET_STREAM_VALUE,
+                        request.getInputStream(), request.getContentLengthLong());
+                savedFilename = (String) uploadResponse.get("savedFilename");
+                fileUrl = (String) uploadResponse.get("fileUrl");
+                contentHash = (String) uploadResponse.get("contentHash");
+            } catch (Exception e) {
+                log.error("Error streaming file to storage service", e);
+                headers.add("X-Error-Type", "SERVER_ERROR");
+                headers.add("X-Error-Code", "STORAGE_SERVICE_ERROR");
+                return ResponseEntity
+                        .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .headers(headers)
+                        .body(new ErrorResponse("Error uploading file to storage service: " + e.getMessage()));
+            }
 
-            if (savedImage.getUser() != null) {
-                content.put("userId", savedImage.getUser().getId());
+            if (expectedHash != null && !expectedHash.equals(contentHash)) {
+                deleteStoredFile("images/" + savedFilename);
+                headers.add("X-Error-Type", "VALIDATION_ERROR");
+                headers.add("X-Error-Code", "CONTENT_HASH_MISMATCH");
+                log.error("Validation error: declared SHA-256 {} does not match received content {}", expectedHash, contentHash);
+                return ResponseEntity
+                        .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                        .headers(headers)
+                        .body(new ErrorResponse("Uploaded content does not match X-Content-SHA256"));
             }
 
-            json.put("content", content);
+            // La transferencia ya ocurrió, pero se evita guardar el archivo duplicado
+            Optional<Image> existing = imageService.findByContentHash(contentHash);
+            if (existing.isPresent()) {
+                String existingFilename = imageService.storedFilename(existing.get());
+                deleteStoredFile("images/" + savedFilename);
+                log.info("File content already stored by image ID: {}, discarding duplicate {}",
+                        existing.get().getId(), savedFilename);
+                return registerImage(headers, imageRequest, existingFilename,
+                        siblingFileUrl(fileUrl, savedFilename, existingFilename), contentHash, true);
+            }
 
-            // Agregar cabeceras de respuesta
-            headers.add("X-Resource-Id", String.valueOf(savedImage.getId()));
-            headers.add("X-Resource-Type", "image");
-            headers.add("X-Image-Visibility", savedImage.getType().toUpperCase());
+            return registerImage(headers, imageRequest, savedFilename, fileUrl, contentHash, false);
+        } catch (Exception e) {
+            headers.add("X-Error-Type", "SERVER_ERROR");
+            headers.add("X-Error-Code", "DATABASE_ERROR");
+            log.error("Error creating image: {}", e.getMessage(), e);
+            return ResponseEntity
+                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .headers(headers)
+                    .body(new ErrorResponse("Error creating image: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Progreso de las subidas en curso y métricas acumuladas (bytes, throughput, fallos).
+     */
+    @GetMapping("/images/uploads/metrics")
+    public ResponseEntity<?> getUploadMetrics() {
+        return ResponseEntity.ok(uploadMetrics.snapshot());
+    }
+
+    /**
+     * Instancias del servicio de almacenamiento entre las que se reparten las subidas,
+     * con sus llamadas en curso y si están expulsadas por fallos recientes.
+     */
+    @GetMapping("/images/storage/instances")
+    public ResponseEntity<?> getStorageInstances() {
+        LinkedHashMap<String, Object> json = new LinkedHashMap<>();
+        json.put("service", StorageStreamClient.STORAGE_SERVICE);
+        json.put("instances", serviceInstanceResolver.describe(StorageStreamClient.STORAGE_SERVICE));
+        return ResponseEntity.ok(json);
+    }
+
+    /**
+     * Estado de un trabajo de ingesta asíncrona: progreso, bytes transferidos y resultado final.
+     */
+    @GetMapping("/images/jobs/{jobId}")
+    public ResponseEntity<?> getIngestJob(@PathVariable String jobId) {
+        Optional<ImageIngestService.IngestJob> job = imageIngestService.findJob(jobId);
+        if (job.isEmpty()) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.add("X-Error-Type", "RESOURCE_ERROR");
+            headers.add("X-Error-Code", "JOB_NOT_FOUND");
+            log.error("Resource error: Ingest job not found with ID: {}", jobId);
+            return ResponseEntity
+                    .status(HttpStatus.NOT_FOUND)
+                    .headers(headers)
+                    .body(new ErrorResponse("Ingest job not found with ID: " + jobId
+                            + " (jobs are kept in memory; it may have expired or been lost on a restart)"));
+        }
+        LinkedHashMap<String, Object> json = new LinkedHashMap<>();
+        json.put("content", job.get().toMap());
+        return ResponseEntity.ok(json);
+    }
 
-            log.info("Successfully created {} image with ID: {}",
-                    savedImage.getType(),
-                    savedImage.getId());
+    /**
+     * Ocupación del pool de ingesta asíncrona.
+     */
+    @GetMapping("/images/jobs")
+    public ResponseEntity<?> getIngestQueueStatus() {
+        return ResponseEntity.ok(imageIngestService.queueStatus());
+    }
 
+    /**
+     * Encola la ingesta y responde 202 con el ID del trabajo, o 503 si la cola está llena.
+     */
+    private ResponseEntity<?> submitIngestJob(HttpHeaders headers, ImageRequest imageRequest, MultipartFile file) throws IOException {
+        if (file == null || file.isEmpty()) {
+            headers.add("X-Error-Type", "VALIDATION_ERROR");
+            headers.add("X-Error-Code", "FILE_REQUIRED");
+            log.error("Validation error: A file is required for asynchronous ingestion");
+            return ResponseEntity
+                    .badRequest()
+                    .headers(headers)
+                    .body(new ErrorResponse("A file is required for asynchronous ingestion"));
+        }
+
+        // Verificar el usuario antes de aceptar el trabajo
+        if (imageRequest.getUserId() != null && !userRepository.existsById(imageRequest.getUserId())) {
+            headers.add("X-Error-Type", "RESOURCE_ERROR");
+            headers.add("X-Error-Code", "USER_NOT_FOUND");
+            log.error("Resource error: User not found with ID: {}", imageRequest.getUserId());
+            return ResponseEntity
+                    .status(HttpStatus.NOT_FOUND)
+                    .headers(headers)
+                    .body(new ErrorResponse("User not found with ID: " + imageRequest.getUserId()));
+        }
+
+        ImageIngestService.IngestJob job;
+        try {
+            job = imageIngestService.submit(imageRequest, file);
+        } catch (RejectedExecutionException e) {
+            headers.add("X-Error-Type", "SERVER_ERROR");
+            headers.add("X-Error-Code", "INGEST_QUEUE_FULL");
+            headers.add(HttpHeaders.RETRY_AFTER, "30");
+            log.warn("Ingest queue full, rejecting upload of {}", file.getOriginalFilename());
+            return ResponseEntity
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .headers(headers)
+                    .body(new ErrorResponse("Too many uploads in progress, retry later"));
+        }
+
+        headers.add("X-Resource-Id", job.getId());
+        headers.add("X-Resource-Type", "image-ingest-job");
+        headers.add(HttpHeaders.LOCATION, "/Admin/images/jobs/" + job.getId());
+
+        LinkedHashMap<String, Object> json = new LinkedHashMap<>();
+        json.put("content", job.toMap());
+        return ResponseEntity
+                .status(HttpStatus.ACCEPTED)
+                .headers(headers)
+                .body(json);
+    }
+
+    /**
+     * Inicia una subida por partes. Devuelve el uploadId, el tamaño de parte y la cantidad de partes.
+     */
+    @PostMapping("/images/uploads")
+    public ResponseEntity<?> initiateChunkedUpload(@RequestBody ChunkedUploadRequest uploadRequest) {
+        HttpHeaders headers = new HttpHeaders();
+        try {
+            Map<String, Object> status = chunkedUploadService.initiate(uploadRequest);
+            headers.add("X-Resource-Id", String.valueOf(status.get("uploadId")));
+            headers.add("X-Resource-Type", "image-upload");
             return ResponseEntity
                     .status(HttpStatus.CREATED)
                     .headers(headers)
-                    .body(json);
+                    .body(status);
+        } catch (ChunkedUploadService.ChunkedUploadException e) {
+            return chunkedUploadErrorResponse(headers, e);
+        } catch (Exception e) {
+            headers.add("X-Error-Type", "SERVER_ERROR");
+            headers.add("X-Error-Code", "UPLOAD_INIT_ERROR");
+            log.error("Error initiating chunked upload: {}", e.getMessage(), e);
+            return ResponseEntity
+                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .headers(headers)
+                    .body(new ErrorResponse("Error initiating upload: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Recibe una parte (application/octet-stream). Las partes pueden enviarse en paralelo y en cualquier orden;
+     * el SHA-256 de la parte va en la cabecera X-Chunk-SHA256.
+     */
+    @PutMapping(value = "/images/uploads/{uploadId}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> uploadChunk(@PathVariable String uploadId,
+                                         @PathVariable Integer index,
+                                         @RequestHeader(value = "X-Chunk-SHA256", required = false) String sha256,
+                                         HttpServletRequest request) {
+        HttpHeaders headers = new HttpHeaders();
+        try {
+            return ResponseEntity.ok(chunkedUploadService.putChunk(uploadId, index, sha256, request.getInputStream()));
+        } catch (ChunkedUploadService.ChunkedUploadException e) {
+            return chunkedUploadErrorResponse(headers, e);
+        } catch (Exception e) {
+            headers.add("X-Error-Type", "SERVER_ERROR");
+            headers.add("X-Error-Code", "CHUNK_WRITE_ERROR");
+            log.error("Error receiving chunk {} of upload {}: {}", index, uploadId, e.getMessage(), e);
+            return ResponseEntity
+                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .headers(headers)
+                    .body(new ErrorResponse("Error receiving chunk: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Estado de una subida por partes; missingChunks indica qué partes reenviar para reanudarla.
+     */
+    @GetMapping("/images/uploads/{uploadId}")
+    public ResponseEntity<?> getChunkedUploadStatus(@PathVariable String uploadId) {
+        try {
+            return ResponseEntity.ok(chunkedUploadService.status(uploadId));
+        } catch (ChunkedUploadService.ChunkedUploadException e) {
+            return chunkedUploadErrorResponse(new HttpHeaders(), e);
+        }
+    }
 
+    /**
+     * Completa la subida: reensambla, envía el archivo al servicio de almacenamiento y crea la imagen.
+     */
+    @PostMapping("/images/uploads/{uploadId}/complete")
+    public ResponseEntity<?> completeChunkedUpload(@PathVariable String uploadId) {
+        HttpHeaders headers = new HttpHeaders();
+        try {
+            ChunkedUploadService.CompletedUpload completed = chunkedUploadService.complete(uploadId);
+            return imageCreatedResponse(headers, completed.getImage(), completed.getFileUrl(), completed.isDeduplicated());
+        } catch (ChunkedUploadService.ChunkedUploadException e) {
+            return chunkedUploadErrorResponse(headers, e);
+        } catch (NoSuchElementException e) {
+            headers.add("X-Error-Type", "RESOURCE_ERROR");
+            headers.add("X-Error-Code", "USER_NOT_FOUND");
+            log.error("Resource error: {}", e.getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.NOT_FOUND)
+                    .headers(headers)
+                    .body(new ErrorResponse(e.getMessage()));
+        } catch (IOException e) {
+            log.error("Error sending reassembled upload {} to storage service", uploadId, e);
+            headers.add("X-Error-Type", "SERVER_ERROR");
+            headers.add("X-Error-Code", "STORAGE_SERVICE_ERROR");
+            return ResponseEntity
+                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .headers(headers)
+                    .body(new ErrorResponse("Error uploading file to storage service: " + e.getMessage()));
         } catch (Exception e) {
             headers.add("X-Error-Type", "SERVER_ERROR");
             headers.add("X-Error-Code", "DATABASE_ERROR");
@@ -350,6 +579,120 @@ public class AdminImageController {
                     .body(new ErrorResponse("Error creating image: " + e.getMessage()));
         }
     }
+
+    /**
+     * Cancela una subida por partes y elimina las partes recibidas.
+     */
+    @DeleteMapping("/images/uploads/{uploadId}")
+    public ResponseEntity<?> abortChunkedUpload(@PathVariable String uploadId) {
+        HttpHeaders headers = new HttpHeaders();
+        try {
+            chunkedUploadService.abort(uploadId);
+            return ResponseEntity.noContent().build();
+        } catch (ChunkedUploadService.ChunkedUploadException e) {
+            return chunkedUploadErrorResponse(headers, e);
+        } catch (Exception e) {
+            headers.add("X-Error-Type", "SERVER_ERROR");
+            headers.add("X-Error-Code", "UPLOAD_ABORT_ERROR");
+            log.error("Error aborting upload {}: {}", uploadId, e.getMessage(), e);
+            return ResponseEntity
+                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .headers(headers)
+                    .body(new ErrorResponse("Error aborting upload: " + e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<?> chunkedUploadErrorResponse(HttpHeaders headers, ChunkedUploadService.ChunkedUploadException e) {
+        String errorType = e.getStatus() == HttpStatus.NOT_FOUND ? "RESOURCE_ERROR"
+                : e.getStatus().is4xxClientError() ? "VALIDATION_ERROR" : "SERVER_ERROR";
+        headers.add("X-Error-Type", errorType);
+        headers.add("X-Error-Code", e.getCode());
+        log.error("Chunked upload error: {}", e.getMessage());
+        return ResponseEntity
+                .status(e.getStatus())
+                .headers(headers)
+                .body(new ErrorResponse(e.getMessage()));
+    }
+
+    private ResponseEntity<?> validationErrorResponse(HttpHeaders headers, ImageService.ValidationError error) {
+        headers.add("X-Error-Type", "VALIDATION_ERROR");
+        headers.add("X-Error-Code", error.getCode());
+
+        log.error("Validation error: {}", error.getMessage());
+
+        return ResponseEntity
+                .badRequest()
+                .headers(headers)
+                .body(new ErrorResponse(error.getMessage()));
+    }
+
+    /**
+     * URL de otro archivo del almacenamiento con la misma forma que la devuelta para el archivo subido
+     * (misma base, distinto nombre), o null si esa URL no termina en el nombre subido.
+     */
+    private static String siblingFileUrl(String fileUrl, String uploadedFilename, String filename) {
+        if (fileUrl == null || uploadedFilename == null || !fileUrl.endsWith(uploadedFilename)) {
+            return null;
+        }
+        return fileUrl.substring(0, fileUrl.length() - uploadedFilename.length()) + filename;
+    }
+
+    /**
+     * Registra la imagen para un archivo ya subido (o reutilizado) y arma la respuesta 201.
+     */
+    private ResponseEntity<?> registerImage(HttpHeaders headers, ImageRequest imageRequest, String savedFilename,
+                                            String fileUrl, String contentHash, boolean deduplicated) {
+        Image savedImage;
+        try {
+            savedImage = imageService.registerImage(imageRequest, savedFilename, contentHash);
+        } catch (NoSuchElementException e) {
+            headers.add("X-Error-Type", "RESOURCE_ERROR");
+            headers.add("X-Error-Code", "USER_NOT_FOUND");
+            log.error("Resource error: User not found with ID: {}", imageRequest.getUserId());
+            return ResponseEntity
+                    .status(HttpStatus.NOT_FOUND)
+                    .headers(headers)
+                    .body(new ErrorResponse("User not found with ID: " + imageRequest.getUserId()));
+        }
+        return imageCreatedResponse(headers, savedImage, fileUrl, deduplicated);
+    }
+
+    private ResponseEntity<?> imageCreatedResponse(HttpHeaders headers, Image savedImage, String fileUrl,
+                                                   boolean deduplicated) {
+        // Crear la respuesta con los datos de la imagen creada
+        LinkedHashMap<String, Object> json = new LinkedHashMap<>();
+        LinkedHashMap<String, Object> content = new LinkedHashMap<>();
+
+        content.put("idImage", savedImage.getId());
+        content.put("name", savedImage.getName());
+        content.put("path", savedImage.getPath());
+        content.put("type", savedImage.getType());
+        content.put("state", savedImage.getState());
+        content.put("fileUrl", fileUrl); // Incluir la URL del archivo
+        content.put("contentHash", savedImage.getContentHash());
+        content.put("deduplicated", deduplicated);
+
+        if (savedImage.getUser() != null) {
+            content.put("userId", savedImage.getUser().getId());
+        }
+
+        json.put("content", content);
+
+        // Agregar cabeceras de respuesta
+        headers.add("X-Resource-Id", String.valueOf(savedImage.getId()));
+        headers.add("X-Resource-Type", "image");
+        headers.add("X-Image-Visibility", savedImage.getType().toUpperCase());
+
+        log.info("Successfully created {} image with ID: {}",
+                savedImage.getType(),
+                savedImage.getId());
+        auditLogWriter.record("image_creation", "Image created: " + savedImage.getName());
+
+        return ResponseEntity
+                .status(HttpStatus.CREATED)
+                .headers(headers)
+                .body(json);
+    }
     @DeleteMapping("/images/delete/{imageId}")
     public ResponseEntity<?> deleteImage(@PathVariable Integer imageId) {
         // Crear un objeto para las cabeceras HTTP personalizadas
@@ -383,15 +726,12 @@ public class AdminImageController {
 
             Image image = imageOptional.get();
 
-            // Eliminar el archivo físico si existe usando el servicio de almacenamiento
+            // Eliminar el archivo físico si existe y ninguna otra imagen activa lo comparte
             if (image.getPath() != null && !image.getPath().isEmpty()) {
-                try {
-                    // Usar Feign Client para eliminar el archivo
-                    Object deleteResponse = storageFeignService.deleteFile(image.getPath());
-                    log.info("File deleted from storage service: {}", image.getPath());
-                } catch (Exception e) {
-                    // Solo registrar el error, pero continuar con la eliminación de la referencia
-                    log.warn("Error deleting file from storage service: {}", image.getPath(), e);
+                if (imageService.isFileShared(image)) {
+                    log.info("File {} is still used by other images, keeping it in storage", image.getPath());
+                } else {
+                    deleteStoredFile(image.getPath());
                 }
             }
 
@@ -400,6 +740,7 @@ public class AdminImageController {
             imageRepository.save(image);
 
             log.info("Successfully deleted image with ID: {}", imageId);
+            auditLogWriter.record("image_deletion", "Image deleted: " + image.getName());
 
             headers.add("X-Resource-Id", String.valueOf(imageId));
             headers.add("X-Resource-Type", "image");
@@ -431,6 +772,18 @@ public class AdminImageController {
                     .body(new ErrorResponse("Error deleting image: " + e.getMessage()));
         }
     }
+
+    private void deleteStoredFile(String path) {
+        try {
+            // Usar Feign Client para eliminar el archivo
+            storageFeignService.deleteFile(path);
+            log.info("File deleted from storage service: {}", path);
+        } catch (Exception e) {
+            // Solo registrar el error, pero continuar con la eliminación de la referencia
+            log.warn("Error deleting file from storage service: {}", path, e);
+        }
+    }
+
     @PostMapping(value= "/images/update/{imageId}" , consumes = {
             MediaType.APPLICATION_FORM_URLENCODED_VALUE,
             MediaType.MULTIPART_FORM_DATA_VALUE
@@ -570,6 +923,7 @@ public class AdminImageController {
             headers.add("X-Operation-Result", "UPDATED");
 
             log.info("Successfully updated image name, description and state with ID: {}", updatedImage.getId());
+            auditLogWriter.record("image_update", "Image updated: " + updatedImage.getName());
 
             return ResponseEntity
                     .ok()
@@ -586,155 +940,4 @@ public class AdminImageController {
                     .body(new ErrorResponse("Error updating image: " + e.getMessage()));
         }
     }
-
-
-    public Object createImage(MultipartFile file) {
-        String url = getServiceUrl("STORAGESERVICEMODULE")+ "/api/files"; // Ajusta esta URL al endpoint correcto
-        try {
-            String boundary = "----" + System.currentTimeMillis();
-            // Configurar la conexión
-            URL apiUrl = new URL(url);
-            HttpURLConnection connection = (HttpURLConnection) apiUrl.openConnection();
-            connection.setDoOutput(true);
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
-
-            // Configurar timeouts para evitar errores de conexión
-            connection.setConnectTimeout(30000);  // 30 segundos para establecer conexión
-            connection.setReadTimeout(180000);    // 3 minutos para leer respuesta
-
-            // Streaming en bloques para archivos grandes
-            connection.setChunkedStreamingMode(1024 * 1024); // 1MB chunks
-
-            try (OutputStream output = connection.getOutputStream();
-                 PrintWriter writer = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), true)) {
-
-                if (file != null && !file.isEmpty()) {
-                    // IMPORTANTE: Nombre del parámetro debe ser "file" para coincidir con @RequestPart("file")
-                    writer.append("--").append(boundary).append("\r\n");
-                    writer.append("Content-Disposition: form-data; name=\"file\"; filename=\"")
-                            .append(file.getOriginalFilename()).append("\"\r\n");
-                    writer.append("Content-Type: ").append(file.getContentType()).append("\r\n\r\n");
-                    writer.flush();
-
-                    // Transmitir el archivo en bloques
-                    try (InputStream inputStream = file.getInputStream()) {
-                        byte[] buffer = new byte[8192]; // Buffer de 8KB
-                        int bytesRead;
-                        while ((bytesRead = inputStream.read(buffer)) != -1) {
-                            output.write(buffer, 0, bytesRead);
-                        }
-                        output.flush();
-                    }
-                    writer.append("\r\n");
-
-                    // Cerrar el límite multipart
-                    writer.append("--").append(boundary).append("--").append("\r\n");
-                    writer.flush();
-                } else {
-                    // Si el archivo es nulo o vacío, envía un error
-                    log.error("El archivo proporcionado es nulo o vacío");
-                    return Collections.singletonMap("error", "El archivo proporcionado es nulo o vacío");
-                }
-            }
-
-            // Obtener la respuesta
-            int responseCode = connection.getResponseCode();
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(
-                            responseCode >= 400 ? connection.getErrorStream() : connection.getInputStream(),
-                            StandardCharsets.UTF_8))) {
-                StringBuilder responseBody = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    responseBody.append(line);
-                }
-
-                // Procesar la respuesta
-                ObjectMapper mapper = new ObjectMapper();
-                if (responseCode >= 200 && responseCode < 300) {
-                    log.info("Archivo subido exitosamente: {}", file.getOriginalFilename());
-                    return mapper.readValue(responseBody.toString(), Object.class);
-                } else {
-                    log.error("Error del servidor al subir archivo: código {} - respuesta {}", responseCode, responseBody);
-                    try {
-                        return mapper.readValue(responseBody.toString(), Map.class);
-                    } catch (Exception e) {
-                        return Collections.singletonMap("error", "Error al subir archivo: código " + responseCode + " - " + responseBody);
-                    }
-                }
-            }
-        } catch (IOException e) {
-            log.error("Error de E/S al comunicarse con la API: {}", e.getMessage(), e);
-            return Collections.singletonMap("error", "Error de comunicación con el servidor: " + e.getMessage());
-        } catch (Exception e) {
-            log.error("Error inesperado al subir archivo: {}", e.getMessage(), e);
-            return Collections.singletonMap("error", "Error inesperado al subir archivo: " + e.getMessage());
-        }
-    }
-
-    @Autowired
-    private EurekaClient eurekaClient;
-
-    /**
-     * Obtiene información de la instancia de un servicio registrado en Eureka.
-     *
-     * @param serviceName Nombre del servicio registrado en Eureka
-     * @return Map con información de la instancia con host y puerto, o null si no se encuentra
-     *
-     * Ejemplo de uso:
-     *   Map<String, Object> instance = getServiceInstance("storage-service-module");
-     *   String url = "http://" + instance.get("ipAddr") + ":" + instance.get("port") + "/api/files";
-     */
-    public Map<String, Object> getServiceInstance(String serviceName) {
-        try {
-            log.debug("Buscando instancia de servicio: {}", serviceName);
-
-            // Obtener aplicación desde Eureka
-            Application application = eurekaClient.getApplication(serviceName);
-
-            if (application == null || application.getInstances().isEmpty()) {
-                log.error("Servicio {} no encontrado en Eureka", serviceName);
-                return null;
-            }
-
-            // Filtrar por instancias activas (UP)
-            List<InstanceInfo> upInstances = application.getInstances().stream()
-                    .filter(instance -> instance.getStatus() == InstanceInfo.InstanceStatus.UP)
-                    .toList();
-
-            if (upInstances.isEmpty()) {
-                log.error("No hay instancias activas del servicio {}", serviceName);
-                return null;
-            }
-
-            // Obtener primera instancia disponible
-            InstanceInfo instance = upInstances.get(0);
-
-            Map<String, Object> serviceInfo = new HashMap<>();
-            serviceInfo.put("ipAddr", instance.getIPAddr());
-            serviceInfo.put("port", instance.getPort());
-            serviceInfo.put("hostName", instance.getHostName());
-            serviceInfo.put("instanceId", instance.getInstanceId());
-
-            log.debug("Instancia encontrada: {}", serviceInfo);
-
-            return serviceInfo;
-        } catch (Exception e) {
-            log.error("Error obteniendo instancia de {}: {}", serviceName, e.getMessage(), e);
-            return null;
-        }
-    }
-
-    public String getServiceUrl(String serviceName) {
-        Map<String, Object> instance = getServiceInstance(serviceName);
-
-        if (instance == null) {
-            return null;
-        }
-
-        return String.format("http://%s:%s",
-                instance.get("ipAddr"),
-                instance.get("port"));
-    }
 }
@@ -2,11 +2,14 @@ package com.example.userservicemodule.Controller;
 
 import com.example.userservicemodule.Entity.User;
 import com.example.userservicemodule.Repository.UserRepository;
+import com.example.userservicemodule.Service.AdminMetricsService;
+import com.example.userservicemodule.Service.AuditLogWriter;
+import com.example.userservicemodule.Service.PasswordHashingService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.format.DateTimeFormatter;
@@ -26,7 +29,13 @@ public class AdminProfileController {
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private AdminMetricsService adminMetricsService;
+
+    @Autowired
+    private AuditLogWriter auditLogWriter;
 
     DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
 
@@ -178,7 +187,7 @@ public class AdminProfileController {
                     .orElseThrow(() -> new NoSuchElementException("Usuario no encontrado: " + username));
 
             // Verificar contraseña actual
-            if (!passwordEncoder.matches(currentPassword, user.getPassword())) {
+            if (!passwordHashingService.matches(currentPassword, user.getPassword())) {
                 log.warn("Contraseña actual incorrecta para usuario: {}", username);
                 return ResponseEntity
                         .status(HttpStatus.UNAUTHORIZED)
@@ -186,16 +195,24 @@ public class AdminProfileController {
             }
 
             // Actualizar contraseña
-            user.setPassword(passwordEncoder.encode(newPassword));
+            user.setPassword(passwordHashingService.encode(newPassword));
             userRepository.save(user);
             log.info("Contraseña actualizada exitosamente para usuario: {}", username);
 
+            auditLogWriter.recordAs(new AuditLogWriter.Actor(user.getId(), user.getUsername()), AdminMetricsService.PASSWORD_CHANGE, "Cambio de contraseña");
+
             return ResponseEntity.ok(Map.of("message", "Contraseña actualizada exitosamente"));
         } catch (NoSuchElementException e) {
             log.warn("Error al cambiar contraseña: {}", e.getMessage());
             return ResponseEntity
                     .status(HttpStatus.NOT_FOUND)
                     .body(Map.of("message", e.getMessage()));
+        } catch (PasswordHashingService.HashingRejectedException e) {
+            log.warn("Cambio de contraseña rechazado: {}", e.getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
             log.error("Error al cambiar contraseña: {}", e.getMessage(), e);
             return ResponseEntity
@@ -227,42 +244,24 @@ public class AdminProfileController {
                         .body(Map.of("message", "El usuario no tiene permisos de administrador"));
             }
 
-            // En una implementación real, aquí se consultarían bases de datos para obtener
-            // métricas reales como número de slices administrados, usuarios gestionados, etc.
-            // Por ahora usaremos datos de ejemplo para la interfaz
-
-            Map<String, Object> metrics = new HashMap<>();
-            metrics.put("slicesManaged", 12);
-            metrics.put("usersManaged", 24);
-            metrics.put("vmsCreated", 56);
-
-            // Actividades recientes (en una implementación real se obtendrían de una tabla de logs)
-            Map<String, Object> activity1 = new HashMap<>();
-            activity1.put("type", "slice_creation");
-            activity1.put("description", "Creación de nuevo Slice");
-            activity1.put("timestamp", "Hace 2 horas");
-
-            Map<String, Object> activity2 = new HashMap<>();
-            activity2.put("type", "user_creation");
-            activity2.put("description", "Usuario añadido al sistema");
-            activity2.put("timestamp", "Ayer");
-
-            Map<String, Object> activity3 = new HashMap<>();
-            activity3.put("type", "resource_config");
-            activity3.put("description", "Configuración de recursos");
-            activity3.put("timestamp", "Hace 3 días");
+            // Contadores precalculados por el agregador de rollups; no se recorre la tabla de log
+            Map<String, Object> metrics = adminMetricsService.metricsFor(id);
 
             // Datos de seguridad
             Map<String, Object> security = new HashMap<>();
-            security.put("lastPasswordChange", "Hace 30 días");
-            security.put("activeSessions", 1);
+            security.put("lastPasswordChange", adminMetricsService
+                    .lastEventTime(id, AdminMetricsService.PASSWORD_CHANGE)
+                    .map(AdminMetricsService::relativeTime)
+                    .orElse(null));
+            // Este módulo no registra sesiones: la clave se mantiene por compatibilidad, sin valor
+            security.put("activeSessions", null);
 
             // Combinar todo en la respuesta
             Map<String, Object> response = new HashMap<>();
             response.put("id", user.getId());
             response.put("username", user.getUsername());
             response.put("metrics", metrics);
-            response.put("recentActivities", new Object[]{activity1, activity2, activity3});
+            response.put("recentActivities", adminMetricsService.recentActivities(id));
             response.put("security", security);
 
             return ResponseEntity.ok(response);
@@ -278,4 +277,54 @@ public class AdminProfileController {
                     .body(Map.of("message", "Error al obtener métricas de administrador: " + e.getMessage()));
         }
     }
+
+    /**
+     * Registra un evento de actividad de un administrador informado por el módulo que realizó la acción.
+     * Solo se aceptan los tipos de {@link AdminMetricsService#EXTERNAL_EVENT_TYPES}; el evento pasa por
+     * el escritor de auditoría por lotes.
+     *
+     * @param id ID del usuario que realizó la acción
+     * @param eventData Mapa con type y description
+     * @return Evento registrado
+     */
+    @PostMapping("/profile/metrics/{id}/events")
+    public ResponseEntity<?> recordAdminEvent(@PathVariable Integer id, @RequestBody Map<String, String> eventData) {
+        try {
+            String type = eventData.get("type");
+            if (type == null || type.isBlank()) {
+                log.warn("Evento de actividad sin tipo para usuario ID: {}", id);
+                return ResponseEntity
+                        .status(HttpStatus.BAD_REQUEST)
+                        .body(Map.of("message", "El tipo de evento es requerido"));
+            }
+
+            type = type.trim();
+            if (!AdminMetricsService.EXTERNAL_EVENT_TYPES.contains(type)) {
+                log.warn("Tipo de evento no permitido '{}' para usuario ID: {}", type, id);
+                return ResponseEntity
+                        .status(HttpStatus.BAD_REQUEST)
+                        .body(Map.of("message", "Tipo de evento no permitido: " + type));
+            }
+
+            User user = userRepository.findById(id)
+                    .orElseThrow(() -> new NoSuchElementException("Usuario no encontrado con ID: " + id));
+
+            auditLogWriter.recordAs(new AuditLogWriter.Actor(user.getId(), user.getUsername()), type, eventData.get("description"));
+            log.info("Evento {} registrado para usuario ID: {}", type, id);
+
+            return ResponseEntity
+                    .status(HttpStatus.CREATED)
+                    .body(Map.of("message", "Evento registrado"));
+        } catch (NoSuchElementException e) {
+            log.warn("Error al registrar evento: {}", e.getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error al registrar evento para usuario ID {}: {}", id, e.getMessage(), e);
+            return ResponseEntity
+                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Error al registrar evento: " + e.getMessage()));
+        }
+    }
 }
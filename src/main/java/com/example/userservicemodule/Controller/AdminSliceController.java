@@ -7,13 +7,17 @@ import com.example.userservicemodule.Entity.VirtualMachine;
 import com.example.userservicemodule.Repository.SliceRepository;
 import com.example.userservicemodule.Service.AvailabilityZoneService;
 import com.example.userservicemodule.Service.SliceService;
+import com.example.userservicemodule.Util.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -27,18 +31,55 @@ public class AdminSliceController {
     @Autowired
     private SliceService sliceService;
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Resumen de slices. Sin limit ni next devuelve todos (filtrados si se indican filtros).
+     * Con limit devuelve una página: por offset, o por keyset con el cursor de X-Next-Cursor en next.
+     * offset sin limit, o junto con next, se rechaza con 400.
+     */
     @GetMapping("/listAll")
-    public ResponseEntity<?> listarResumenSlices() {
+    public ResponseEntity<?> listarResumenSlices(@RequestParam(value = "status", required = false) String status,
+                                                 @RequestParam(value = "ownerId", required = false) Integer ownerId,
+                                                 @RequestParam(value = "zoneId", required = false) Integer zoneId,
+                                                 @RequestParam(value = "limit", required = false) Integer limit,
+                                                 @RequestParam(value = "offset", required = false) Integer offset,
+                                                 @RequestParam(value = "next", required = false) String next) {
         try {
-            List<SliceSummaryDTO> resumen = sliceService.obtenerResumenSlices();
+            SliceService.SliceFilter filter = new SliceService.SliceFilter(status, ownerId, zoneId);
+            KeysetCursor.Position after = next != null ? KeysetCursor.decodePosition(next) : null;
+            if (next != null && limit == null) {
+                limit = MAX_PAGE_SIZE;
+            }
+            if (limit != null && (limit < 1 || limit > MAX_PAGE_SIZE)) {
+                throw new IllegalArgumentException("limit debe estar entre 1 y " + MAX_PAGE_SIZE);
+            }
+            if (offset != null && offset < 0) {
+                throw new IllegalArgumentException("offset no puede ser negativo");
+            }
+
+            SliceService.SlicePage page = sliceService.obtenerResumenSlices(filter, after, offset, limit);
+            List<SliceSummaryDTO> resumen = page.items();
 
             HttpHeaders headers = new HttpHeaders();
             headers.add("X-Result-Count", String.valueOf(resumen.size()));
+            if (limit != null && resumen.size() == limit) {
+                headers.add("X-Next-Cursor", KeysetCursor.encode(page.last()));
+            }
 
             return ResponseEntity
                     .ok()
                     .headers(headers)
                     .body(resumen);
+        } catch (IllegalArgumentException e) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.add("X-Error-Type", "VALIDATION_ERROR");
+            headers.add("X-Error-Code", "INVALID_PAGINATION");
+
+            return ResponseEntity
+                    .badRequest()
+                    .headers(headers)
+                    .body(new ErrorResponse(e.getMessage()));
         } catch (Exception e) {
             HttpHeaders headers = new HttpHeaders();
             headers.add("X-Error-Type", "SERVER_ERROR");
@@ -51,7 +92,19 @@ public class AdminSliceController {
         }
     }
 
-
-
+    /**
+     * Resumen de slices en NDJSON (un objeto por línea), enviado a medida que se lee de la base de datos.
+     */
+    @GetMapping("/listAll/stream")
+    public ResponseEntity<StreamingResponseBody> streamResumenSlices(@RequestParam(value = "status", required = false) String status,
+                                                                     @RequestParam(value = "ownerId", required = false) Integer ownerId,
+                                                                     @RequestParam(value = "zoneId", required = false) Integer zoneId) {
+        SliceService.SliceFilter filter = new SliceService.SliceFilter(status, ownerId, zoneId);
+        StreamingResponseBody body = out -> sliceService.streamResumenSlices(filter, out);
+        return ResponseEntity
+                .ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
 
 }
@@ -1,5 +1,10 @@
 package com.example.userservicemodule.Controller;
 
+import com.example.userservicemodule.BeansRequest.ResourceRequirementRequest;
+import com.example.userservicemodule.DTO.Projections.UserSummaryView;
+import com.example.userservicemodule.DTO.QuotaCheckVerdict;
+import com.example.userservicemodule.DTO.QuotaReservation;
+import com.example.userservicemodule.DTO.QuotaSnapshot;
 import com.example.userservicemodule.Entity.Resource;
 import com.example.userservicemodule.Entity.Role;
 import com.example.userservicemodule.Entity.User;
@@ -7,20 +12,27 @@ import com.example.userservicemodule.Repository.FlavorRepository;
 import com.example.userservicemodule.Repository.ResourceRepository;
 import com.example.userservicemodule.Repository.RoleRepository;
 import com.example.userservicemodule.Repository.UserRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.userservicemodule.Service.AdminMetricsService;
+import com.example.userservicemodule.Service.AuditLogWriter;
+import com.example.userservicemodule.Service.PasswordHashingService;
+import com.example.userservicemodule.Service.QuotaReservationService;
+import com.example.userservicemodule.Service.UserExportService;
+import com.example.userservicemodule.Util.KeysetCursor;
+import com.example.userservicemodule.Util.PasswordGenerator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.nio.charset.StandardCharsets;
-import java.security.SecureRandom;
 import java.time.format.DateTimeFormatter;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -35,29 +47,50 @@ import java.util.List;
 public class AdminUserController {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final ResourceRepository resourceRepository;
+    private final UserExportService userExportService;
+    private final QuotaReservationService quotaReservationService;
+    private final AuditLogWriter auditLogWriter;
 
     public AdminUserController(UserRepository userRepository,
                                RoleRepository roleRepository,
-                               PasswordEncoder passwordEncoder,
-                               ResourceRepository resourceRepository) {
+                               PasswordHashingService passwordHashingService,
+                               ResourceRepository resourceRepository,
+                               UserExportService userExportService,
+                               QuotaReservationService quotaReservationService,
+                               AuditLogWriter auditLogWriter) {
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
         this.resourceRepository = resourceRepository;
+        this.userExportService = userExportService;
+        this.quotaReservationService = quotaReservationService;
+        this.auditLogWriter = auditLogWriter;
     }
 
     DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
 
+    /**
+     * Tamaño de página por defecto y máximo para el listado paginado de usuarios.
+     */
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
     /**
      * Obtiene todos los usuarios del sistema.
+     * Si se envía {@code limit} o {@code next}, la respuesta se pagina por keyset: se devuelven como máximo
+     * {@code limit} usuarios y, si hay más, la cabecera {@code X-Next-Cursor} trae el cursor de la siguiente página.
+     * Sin esos parámetros se mantiene el comportamiento original (lista completa).
      *
+     * @param limit Tamaño de página (opcional)
+     * @param next Cursor opaco devuelto por la página anterior (opcional)
      * @return Lista de usuarios con sus datos básicos
      */
     @GetMapping("/users")
     @ResponseBody
-    public ResponseEntity<?> getAllUsers() {
+    public ResponseEntity<?> getAllUsers(@RequestParam(value = "limit", required = false) Integer limit,
+                                         @RequestParam(value = "next", required = false) String next) {
         try {
             log.info("Solicitando lista de todos los usuarios");
             // Check if repository is available
@@ -69,8 +102,12 @@ public class AdminUserController {
                         .body("User repository is not available");
             }
 
+            if (limit != null || next != null) {
+                return getUsersPage(limit, next);
+            }
+
             // Get all users and handle empty result
-            List<User> users = userRepository.findAll();
+            List<UserSummaryView> users = userRepository.findAllSummaries();
             if (users.isEmpty()) {
                 log.warn("No se encontraron usuarios en la base de datos");
                 return ResponseEntity
@@ -80,37 +117,23 @@ public class AdminUserController {
             }
 
             // Prepare the response
-            ArrayList<LinkedHashMap<String, Object>> listaContent = new ArrayList<>();
-            for (User user : users) {
-                LinkedHashMap<String, Object> userContent = new LinkedHashMap<>();
-                userContent.put("id", user.getId());
-                userContent.put("name", user.getName());
-                userContent.put("lastname", user.getLastname());
-                userContent.put("username", user.getUsername());
-                userContent.put("role", user.getRole().getName());
-                userContent.put("code", user.getCode());
-                userContent.put("state", user.getState());
-                userContent.put("createdAt", user.getCreatedAt().format(formatter));
-                // Manejar lastLogin que puede ser null
-                if (user.getLastLogin() != null) {
-                    userContent.put("lastLogin", user.getLastLogin().format(formatter));
-                } else {
-                    userContent.put("lastLogin", null);
-                }
-
-                listaContent.add(userContent);
+            ArrayList<LinkedHashMap<String, Object>> listaContent = new ArrayList<>(users.size());
+            for (UserSummaryView user : users) {
+                listaContent.add(toUserContent(user));
             }
 
             log.debug("Se recuperaron {} usuarios", users.size());
-            ObjectMapper objectMapper = new ObjectMapper();
-            String responseBody = objectMapper.writeValueAsString(listaContent);
             return ResponseEntity
                     .status(HttpStatus.OK)
                     .header("X-Total-Count", String.valueOf(listaContent.size()))
-                    .header("Content-Type", "application/json")
-                    .header("Content-Length", String.valueOf(responseBody.getBytes(StandardCharsets.UTF_8).length))
-                    .body(responseBody);
+                    .body(listaContent);
 
+        } catch (IllegalArgumentException ex) {
+            log.warn("Parámetros de paginación inválidos: {}", ex.getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .header("X-Error-Type", "InvalidPagination")
+                    .body(ex.getMessage());
         } catch (DataAccessException ex) {
             // Handle database access errors
             log.error("Error de acceso a la base de datos: {}", ex.getMessage(), ex);
@@ -130,6 +153,80 @@ public class AdminUserController {
         }
     }
 
+    /**
+     * Exporta todos los usuarios en streaming, escribiendo cada fila en la respuesta a medida que se lee.
+     * A diferencia de {@link #getAllUsers}, no arma la lista en memoria.
+     *
+     * @param format ndjson (por defecto) o json
+     * @return Cuerpo en streaming con todos los usuarios
+     */
+    @GetMapping("/users/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(value = "format", defaultValue = "ndjson") String format) {
+        try {
+            UserExportService.Format exportFormat = UserExportService.Format.from(format);
+            log.info("Exportando usuarios en formato {}", exportFormat);
+
+            StreamingResponseBody body = out ->
+                    userExportService.exportUsers(out, exportFormat, UserExportService.View.ADMIN);
+
+            return ResponseEntity
+                    .status(HttpStatus.OK)
+                    .contentType(exportFormat.getMediaType())
+                    .body(body);
+        } catch (IllegalArgumentException ex) {
+            log.warn("Formato de exportación inválido: {}", format);
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .header("X-Error-Type", "InvalidFormat")
+                    .body(out -> out.write(ex.getMessage().getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * Devuelve una página de usuarios por keyset (ID ascendente).
+     * El total se obtiene con un COUNT independiente de la página.
+     */
+    private ResponseEntity<?> getUsersPage(Integer limit, String next) {
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("El parámetro limit debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
+        Integer afterId = next != null ? KeysetCursor.decode(next) : 0;
+
+        List<UserSummaryView> page = userRepository.findSummariesAfter(afterId, PageRequest.of(0, pageSize));
+        long total = userRepository.count();
+
+        ArrayList<LinkedHashMap<String, Object>> listaContent = new ArrayList<>(page.size());
+        for (UserSummaryView user : page) {
+            listaContent.add(toUserContent(user));
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity
+                .status(HttpStatus.OK)
+                .header("X-Total-Count", String.valueOf(total));
+        if (page.size() == pageSize) {
+            response.header("X-Next-Cursor", KeysetCursor.encode(page.get(page.size() - 1).getId()));
+        }
+
+        log.debug("Página de usuarios después de ID {}: {} registros de {}", afterId, page.size(), total);
+        return response.body(listaContent);
+    }
+
+    private LinkedHashMap<String, Object> toUserContent(UserSummaryView user) {
+        LinkedHashMap<String, Object> userContent = new LinkedHashMap<>();
+        userContent.put("id", user.getId());
+        userContent.put("name", user.getName());
+        userContent.put("lastname", user.getLastname());
+        userContent.put("username", user.getUsername());
+        userContent.put("role", user.getRole());
+        userContent.put("code", user.getCode());
+        userContent.put("state", user.getState());
+        userContent.put("createdAt", user.getCreatedAt() != null ? user.getCreatedAt().format(formatter) : null);
+        // Manejar lastLogin que puede ser null
+        userContent.put("lastLogin", user.getLastLogin() != null ? user.getLastLogin().format(formatter) : null);
+        return userContent;
+    }
+
     /**
      * Obtiene un usuario por su ID.
      *
@@ -225,14 +322,14 @@ public class AdminUserController {
             // Generar contraseña si es necesario
             String password;
             if (generatePassword) {
-                password = generateSecurePassword(12);
+                password = PasswordGenerator.generate(12);
                 log.info("CONTRASEÑA GENERADA para usuario {}: {}", username, password);
                 userData.put("password", password); // Actualizar en userData para incluirla en la respuesta
             } else {
                 password = (String) userData.get("password");
             }
 
-            newUser.setPassword(passwordEncoder.encode(password));
+            newUser.setPassword(passwordHashingService.encode(password));
             newUser.setName((String) userData.get("name"));
             newUser.setLastname((String) userData.get("lastname"));
             newUser.setCode((String) userData.get("code"));
@@ -243,6 +340,7 @@ public class AdminUserController {
             // Guardar el usuario
             User savedUser = userRepository.save(newUser);
             log.info("Usuario creado exitosamente: ID {} - {}", savedUser.getId(), savedUser.getUsername());
+            auditLogWriter.record(AdminMetricsService.USER_CREATION, "Usuario creado: " + savedUser.getUsername());
 
             // Inicializar recursos por defecto
             Resource resource = new Resource();
@@ -278,6 +376,7 @@ public class AdminUserController {
 
             // Guardar recursos
             Resource savedResource = resourceRepository.save(resource);
+            quotaReservationService.refresh(savedUser.getId());
             log.info("Recursos inicializados para nuevo usuario ID {}: CPU={}, RAM={}, Disk={}, Slices={}",
                     savedUser.getId(), savedResource.getCpu(), savedResource.getRam(),
                     savedResource.getDisk(), savedResource.getSlices());
@@ -313,6 +412,8 @@ public class AdminUserController {
             }
 
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (PasswordHashingService.HashingRejectedException e) {
+            return hashingRejected(e);
         } catch (IllegalArgumentException e) {
             log.warn("Error de argumentos al crear usuario: {}", e.getMessage());
             return ResponseEntity
@@ -327,45 +428,16 @@ public class AdminUserController {
     }
 
     /**
-     * Genera una contraseña aleatoria segura
-     * @param length Longitud de la contraseña
-     * @return Contraseña generada
+     * Respuesta 503 cuando el pool de hash de contraseñas está saturado.
      */
-    private String generateSecurePassword(int length) {
-        // Caracteres permitidos
-        String upperCase = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-        String lowerCase = "abcdefghijklmnopqrstuvwxyz";
-        String numbers = "0123456789";
-        String specialChars = "!@#$%^&*()_-+=<>?";
-        String allChars = upperCase + lowerCase + numbers + specialChars;
-
-        SecureRandom random = new SecureRandom();
-        StringBuilder password = new StringBuilder();
-
-        // Asegurar al menos un carácter de cada tipo
-        password.append(upperCase.charAt(random.nextInt(upperCase.length())));
-        password.append(lowerCase.charAt(random.nextInt(lowerCase.length())));
-        password.append(numbers.charAt(random.nextInt(numbers.length())));
-        password.append(specialChars.charAt(random.nextInt(specialChars.length())));
-
-        // Completar el resto de la contraseña
-        for (int i = 4; i < length; i++) {
-            password.append(allChars.charAt(random.nextInt(allChars.length())));
-        }
-
-        // Mezclar los caracteres
-        char[] passwordArray = password.toString().toCharArray();
-        for (int i = 0; i < passwordArray.length; i++) {
-            int j = random.nextInt(passwordArray.length);
-            char temp = passwordArray[i];
-            passwordArray[i] = passwordArray[j];
-            passwordArray[j] = temp;
-        }
-
-        return new String(passwordArray);
+    private ResponseEntity<?> hashingRejected(PasswordHashingService.HashingRejectedException e) {
+        log.warn("Operación de contraseña rechazada: {}", e.getMessage());
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
     }
 
-
     /**
      * Actualiza un usuario existente.
      *
@@ -410,7 +482,7 @@ public class AdminUserController {
             }
 
             if (userData.containsKey("password")) {
-                user.setPassword(passwordEncoder.encode((String) userData.get("password")));
+                user.setPassword(passwordHashingService.encode((String) userData.get("password")));
                 log.debug("Actualizando contraseña de usuario ID {}", id);
             }
 
@@ -431,6 +503,7 @@ public class AdminUserController {
             // Guardar cambios
             User updatedUser = userRepository.save(user);
             log.info("Usuario ID {} actualizado exitosamente", id);
+            auditLogWriter.record("user_update", "Usuario actualizado: " + updatedUser.getUsername());
 
             // Crear respuesta
             Map<String, Object> response = new HashMap<>();
@@ -449,6 +522,8 @@ public class AdminUserController {
             return ResponseEntity
                     .status(HttpStatus.NOT_FOUND)
                     .body("Usuario no encontrado: " + e.getMessage());
+        } catch (PasswordHashingService.HashingRejectedException e) {
+            return hashingRejected(e);
         } catch (IllegalArgumentException e) {
             log.warn("Error de argumentos al actualizar usuario ID {}: {}", id, e.getMessage());
             return ResponseEntity
@@ -475,9 +550,11 @@ public class AdminUserController {
             User user = userRepository.findById(id)
                     .orElseThrow(() -> new NoSuchElementException("Usuario no encontrado con ID: " + id));
 
-            // Eliminar usuario
+            // Eliminar usuario (su historial en cloud_v3.log se conserva: la FK queda en null y el username en actor)
             userRepository.delete(user);
+            quotaReservationService.refresh(id);
             log.info("Usuario ID {} eliminado exitosamente", id);
+            auditLogWriter.record("user_deletion", "Usuario eliminado: " + user.getUsername());
 
             Map<String, Object> response = new HashMap<>();
             response.put("id", id);
@@ -514,6 +591,7 @@ public class AdminUserController {
             user.setState("0");
             User updatedUser = userRepository.save(user);
             log.info("Usuario ID {} suspendido exitosamente", id);
+            auditLogWriter.record("user_ban", "Usuario suspendido: " + updatedUser.getUsername());
 
             Map<String, Object> response = new HashMap<>();
             response.put("id", updatedUser.getId());
@@ -552,6 +630,7 @@ public class AdminUserController {
             user.setState("1");
             User updatedUser = userRepository.save(user);
             log.info("Usuario ID {} reactivado exitosamente", id);
+            auditLogWriter.record("user_unban", "Usuario reactivado: " + updatedUser.getUsername());
 
             Map<String, Object> response = new HashMap<>();
             response.put("id", updatedUser.getId());
@@ -728,42 +807,41 @@ public class AdminUserController {
                         .body("Datos de recursos incompletos. Se requieren cpu, ram, disk y slices");
             }
 
-            // Intentar encontrar recursos existentes o crear nuevos
-            Resource resource = resourceRepository.findByUserId(userId)
-                    .orElse(new Resource());
-
-            // Si es un nuevo recurso, asignar el usuario
-            if (resource.getId() == null) {
+            Integer cpu = (Integer) resourceData.get("cpu");
+            Integer ram = (Integer) resourceData.get("ram");
+            BigDecimal disk = new BigDecimal(resourceData.get("disk").toString());
+            Integer slices = (Integer) resourceData.get("slices");
+
+            // Valores de uso opcionales
+            Integer usedCpu = (Integer) resourceData.get("usedCpu");
+            Integer usedRam = (Integer) resourceData.get("usedRam");
+            BigDecimal usedDisk = resourceData.get("usedDisk") != null ?
+                    new BigDecimal(resourceData.get("usedDisk").toString()) : null;
+            Integer usedSlices = (Integer) resourceData.get("usedSlices");
+
+            // Si ya tiene recursos, se actualizan solo las columnas enviadas para no pisar el uso reservado
+            // en paralelo; si no, se crean
+            if (resourceRepository.updateLimits(userId, cpu, ram, disk, slices) > 0) {
+                if (usedCpu != null || usedRam != null || usedDisk != null || usedSlices != null) {
+                    quotaReservationService.setUsage(userId, usedCpu, usedRam, usedDisk, usedSlices);
+                }
+            } else {
+                Resource resource = new Resource();
                 resource.setUser(user);
-                // Inicializar valores de uso en 0
-                resource.setUsedCpu(0);
-                resource.setUsedRam(0);
-                resource.setUsedDisk(new BigDecimal("0.00"));
-                resource.setUsedSlices(0);
-            }
-
-            // Actualizar valores de límites
-            resource.setCpu((Integer) resourceData.get("cpu"));
-            resource.setRam((Integer) resourceData.get("ram"));
-            resource.setDisk(new BigDecimal(resourceData.get("disk").toString()));
-            resource.setSlices((Integer) resourceData.get("slices"));
-
-            // Actualizar valores de uso si se proporcionan
-            if (resourceData.containsKey("usedCpu")) {
-                resource.setUsedCpu((Integer) resourceData.get("usedCpu"));
-            }
-            if (resourceData.containsKey("usedRam")) {
-                resource.setUsedRam((Integer) resourceData.get("usedRam"));
-            }
-            if (resourceData.containsKey("usedDisk")) {
-                resource.setUsedDisk(new BigDecimal(resourceData.get("usedDisk").toString()));
-            }
-            if (resourceData.containsKey("usedSlices")) {
-                resource.setUsedSlices((Integer) resourceData.get("usedSlices"));
+                resource.setCpu(cpu);
+                resource.setRam(ram);
+                resource.setDisk(disk);
+                resource.setSlices(slices);
+                resource.setUsedCpu(usedCpu != null ? usedCpu : 0);
+                resource.setUsedRam(usedRam != null ? usedRam : 0);
+                resource.setUsedDisk(usedDisk != null ? usedDisk : new BigDecimal("0.00"));
+                resource.setUsedSlices(usedSlices != null ? usedSlices : 0);
+                resourceRepository.save(resource);
             }
+            quotaReservationService.refresh(userId);
 
-            // Guardar cambios
-            Resource savedResource = resourceRepository.save(resource);
+            Resource savedResource = resourceRepository.findByUserId(userId)
+                    .orElseThrow(() -> new NoSuchElementException("No hay recursos asignados para el usuario con ID: " + userId));
             log.info("Recursos actualizados para usuario ID {}: CPU={}/{}(usado), RAM={}/{}(usado), Disk={}/{}(usado), Slices={}/{}(usado)",
                     userId, savedResource.getCpu(), savedResource.getUsedCpu(),
                     savedResource.getRam(), savedResource.getUsedRam(),
@@ -794,7 +872,7 @@ public class AdminUserController {
             int ramUsagePercent = savedResource.getRam() > 0 && savedResource.getUsedRam() != null ?
                     (savedResource.getUsedRam() * 100) / savedResource.getRam() : 0;
             int diskUsagePercent = savedResource.getDisk().compareTo(BigDecimal.ZERO) > 0 && savedResource.getUsedDisk() != null ?
-                    savedResource.getUsedDisk().multiply(new BigDecimal(100)).divide(resource.getDisk(), 0, RoundingMode.HALF_UP).intValue() : 0;
+                    savedResource.getUsedDisk().multiply(new BigDecimal(100)).divide(savedResource.getDisk(), 0, RoundingMode.HALF_UP).intValue() : 0;
             int slicesUsagePercent = savedResource.getSlices() > 0 && savedResource.getUsedSlices() != null ?
                     (savedResource.getUsedSlices() * 100) / savedResource.getSlices() : 0;
 
@@ -804,6 +882,7 @@ public class AdminUserController {
             response.put("slicesUsagePercent", slicesUsagePercent);
 
             response.put("message", "Recursos actualizados exitosamente");
+            auditLogWriter.record("resource_update", "Recursos actualizados del usuario " + userId);
 
             return ResponseEntity.ok(response);
         } catch (NoSuchElementException e) {
@@ -837,10 +916,6 @@ public class AdminUserController {
             User user = userRepository.findById(userId)
                     .orElseThrow(() -> new NoSuchElementException("Usuario no encontrado con ID: " + userId));
 
-            // Verificar si los recursos existen
-            Resource resource = resourceRepository.findByUserId(userId)
-                    .orElseThrow(() -> new NoSuchElementException("No hay recursos asignados para el usuario con ID: " + userId));
-
             // Validar datos de entrada (al menos uno debe estar presente)
             if (!usageData.containsKey("usedCpu") && !usageData.containsKey("usedRam") &&
                     !usageData.containsKey("usedDisk") && !usageData.containsKey("usedSlices")) {
@@ -850,35 +925,27 @@ public class AdminUserController {
                         .body("Datos de uso de recursos incompletos. Se requiere al menos uno de: usedCpu, usedRam, usedDisk, usedSlices");
             }
 
-            // Actualizar valores de uso
-            boolean updated = false;
-
-            if (usageData.containsKey("usedCpu")) {
-                resource.setUsedCpu((Integer) usageData.get("usedCpu"));
-                updated = true;
-            }
-            if (usageData.containsKey("usedRam")) {
-                resource.setUsedRam((Integer) usageData.get("usedRam"));
-                updated = true;
-            }
-            if (usageData.containsKey("usedDisk")) {
-                resource.setUsedDisk(new BigDecimal(usageData.get("usedDisk").toString()));
-                updated = true;
-            }
-            if (usageData.containsKey("usedSlices")) {
-                resource.setUsedSlices((Integer) usageData.get("usedSlices"));
-                updated = true;
-            }
+            // Obtener valores de uso (los no enviados quedan en null y no se modifican)
+            Integer usedCpu = (Integer) usageData.get("usedCpu");
+            Integer usedRam = (Integer) usageData.get("usedRam");
+            BigDecimal usedDisk = usageData.get("usedDisk") != null ?
+                    new BigDecimal(usageData.get("usedDisk").toString()) : null;
+            Integer usedSlices = (Integer) usageData.get("usedSlices");
 
-            if (!updated) {
+            if (usedCpu == null && usedRam == null && usedDisk == null && usedSlices == null) {
                 log.warn("No se proporcionaron datos válidos para actualizar el uso de recursos del usuario ID: {}", userId);
                 return ResponseEntity
                         .status(HttpStatus.BAD_REQUEST)
                         .body("No se proporcionaron datos válidos para actualizar el uso de recursos");
             }
 
-            // Guardar cambios
-            Resource savedResource = resourceRepository.save(resource);
+            // Actualizar solo las columnas de uso enviadas, en una sola sentencia
+            if (!quotaReservationService.setUsage(userId, usedCpu, usedRam, usedDisk, usedSlices)) {
+                throw new NoSuchElementException("No hay recursos asignados para el usuario con ID: " + userId);
+            }
+
+            Resource savedResource = resourceRepository.findByUserId(userId)
+                    .orElseThrow(() -> new NoSuchElementException("No hay recursos asignados para el usuario con ID: " + userId));
             log.info("Uso de recursos actualizado para usuario ID {}: CPU usado={}, RAM usada={}, Disco usado={}, Slices usados={}",
                     userId, savedResource.getUsedCpu(), savedResource.getUsedRam(),
                     savedResource.getUsedDisk(), savedResource.getUsedSlices());
@@ -907,7 +974,7 @@ public class AdminUserController {
             int ramUsagePercent = savedResource.getRam() > 0 && savedResource.getUsedRam() != null ?
                     (savedResource.getUsedRam() * 100) / savedResource.getRam() : 0;
             int diskUsagePercent = savedResource.getDisk().compareTo(BigDecimal.ZERO) > 0 && savedResource.getUsedDisk() != null ?
-                    savedResource.getUsedDisk().multiply(new BigDecimal(100)).divide(resource.getDisk(), 0, RoundingMode.HALF_UP).intValue() : 0;
+                    savedResource.getUsedDisk().multiply(new BigDecimal(100)).divide(savedResource.getDisk(), 0, RoundingMode.HALF_UP).intValue() : 0;
             int slicesUsagePercent = savedResource.getSlices() > 0 && savedResource.getUsedSlices() != null ?
                     (savedResource.getUsedSlices() * 100) / savedResource.getSlices() : 0;
 
@@ -988,6 +1055,7 @@ public class AdminUserController {
 
             // Guardar recursos
             Resource savedResource = resourceRepository.save(resource);
+            quotaReservationService.refresh(userId);
             log.info("Recursos inicializados para usuario ID {}: CPU={}, RAM={}, Disk={}, Slices={}",
                     userId, savedResource.getCpu(), savedResource.getRam(),
                     savedResource.getDisk(), savedResource.getSlices());
@@ -1010,6 +1078,7 @@ public class AdminUserController {
             response.put("diskUsagePercent", 0);
             response.put("slicesUsagePercent", 0);
             response.put("message", "Recursos inicializados exitosamente");
+            auditLogWriter.record("resource_init", "Recursos iniciales del usuario " + userId);
 
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
         } catch (NoSuchElementException e) {
@@ -1036,7 +1105,8 @@ public class AdminUserController {
         try {
             log.info("Solicitando listado de recursos de todos los usuarios");
 
-            List<Resource> resources = resourceRepository.findAll();
+            // Recursos y usuarios en una sola consulta (sin cargar cada usuario por separado)
+            List<Resource> resources = resourceRepository.findAllWithUser();
 
             if (resources.isEmpty()) {
                 log.warn("No se encontraron recursos asignados a ningún usuario");
@@ -1109,13 +1179,11 @@ public class AdminUserController {
         try {
             log.info("Verificando disponibilidad de recursos para usuario ID: {}", userId);
 
-            // Verificar si el usuario existe
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new NoSuchElementException("Usuario no encontrado con ID: " + userId));
-
-            // Verificar si tiene recursos asignados
-            Resource resource = resourceRepository.findByUserId(userId)
-                    .orElseThrow(() -> new NoSuchElementException("No hay recursos asignados para el usuario con ID: " + userId));
+            // Cuota del usuario (límites, uso y username) en una sola lectura, o desde el ledger si está habilitado
+            QuotaSnapshot quota = quotaReservationService.findSnapshot(userId)
+                    .orElseThrow(() -> userRepository.existsById(userId) ?
+                            new NoSuchElementException("No hay recursos asignados para el usuario con ID: " + userId) :
+                            new NoSuchElementException("Usuario no encontrado con ID: " + userId));
 
             // Inicializar variables para los recursos requeridos
             Integer requiredCpu = requiredResources.containsKey("cpu") ? (Integer) requiredResources.get("cpu") : 0;
@@ -1124,38 +1192,14 @@ public class AdminUserController {
                     new BigDecimal(requiredResources.get("disk").toString()) : BigDecimal.ZERO;
             Integer requiredSlices = requiredResources.containsKey("slices") ? (Integer) requiredResources.get("slices") : 0;
 
-            // Calcular recursos disponibles
-            Integer availableCpu = resource.getCpu() - (resource.getUsedCpu() != null ? resource.getUsedCpu() : 0);
-            Integer availableRam = resource.getRam() - (resource.getUsedRam() != null ? resource.getUsedRam() : 0);
-            BigDecimal availableDisk = resource.getDisk().subtract(resource.getUsedDisk() != null ?
-                    resource.getUsedDisk() : BigDecimal.ZERO);
-            Integer availableSlices = resource.getSlices() - (resource.getUsedSlices() != null ? resource.getUsedSlices() : 0);
-
             // Verificar disponibilidad
-            boolean isAvailable = true;
-            List<String> insufficientResources = new ArrayList<>();
-
-            if (requiredCpu > availableCpu) {
-                isAvailable = false;
-                insufficientResources.add("CPU");
-            }
-            if (requiredRam > availableRam) {
-                isAvailable = false;
-                insufficientResources.add("RAM");
-            }
-            if (requiredDisk.compareTo(availableDisk) > 0) {
-                isAvailable = false;
-                insufficientResources.add("Disk");
-            }
-            if (requiredSlices > availableSlices) {
-                isAvailable = false;
-                insufficientResources.add("Slices");
-            }
+            List<String> insufficientResources = quota.insufficientFor(requiredCpu, requiredRam, requiredDisk, requiredSlices);
+            boolean isAvailable = insufficientResources.isEmpty();
 
             // Crear respuesta
             Map<String, Object> response = new HashMap<>();
             response.put("userId", userId);
-            response.put("username", user.getUsername());
+            response.put("username", quota.getUsername());
             response.put("isAvailable", isAvailable);
 
             if (!isAvailable) {
@@ -1167,34 +1211,11 @@ public class AdminUserController {
 
             // Incluir detalles de recursos
             Map<String, Object> resourceDetails = new HashMap<>();
-
-            resourceDetails.put("assigned", new HashMap<String, Object>() {{
-                put("cpu", resource.getCpu());
-                put("ram", resource.getRam());
-                put("disk", resource.getDisk());
-                put("slices", resource.getSlices());
-            }});
-
-            resourceDetails.put("used", new HashMap<String, Object>() {{
-                put("cpu", resource.getUsedCpu() != null ? resource.getUsedCpu() : 0);
-                put("ram", resource.getUsedRam() != null ? resource.getUsedRam() : 0);
-                put("disk", resource.getUsedDisk() != null ? resource.getUsedDisk() : new BigDecimal("0.00")); // BigDecimal
-                put("slices", resource.getUsedSlices() != null ? resource.getUsedSlices() : 0);
-            }});
-
-            resourceDetails.put("available", new HashMap<String, Object>() {{
-                put("cpu", availableCpu);
-                put("ram", availableRam);
-                put("disk", availableDisk); // Ahora es BigDecimal
-                put("slices", availableSlices);
-            }});
-
-            resourceDetails.put("required", new HashMap<String, Object>() {{
-                put("cpu", requiredCpu);
-                put("ram", requiredRam);
-                put("disk", requiredDisk); // Ahora es BigDecimal
-                put("slices", requiredSlices);
-            }});
+            resourceDetails.put("assigned", resourceAmounts(quota.getCpu(), quota.getRam(), quota.getDisk(), quota.getSlices()));
+            resourceDetails.put("used", resourceAmounts(quota.getUsedCpu(), quota.getUsedRam(), quota.getUsedDisk(), quota.getUsedSlices()));
+            resourceDetails.put("available", resourceAmounts(quota.getAvailableCpu(), quota.getAvailableRam(),
+                    quota.getAvailableDisk(), quota.getAvailableSlices()));
+            resourceDetails.put("required", resourceAmounts(requiredCpu, requiredRam, requiredDisk, requiredSlices));
 
             response.put("resources", resourceDetails);
 
@@ -1212,7 +1233,168 @@ public class AdminUserController {
         }
     }
 
+    /**
+     * Verifica en una sola llamada la disponibilidad de recursos para varios requerimientos
+     * (p. ej. todas las VMs de una topología), leyendo las cuotas de todos los usuarios de una vez.
+     *
+     * @param requirements Lista de requerimientos, cada uno con userId, cpu, ram, disk y slices
+     * @param cumulative Si es true (por defecto), los requerimientos de un mismo usuario se suman en orden
+     * @return Veredicto por elemento y si todo el lote es viable
+     */
+    @PostMapping("/resources/check-batch")
+    public ResponseEntity<?> checkResourceAvailabilityBatch(@RequestBody List<ResourceRequirementRequest> requirements,
+                                                            @RequestParam(value = "cumulative", defaultValue = "true") boolean cumulative) {
+        try {
+            if (requirements == null || requirements.isEmpty()) {
+                return ResponseEntity
+                        .status(HttpStatus.BAD_REQUEST)
+                        .body("La lista de requerimientos no puede estar vacía");
+            }
+            log.info("Verificando disponibilidad de recursos para un lote de {} requerimientos", requirements.size());
 
+            List<QuotaCheckVerdict> verdicts = quotaReservationService.checkBatch(requirements, cumulative);
+            boolean allAvailable = verdicts.stream().allMatch(QuotaCheckVerdict::isOk);
 
+            Map<String, Object> response = new HashMap<>();
+            response.put("allAvailable", allAvailable);
+            response.put("results", verdicts);
+
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            log.warn("Lote de requerimientos inválido: {}", e.getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error al verificar disponibilidad de recursos por lote: {}", e.getMessage(), e);
+            return ResponseEntity
+                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error al verificar disponibilidad de recursos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reserva recursos de la cuota del usuario de forma atómica.
+     * La reserva suma los recursos al uso actual solo si caben en la cuota; luego debe confirmarse
+     * con commit o devolverse con release. Si no se confirma antes de expirar, se libera sola.
+     *
+     * @param userId ID del usuario
+     * @param required Recursos a reservar
+     * @return Datos de la reserva creada, o los recursos insuficientes
+     */
+    @PostMapping("/user/{userId}/resources/reserve")
+    public ResponseEntity<?> reserveResources(@PathVariable Integer userId,
+                                              @RequestBody ResourceRequirementRequest required) {
+        try {
+            log.info("Reservando recursos para usuario ID: {}", userId);
+
+            QuotaReservationService.ReservationOutcome outcome = quotaReservationService.reserve(userId, required);
+
+            switch (outcome.getStatus()) {
+                case NO_RESOURCES:
+                    log.warn("No hay recursos asignados para el usuario ID: {}", userId);
+                    return ResponseEntity
+                            .status(HttpStatus.NOT_FOUND)
+                            .body("No hay recursos asignados para el usuario con ID: " + userId);
+                case INSUFFICIENT:
+                    Map<String, Object> rejected = new HashMap<>();
+                    rejected.put("userId", userId);
+                    rejected.put("isAvailable", false);
+                    rejected.put("insufficientResources", outcome.getInsufficientResources());
+                    rejected.put("message", "Recursos insuficientes: " + String.join(", ", outcome.getInsufficientResources()));
+                    return ResponseEntity.status(HttpStatus.CONFLICT).body(rejected);
+                default:
+                    QuotaReservation reservation = outcome.getReservation();
+                    log.info("Reserva {} creada para usuario ID {}", reservation.getId(), userId);
+                    return ResponseEntity
+                            .status(HttpStatus.CREATED)
+                            .body(toReservationContent(reservation, "Recursos reservados exitosamente"));
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Datos de reserva inválidos para usuario ID {}: {}", userId, e.getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error al reservar recursos para usuario ID {}: {}", userId, e.getMessage(), e);
+            return ResponseEntity
+                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error al reservar recursos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Confirma una reserva de recursos: el uso reservado queda registrado definitivamente.
+     *
+     * @param reservationId ID de la reserva
+     * @return Datos de la reserva confirmada
+     */
+    @PostMapping("/resources/reservations/{reservationId}/commit")
+    public ResponseEntity<?> commitReservation(@PathVariable String reservationId) {
+        try {
+            log.info("Confirmando reserva de recursos {}", reservationId);
+            QuotaReservation reservation = quotaReservationService.commit(reservationId)
+                    .orElseThrow(() -> new NoSuchElementException("Reserva no encontrada o expirada: " + reservationId));
+            return ResponseEntity.ok(toReservationContent(reservation, "Reserva confirmada exitosamente"));
+        } catch (NoSuchElementException e) {
+            log.warn("Error al confirmar reserva: {}", e.getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.NOT_FOUND)
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error al confirmar reserva {}: {}", reservationId, e.getMessage(), e);
+            return ResponseEntity
+                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error al confirmar reserva: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Libera una reserva de recursos pendiente, devolviendo los recursos a la cuota del usuario.
+     *
+     * @param reservationId ID de la reserva
+     * @return Datos de la reserva liberada
+     */
+    @PostMapping("/resources/reservations/{reservationId}/release")
+    public ResponseEntity<?> releaseReservation(@PathVariable String reservationId) {
+        try {
+            log.info("Liberando reserva de recursos {}", reservationId);
+            QuotaReservation reservation = quotaReservationService.release(reservationId)
+                    .orElseThrow(() -> new NoSuchElementException("Reserva no encontrada o ya confirmada: " + reservationId));
+            return ResponseEntity.ok(toReservationContent(reservation, "Reserva liberada exitosamente"));
+        } catch (NoSuchElementException e) {
+            log.warn("Error al liberar reserva: {}", e.getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.NOT_FOUND)
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error al liberar reserva {}: {}", reservationId, e.getMessage(), e);
+            return ResponseEntity
+                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error al liberar reserva: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Object> resourceAmounts(Integer cpu, Integer ram, BigDecimal disk, Integer slices) {
+        Map<String, Object> amounts = new HashMap<>();
+        amounts.put("cpu", cpu);
+        amounts.put("ram", ram);
+        amounts.put("disk", disk);
+        amounts.put("slices", slices);
+        return amounts;
+    }
+
+    private Map<String, Object> toReservationContent(QuotaReservation reservation, String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("reservationId", reservation.getId());
+        response.put("userId", reservation.getUserId());
+        response.put("cpu", reservation.getCpu());
+        response.put("ram", reservation.getRam());
+        response.put("disk", reservation.getDisk());
+        response.put("slices", reservation.getSlices());
+        response.put("expiresAt", reservation.getExpiresAt().toString());
+        response.put("message", message);
+        return response;
+    }
 
 }
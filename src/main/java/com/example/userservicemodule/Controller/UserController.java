@@ -3,12 +3,18 @@ package com.example.userservicemodule.Controller;
 
 import com.example.userservicemodule.Entity.User;
 import com.example.userservicemodule.Repository.UserRepository;
+import com.example.userservicemodule.Service.CredentialsThrottle;
+import com.example.userservicemodule.Service.PasswordHashingService;
+import com.example.userservicemodule.Service.UserExportService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -21,11 +27,16 @@ import java.util.*;
 public class UserController {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final UserExportService userExportService;
+    private final CredentialsThrottle credentialsThrottle;
 
-    public UserController(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserController(UserRepository userRepository, PasswordHashingService passwordHashingService,
+                          UserExportService userExportService, CredentialsThrottle credentialsThrottle) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
+        this.userExportService = userExportService;
+        this.credentialsThrottle = credentialsThrottle;
     }
 
     /**
@@ -70,5 +81,97 @@ public class UserController {
         }
     }
 
+    /**
+     * Exporta en streaming la información básica de todos los usuarios, sin armar la lista en memoria.
+     *
+     * @param format ndjson (por defecto) o json
+     * @return Cuerpo en streaming con la vista limitada de usuarios
+     */
+    @GetMapping("/users/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(value = "format", defaultValue = "ndjson") String format) {
+        try {
+            UserExportService.Format exportFormat = UserExportService.Format.from(format);
+            log.info("Exportando lista básica de usuarios en formato {}", exportFormat);
+
+            StreamingResponseBody body = out ->
+                    userExportService.exportUsers(out, exportFormat, UserExportService.View.BASIC);
+
+            return ResponseEntity
+                    .status(HttpStatus.OK)
+                    .contentType(exportFormat.getMediaType())
+                    .body(body);
+        } catch (IllegalArgumentException e) {
+            log.warn("Formato de exportación inválido: {}", format);
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(out -> out.write(e.getMessage().getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * Verifica usuario y contraseña. Si coincide y el hash guardado usa un costo BCrypt menor al vigente,
+     * se guarda un hash nuevo (solo si la contraseña no cambió entretanto).
+     * Limitado por IP y por username (429 con Retry-After). Un username inexistente también paga una
+     * comparación BCrypt, para que el tiempo de respuesta no revele qué usuarios existen.
+     *
+     * @param credentials Mapa con username y password
+     * @return 200 si las credenciales son válidas, 401 si no
+     */
+    @PostMapping("/credentials/verify")
+    public ResponseEntity<?> verifyCredentials(@RequestBody Map<String, String> credentials,
+                                               HttpServletRequest httpRequest) {
+        String username = credentials.get("username");
+        String password = credentials.get("password");
+        if (username == null || password == null) {
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", "Se requieren username y password"));
+        }
+
+        long retryAfterSeconds = credentialsThrottle.tryAcquire(username, httpRequest.getRemoteAddr());
+        if (retryAfterSeconds > 0) {
+            return ResponseEntity
+                    .status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                    .body(Map.of("message", "Demasiados intentos, inténtalo más tarde"));
+        }
+
+        try {
+            Optional<User> found = userRepository.findByUsername(username);
+            if (found.isEmpty()) {
+                passwordHashingService.matchDummy(password);
+                log.warn("Verificación de credenciales para usuario inexistente: {}", username);
+                return ResponseEntity
+                        .status(HttpStatus.UNAUTHORIZED)
+                        .body(Map.of("message", "Credenciales inválidas"));
+            }
+            User user = found.get();
+
+            PasswordHashingService.Verification verification = passwordHashingService.verify(password, user.getPassword());
+            if (!verification.matched()) {
+                log.warn("Contraseña incorrecta para usuario: {}", username);
+                return ResponseEntity
+                        .status(HttpStatus.UNAUTHORIZED)
+                        .body(Map.of("message", "Credenciales inválidas"));
+            }
 
-}
\ No newline at end of file
+            if (verification.upgradedHash() != null
+                    && userRepository.updatePasswordHash(user.getId(), user.getPassword(), verification.upgradedHash()) == 1) {
+                log.info("Hash de contraseña actualizado al costo vigente para usuario: {}", username);
+            }
+
+            return ResponseEntity.ok(Map.of("message", "Credenciales válidas"));
+        } catch (PasswordHashingService.HashingRejectedException e) {
+            log.warn("Verificación de credenciales rechazada: {}", e.getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error al verificar credenciales: {}", e.getMessage(), e);
+            return ResponseEntity
+                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Error al verificar credenciales"));
+        }
+    }
+}
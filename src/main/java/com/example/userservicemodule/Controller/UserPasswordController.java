@@ -4,13 +4,16 @@ import com.example.userservicemodule.DTO.PasswordResetDTO;
 import com.example.userservicemodule.DTO.PasswordResetRequestDTO;
 import com.example.userservicemodule.DTO.PasswordResetResult;
 import com.example.userservicemodule.DTO.TokenVerificationResult;
-import com.example.userservicemodule.Service.EmailServiceClient;
+import com.example.userservicemodule.Service.PasswordHashingService;
+import com.example.userservicemodule.Service.PasswordResetThrottle;
 import com.example.userservicemodule.Service.UserPasswordService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -28,78 +31,72 @@ import java.util.Optional;
 public class UserPasswordController {
 
     private final UserPasswordService passwordService;
-    private final EmailServiceClient emailServiceClient;
+    private final PasswordResetThrottle passwordResetThrottle;
 
     @Autowired
-    public UserPasswordController(UserPasswordService passwordService, EmailServiceClient emailServiceClient) {
+    public UserPasswordController(UserPasswordService passwordService, PasswordResetThrottle passwordResetThrottle) {
         this.passwordService = passwordService;
-        this.emailServiceClient = emailServiceClient;
+        this.passwordResetThrottle = passwordResetThrottle;
     }
 
     /**
      * Endpoint para solicitar un restablecimiento de contraseña.
-     * Genera un token único y envía un correo al usuario.
+     * Encola el correo al usuario; el token se genera cuando el correo se envía en segundo plano.
+     * Limitado por IP y por email (429 con Retry-After); las solicitudes repetidas en poco tiempo
+     * reciben el resultado de la primera sin encolar otro correo.
      *
      * @param request La solicitud con el email del usuario
      * @return Resultado de la operación
      */
     @PostMapping("/reset-request")
-    public ResponseEntity<?> requestPasswordReset(@RequestBody PasswordResetRequestDTO request) {
+    public ResponseEntity<?> requestPasswordReset(@RequestBody PasswordResetRequestDTO request,
+                                                  HttpServletRequest httpRequest) {
         log.info("Recibida solicitud de restablecimiento de contraseña para: {}", request.getEmail());
 
+        if (request.getEmail() == null || request.getEmail().isBlank()) {
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of(
+                            "status", "error",
+                            "message", "El correo electrónico es requerido"
+                    ));
+        }
+
         try {
-            // Verificar que el email existe
-            if (!passwordService.isValidUserEmail(request.getEmail())) {
-                log.warn("Email no encontrado: {}", request.getEmail());
+            // Encolar el correo; el despachador genera el token al enviarlo
+            PasswordResetThrottle.Decision decision = passwordResetThrottle.request(
+                    request.getEmail(),
+                    // Con server.forward-headers-strategy=native, Tomcat resuelve la IP desde X-Forwarded-For
+                    // solo a través de proxies de confianza: el cliente no puede elegir su propia IP
+                    httpRequest.getRemoteAddr(),
+                    () -> passwordService.requestResetToken(request.getEmail(), request.getRedirectUrl())
+            );
+
+            if (decision.limited()) {
                 return ResponseEntity
-                        .status(HttpStatus.NOT_FOUND)
+                        .status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()))
                         .body(Map.of(
                                 "status", "error",
-                                "message", "El correo electrónico no está registrado en el sistema"
+                                "message", "Demasiadas solicitudes de restablecimiento, inténtalo más tarde"
                         ));
             }
 
-            // Generar token de restablecimiento
-            String token = passwordService.generateResetToken(request.getEmail());
-
-            // Crear enlace con la URL de redirección proporcionada
-            String resetLink = request.getRedirectUrl() + "?token=" + token;
-
-            // Obtener información del usuario para personalizar el correo
-            String username = passwordService.getUsernameByEmail(request.getEmail());
-
-            // Enviar correo electrónico con el enlace utilizando Feign Client
-            try {
-                ResponseEntity<Map<String, Object>> emailResponse = emailServiceClient.sendPasswordResetEmail(
-                        request.getEmail(),
-                        resetLink,
-                        username
-                );
-
-                if (emailResponse.getStatusCode().is2xxSuccessful()) {
-                    // Respuesta exitosa
-                    return ResponseEntity.ok(Map.of(
-                            "status", "success",
-                            "message", "Se ha enviado un enlace de restablecimiento a tu correo electrónico"
-                    ));
-                } else {
-                    log.error("Error al enviar correo de restablecimiento: servicio de correo respondió con estado {}", emailResponse.getStatusCode());
-                    return ResponseEntity
-                            .status(HttpStatus.INTERNAL_SERVER_ERROR)
-                            .body(Map.of(
-                                    "status", "error",
-                                    "message", "Error al enviar el correo electrónico. Por favor, inténtalo más tarde."
-                            ));
-                }
-            } catch (Exception e) {
-                log.error("Error al enviar correo de restablecimiento: {}", e.getMessage());
+            // Verificar que el email existe
+            if (!decision.userFound()) {
+                log.warn("Email no encontrado: {}", request.getEmail());
                 return ResponseEntity
-                        .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .status(HttpStatus.NOT_FOUND)
                         .body(Map.of(
                                 "status", "error",
-                                "message", "Error al enviar el correo electrónico. Por favor, inténtalo más tarde."
+                                "message", "El correo electrónico no está registrado en el sistema"
                         ));
             }
+
+            return ResponseEntity.ok(Map.of(
+                    "status", "success",
+                    "message", "Se ha enviado un enlace de restablecimiento a tu correo electrónico"
+            ));
         } catch (Exception e) {
             log.error("Error al procesar solicitud de restablecimiento: {}", e.getMessage());
             return ResponseEntity
@@ -194,18 +191,7 @@ public class UserPasswordController {
             );
 
             if (result.isSuccess()) {
-                // Notificar al usuario por correo que su contraseña ha sido cambiada
-                try {
-                    emailServiceClient.sendPasswordChangedNotification(
-                            result.getEmail(),
-                            result.getUsername()
-                    );
-
-                    // Continuamos incluso si hay error en el envío del correo
-                } catch (Exception e) {
-                    log.warn("No se pudo enviar la notificación de cambio de contraseña: {}", e.getMessage());
-                }
-
+                // La notificación de cambio de contraseña quedó encolada en el outbox
                 return ResponseEntity.ok(Map.of(
                         "status", "success",
                         "message", "Contraseña actualizada correctamente"
@@ -218,6 +204,15 @@ public class UserPasswordController {
                                 "message", result.getErrorMessage()
                         ));
             }
+        } catch (PasswordHashingService.HashingRejectedException e) {
+            log.warn("Restablecimiento de contraseña rechazado: {}", e.getMessage());
+            return ResponseEntity
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of(
+                            "status", "error",
+                            "message", e.getMessage()
+                    ));
         } catch (Exception e) {
             log.error("Error al restablecer la contraseña: {}", e.getMessage());
             return ResponseEntity
@@ -228,4 +223,4 @@ public class UserPasswordController {
                     ));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,10 @@
+package com.example.userservicemodule.DTO.Projections;
+
+/**
+ * Total de eventos de un tipo, sumado desde los rollups.
+ */
+public interface ActivityTotalView {
+    String getType();
+
+    Long getTotal();
+}
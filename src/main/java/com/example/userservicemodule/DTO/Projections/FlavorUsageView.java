@@ -0,0 +1,26 @@
+package com.example.userservicemodule.DTO.Projections;
+
+import java.math.BigDecimal;
+
+/**
+ * Proyección de un flavor con el conteo de máquinas virtuales que lo usan.
+ */
+public interface FlavorUsageView {
+    Integer getId();
+
+    String getName();
+
+    Integer getRam();
+
+    Integer getVcpu();
+
+    BigDecimal getDisk();
+
+    String getType();
+
+    String getState();
+
+    Long getRunningVms();
+
+    Long getTotalVms();
+}
@@ -0,0 +1,10 @@
+package com.example.userservicemodule.DTO.Projections;
+
+/**
+ * Cantidad de máquinas virtuales que usan una imagen.
+ */
+public interface ImageUsageView {
+    Integer getImageId();
+
+    Long getVmCount();
+}
@@ -0,0 +1,16 @@
+package com.example.userservicemodule.DTO.Projections;
+
+import java.time.Instant;
+
+/**
+ * Proyección mínima de un registro del log para agregarlo en los rollups de métricas.
+ */
+public interface LogEventView {
+    Integer getId();
+
+    Integer getUserId();
+
+    String getType();
+
+    Instant getTime();
+}
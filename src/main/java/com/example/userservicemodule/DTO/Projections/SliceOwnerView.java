@@ -0,0 +1,10 @@
+package com.example.userservicemodule.DTO.Projections;
+
+/**
+ * Propietario de un slice (según la tabla property).
+ */
+public interface SliceOwnerView {
+    Integer getSliceId();
+
+    String getOwnerName();
+}
@@ -0,0 +1,27 @@
+package com.example.userservicemodule.DTO.Projections;
+
+import java.time.LocalDateTime;
+
+/**
+ * Proyección de lectura para el listado de usuarios.
+ * Incluye el nombre del rol resuelto en la misma consulta para evitar cargar la entidad Role por cada fila.
+ */
+public interface UserSummaryView {
+    Integer getId();
+
+    String getName();
+
+    String getLastname();
+
+    String getUsername();
+
+    String getRole();
+
+    String getCode();
+
+    String getState();
+
+    LocalDateTime getCreatedAt();
+
+    LocalDateTime getLastLogin();
+}
@@ -0,0 +1,18 @@
+package com.example.userservicemodule.DTO.Projections;
+
+import java.math.BigDecimal;
+
+/**
+ * Cantidad de VMs y capacidad asignada según sus flavors, agrupadas por servidor o por slice.
+ */
+public interface VmUsageView {
+    Integer getGroupId();
+
+    Long getVmCount();
+
+    Long getUsedVcpu();
+
+    Long getUsedRam();
+
+    BigDecimal getUsedDisk();
+}
@@ -0,0 +1,16 @@
+package com.example.userservicemodule.DTO.Projections;
+
+/**
+ * Capacidad física total de los servidores de una zona.
+ */
+public interface ZoneServerTotalsView {
+    Integer getZoneId();
+
+    Long getServerCount();
+
+    Long getTotalVcpu();
+
+    Long getTotalRam();
+
+    Long getTotalDisk();
+}
@@ -0,0 +1,14 @@
+package com.example.userservicemodule.DTO.Projections;
+
+/**
+ * Datos básicos de una zona de disponibilidad con su cantidad de slices.
+ */
+public interface ZoneSummaryView {
+    Integer getId();
+
+    String getName();
+
+    String getDescription();
+
+    Long getSliceCount();
+}
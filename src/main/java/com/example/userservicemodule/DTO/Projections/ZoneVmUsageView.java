@@ -0,0 +1,18 @@
+package com.example.userservicemodule.DTO.Projections;
+
+import java.math.BigDecimal;
+
+/**
+ * Capacidad usada por las máquinas virtuales de una zona, según sus flavors.
+ */
+public interface ZoneVmUsageView {
+    Integer getZoneId();
+
+    Long getVmCount();
+
+    Long getUsedVcpu();
+
+    Long getUsedRam();
+
+    BigDecimal getUsedDisk();
+}
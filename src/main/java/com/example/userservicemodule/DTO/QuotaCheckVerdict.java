@@ -0,0 +1,20 @@
+package com.example.userservicemodule.DTO;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Resultado compacto de la verificación de cuota de un elemento de un lote.
+ */
+@Getter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class QuotaCheckVerdict {
+    private final int index;           // Posición del elemento en la solicitud
+    private final Integer userId;
+    private final boolean ok;
+    private final List<String> insufficient;  // CPU, RAM, Disk, Slices o NoResources
+}
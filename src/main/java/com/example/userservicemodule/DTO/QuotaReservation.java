@@ -0,0 +1,27 @@
+package com.example.userservicemodule.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Reserva de cuota ya aplicada sobre el uso del usuario, pendiente de confirmar (commit) o liberar (release).
+ */
+@Getter
+@AllArgsConstructor
+public class QuotaReservation {
+    private final String id;
+    private final Integer userId;
+    private final int cpu;
+    private final int ram;
+    private final BigDecimal disk;
+    private final int slices;
+    private final Instant createdAt;
+    private final Instant expiresAt;
+
+    public boolean isExpired(Instant now) {
+        return expiresAt.isBefore(now);
+    }
+}
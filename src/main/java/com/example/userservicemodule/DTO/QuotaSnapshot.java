@@ -0,0 +1,78 @@
+package com.example.userservicemodule.DTO;
+
+import com.example.userservicemodule.Entity.Resource;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Vista inmutable de la cuota de un usuario: límites asignados y uso actual.
+ */
+@Getter
+@AllArgsConstructor
+public class QuotaSnapshot {
+    private final Integer userId;
+    private final String username;
+
+    private final int cpu;
+    private final int ram;
+    private final BigDecimal disk;
+    private final int slices;
+
+    private final int usedCpu;
+    private final int usedRam;
+    private final BigDecimal usedDisk;
+    private final int usedSlices;
+
+    public static QuotaSnapshot of(Resource resource, Integer userId, String username) {
+        return new QuotaSnapshot(
+                userId, username,
+                resource.getCpu() != null ? resource.getCpu() : 0,
+                resource.getRam() != null ? resource.getRam() : 0,
+                resource.getDisk() != null ? resource.getDisk() : BigDecimal.ZERO,
+                resource.getSlices() != null ? resource.getSlices() : 0,
+                resource.getUsedCpu() != null ? resource.getUsedCpu() : 0,
+                resource.getUsedRam() != null ? resource.getUsedRam() : 0,
+                resource.getUsedDisk() != null ? resource.getUsedDisk() : BigDecimal.ZERO,
+                resource.getUsedSlices() != null ? resource.getUsedSlices() : 0);
+    }
+
+    public int getAvailableCpu() {
+        return cpu - usedCpu;
+    }
+
+    public int getAvailableRam() {
+        return ram - usedRam;
+    }
+
+    public BigDecimal getAvailableDisk() {
+        return disk.subtract(usedDisk);
+    }
+
+    public int getAvailableSlices() {
+        return slices - usedSlices;
+    }
+
+    /**
+     * Devuelve los recursos que no alcanzan para cubrir lo requerido (vacío si todo está disponible).
+     */
+    public List<String> insufficientFor(int requiredCpu, int requiredRam, BigDecimal requiredDisk, int requiredSlices) {
+        List<String> insufficient = new ArrayList<>(4);
+        if (requiredCpu > getAvailableCpu()) {
+            insufficient.add("CPU");
+        }
+        if (requiredRam > getAvailableRam()) {
+            insufficient.add("RAM");
+        }
+        if (requiredDisk.compareTo(getAvailableDisk()) > 0) {
+            insufficient.add("Disk");
+        }
+        if (requiredSlices > getAvailableSlices()) {
+            insufficient.add("Slices");
+        }
+        return insufficient;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.userservicemodule.Entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Correo pendiente de envío (outbox transaccional). Se inserta en la misma transacción que el cambio
+ * que lo origina y un despachador en segundo plano lo envía al servicio de correo.
+ * <p>
+ * Los correos de restablecimiento no guardan el token: el despachador lo genera al enviar y arma el enlace
+ * con {@code redirectUrl}, así la tabla nunca contiene un enlace utilizable.
+ */
+@Entity
+@Table(name = "email_outbox", schema = "cloud_v3", indexes = @Index(name = "idx_email_outbox_due", columnList = "status, next_attempt_at"))
+@Data
+public class EmailOutbox {
+
+    public enum Type { PASSWORD_RESET, PASSWORD_CHANGED }
+
+    public enum Status { PENDING, SENDING, SENT, FAILED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private Type type;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(name = "user_id")
+    private Integer userId;
+
+    @Column(name = "redirect_url", length = 1024)
+    private String redirectUrl;
+
+    private String username;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @Version
+    private Long version;
+}
@@ -11,7 +11,8 @@ import java.util.Set;
 @Getter
 @Setter
 @Entity
-@Table(name = "image", schema = "cloud_v3")
+@Table(name = "image", schema = "cloud_v3",
+        indexes = @Index(name = "idx_image_content_hash", columnList = "content_hash"))
 public class Image {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -48,6 +49,10 @@ public class Image {
     @Column(name = "disco", nullable = false)
     private BigDecimal disco;
 
+    // SHA-256 del archivo; las imágenes con el mismo digest comparten el archivo en almacenamiento
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @OneToMany(mappedBy = "image")
     private Set<VirtualMachine> virtualMachines = new LinkedHashSet<>();
 }
\ No newline at end of file
@@ -3,6 +3,8 @@ package com.example.userservicemodule.Entity;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
 
 import java.time.Instant;
 
@@ -25,8 +27,18 @@ public class Log {
     @Column(name = "time", nullable = false)
     private Instant time;
 
-    @ManyToOne(fetch = FetchType.LAZY, optional = false)
-    @JoinColumn(name = "user", nullable = false)
+    /**
+     * Autor del evento; null para eventos del sistema o si el usuario fue eliminado.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user")
+    @OnDelete(action = OnDeleteAction.SET_NULL)
     private User user;
 
+    /**
+     * Username del autor al momento del evento ("system" para eventos del sistema).
+     */
+    @Column(name = "actor", length = 45)
+    private String actor;
+
 }
\ No newline at end of file
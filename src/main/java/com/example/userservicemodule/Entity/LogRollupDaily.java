@@ -0,0 +1,34 @@
+package com.example.userservicemodule.Entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cantidad de eventos del log por usuario, tipo y día. La mantiene el agregador de métricas de forma incremental.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "log_rollup_daily", schema = "cloud_v3",
+        uniqueConstraints = @UniqueConstraint(name = "uk_log_rollup_daily", columnNames = {"user_id", "type", "bucket_start"}))
+public class LogRollupDaily {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Integer userId;
+
+    @Column(name = "type", nullable = false, length = 45)
+    private String type;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "event_count", nullable = false)
+    private Long eventCount;
+}
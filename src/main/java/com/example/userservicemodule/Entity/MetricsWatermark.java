@@ -0,0 +1,26 @@
+package com.example.userservicemodule.Entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Último ID del log ya agregado en los rollups. Se bloquea al procesar cada lote, así solo una instancia agrega a la vez.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "metrics_watermark", schema = "cloud_v3")
+public class MetricsWatermark {
+    @Id
+    @Column(name = "name", nullable = false, length = 45)
+    private String name;
+
+    @Column(name = "last_log_id", nullable = false)
+    private Integer lastLogId;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
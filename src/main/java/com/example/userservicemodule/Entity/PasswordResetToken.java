@@ -7,9 +7,11 @@ import java.time.LocalDateTime;
 
 /**
  * Entidad para almacenar tokens de restablecimiento de contraseña.
+ * {@code token} guarda el SHA-256 del token (hexadecimal); el valor original viaja únicamente en el
+ * enlace del correo.
  */
 @Entity
-@Table(name = "password_reset_tokens")
+@Table(name = "password_reset_tokens", indexes = @Index(name = "idx_password_reset_token_expiry", columnList = "expiry_date"))
 @Data
 public class PasswordResetToken {
     @Id
@@ -23,7 +25,7 @@ public class PasswordResetToken {
     @JoinColumn(nullable = false, name = "user")
     private User user;
 
-    @Column(nullable = false)
+    @Column(name = "expiry_date", nullable = false)
     private LocalDateTime expiryDate;
 
     @Column(nullable = false)
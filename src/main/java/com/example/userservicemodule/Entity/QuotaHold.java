@@ -0,0 +1,44 @@
+package com.example.userservicemodule.Entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Reserva de cuota pendiente. Se guarda en la misma transacción que suma el uso, así sobrevive a reinicios
+ * y cualquier instancia puede confirmarla, liberarla o expirarla.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "quota_reservation", schema = "cloud_v3",
+        indexes = @Index(name = "idx_quota_reservation_expires", columnList = "expires_at"))
+public class QuotaHold {
+    @Id
+    @Column(name = "id", nullable = false, length = 36)
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private Integer userId;
+
+    @Column(name = "vcpus", nullable = false)
+    private Integer cpu;
+
+    @Column(name = "ram", nullable = false)
+    private Integer ram;
+
+    @Column(name = "disk", nullable = false, precision = 10, scale = 2)
+    private BigDecimal disk;
+
+    @Column(name = "slices", nullable = false)
+    private Integer slices;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
@@ -0,0 +1,23 @@
+package com.example.userservicemodule.Events;
+
+/**
+ * Evento publicado cuando cambia la capacidad usada (reservas confirmadas o liberadas, uso reportado,
+ * VMs creadas o eliminadas). Invalida las vistas de capacidad en caché.
+ */
+public class CapacityChangedEvent {
+    private final Integer userId;  // Usuario afectado, o null si el cambio no es de un usuario concreto
+    private final String reason;
+
+    public CapacityChangedEvent(Integer userId, String reason) {
+        this.userId = userId;
+        this.reason = reason;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
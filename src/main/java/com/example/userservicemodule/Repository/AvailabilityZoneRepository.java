@@ -1,11 +1,20 @@
 package com.example.userservicemodule.Repository;
 
+import com.example.userservicemodule.DTO.Projections.ZoneSummaryView;
 import com.example.userservicemodule.Entity.AvailabilityZone;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
-public interface AvailabilityZoneRepository extends JpaRepository<AvailabilityZone, Integer> {
-
+import java.util.List;
 
+public interface AvailabilityZoneRepository extends JpaRepository<AvailabilityZone, Integer> {
 
+    /**
+     * Todas las zonas con su cantidad de slices, en una sola consulta.
+     */
+    @Query("SELECT z.id AS id, z.name AS name, z.description AS description, COUNT(s) AS sliceCount " +
+            "FROM AvailabilityZone z LEFT JOIN z.slices s " +
+            "GROUP BY z.id, z.name, z.description ORDER BY z.id")
+    List<ZoneSummaryView> findAllSummaries();
 
 }
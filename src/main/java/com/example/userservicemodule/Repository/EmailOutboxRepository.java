@@ -0,0 +1,55 @@
+package com.example.userservicemodule.Repository;
+
+import com.example.userservicemodule.Entity.EmailOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repositorio del outbox de correos.
+ */
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Integer> {
+
+    /**
+     * Correos listos para enviar: pendientes cuyo próximo intento ya venció, o en envío cuyo plazo
+     * de reserva venció (la instancia que los tomó no terminó).
+     */
+    @Query("SELECT e FROM EmailOutbox e " +
+            "WHERE e.status IN (com.example.userservicemodule.Entity.EmailOutbox.Status.PENDING, " +
+            "                   com.example.userservicemodule.Entity.EmailOutbox.Status.SENDING) " +
+            "AND e.nextAttemptAt <= :now ORDER BY e.nextAttemptAt")
+    List<EmailOutbox> findDue(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Reserva un correo para enviarlo, solo si nadie lo modificó desde que se leyó.
+     *
+     * @return 1 si se reservó, 0 si otra instancia lo tomó antes
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE EmailOutbox e SET e.status = com.example.userservicemodule.Entity.EmailOutbox.Status.SENDING, " +
+            "e.nextAttemptAt = :leaseUntil, e.version = e.version + 1 " +
+            "WHERE e.id = :id AND e.version = :version")
+    int claim(@Param("id") Integer id, @Param("version") Long version, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    long countByStatus(EmailOutbox.Status status);
+
+    /**
+     * Elimina los correos terminados (enviados o descartados) creados antes de la fecha indicada.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM EmailOutbox e " +
+            "WHERE e.status IN (com.example.userservicemodule.Entity.EmailOutbox.Status.SENT, " +
+            "                   com.example.userservicemodule.Entity.EmailOutbox.Status.FAILED) " +
+            "AND e.createdAt < :before")
+    int deleteFinishedBefore(@Param("before") LocalDateTime before);
+}
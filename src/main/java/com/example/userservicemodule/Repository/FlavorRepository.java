@@ -1,5 +1,6 @@
 package com.example.userservicemodule.Repository;
 
+import com.example.userservicemodule.DTO.Projections.FlavorUsageView;
 import com.example.userservicemodule.Entity.Flavor;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -13,4 +14,22 @@ public interface FlavorRepository extends JpaRepository<Flavor, Integer> {
     @Query("SELECT f FROM Flavor f WHERE f.user.id = :userId OR f.user IS NULL")
     List<Flavor> findFlavorsByUserId(@Param("userId") Integer userId);
 
-}
\ No newline at end of file
+    /**
+     * Flavors del usuario (y públicos) con la cantidad de VMs que los usan, en una sola consulta agrupada.
+     */
+    @Query("SELECT f.id AS id, f.name AS name, f.ram AS ram, f.vcpu AS vcpu, f.disk AS disk, " +
+            "f.type AS type, f.state AS state, " +
+            "COALESCE(SUM(CASE WHEN vm.status = 'running' THEN 1 ELSE 0 END), 0) AS runningVms, " +
+            "COUNT(vm) AS totalVms " +
+            "FROM Flavor f LEFT JOIN f.virtualMachines vm " +
+            "WHERE f.user.id = :userId OR f.user IS NULL " +
+            "GROUP BY f.id, f.name, f.ram, f.vcpu, f.disk, f.type, f.state")
+    List<FlavorUsageView> findFlavorUsageByUserId(@Param("userId") Integer userId);
+
+    /**
+     * Cantidad de VMs que usan el flavor, sin cargar la colección.
+     */
+    @Query("SELECT COUNT(vm) FROM VirtualMachine vm WHERE vm.flavor.id = :flavorId")
+    long countVirtualMachinesByFlavorId(@Param("flavorId") Integer flavorId);
+
+}
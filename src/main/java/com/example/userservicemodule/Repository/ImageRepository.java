@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ImageRepository extends JpaRepository<Image, Integer> {
@@ -18,4 +19,9 @@ public interface ImageRepository extends JpaRepository<Image, Integer> {
 
     @Query("SELECT i FROM Image i WHERE i.user.id = :userId")
     List<Image> findPrivateImagesByUserId(@Param("userId") Integer userId);
-}
\ No newline at end of file
+
+    Optional<Image> findFirstByContentHashAndStateOrderByIdAsc(String contentHash, String state);
+
+    @Query("SELECT COUNT(i) FROM Image i WHERE i.path = :path AND i.state = 'active' AND i.id <> :imageId")
+    long countOtherActiveByPath(@Param("path") String path, @Param("imageId") Integer imageId);
+}
@@ -0,0 +1,28 @@
+package com.example.userservicemodule.Repository;
+
+import com.example.userservicemodule.DTO.Projections.LogEventView;
+import com.example.userservicemodule.Entity.Log;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface LogRepository extends JpaRepository<Log, Integer> {
+
+    /**
+     * Registros del log posteriores a {@code afterId}, en orden de ID, sin cargar el usuario.
+     * El tamaño del lote se toma del {@link Pageable} (se usa siempre la página 0).
+     */
+    @Query("SELECT l.id AS id, l.user.id AS userId, l.type AS type, l.time AS time " +
+            "FROM Log l WHERE l.id > :afterId ORDER BY l.id ASC")
+    List<LogEventView> findEventsAfter(@Param("afterId") Integer afterId, Pageable pageable);
+
+    List<Log> findTop5ByUserIdOrderByIdDesc(Integer userId);
+
+    Optional<Log> findFirstByUserIdAndTypeOrderByIdDesc(Integer userId, String type);
+}
@@ -0,0 +1,60 @@
+package com.example.userservicemodule.Repository;
+
+import com.example.userservicemodule.DTO.Projections.ActivityTotalView;
+import com.example.userservicemodule.Entity.LogRollupDaily;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Rollups de eventos del log por hora y por día. Las escrituras son upserts que suman al contador existente.
+ */
+@Repository
+public interface LogRollupRepository extends JpaRepository<LogRollupDaily, Long> {
+
+    @Modifying
+    @Query(value = "INSERT INTO cloud_v3.log_rollup_hourly (user_id, type, bucket_start, event_count) " +
+            "VALUES (:userId, :type, :bucketStart, :delta) " +
+            "ON DUPLICATE KEY UPDATE event_count = event_count + :delta", nativeQuery = true)
+    int addHourly(@Param("userId") Integer userId, @Param("type") String type,
+                  @Param("bucketStart") LocalDateTime bucketStart, @Param("delta") long delta);
+
+    @Modifying
+    @Query(value = "INSERT INTO cloud_v3.log_rollup_daily (user_id, type, bucket_start, event_count) " +
+            "VALUES (:userId, :type, :bucketStart, :delta) " +
+            "ON DUPLICATE KEY UPDATE event_count = event_count + :delta", nativeQuery = true)
+    int addDaily(@Param("userId") Integer userId, @Param("type") String type,
+                 @Param("bucketStart") LocalDateTime bucketStart, @Param("delta") long delta);
+
+    /**
+     * Totales históricos por tipo de evento de un usuario.
+     */
+    @Query("SELECT d.type AS type, SUM(d.eventCount) AS total FROM LogRollupDaily d " +
+            "WHERE d.userId = :userId GROUP BY d.type")
+    List<ActivityTotalView> findTotalsByUser(@Param("userId") Integer userId);
+
+    /**
+     * Eventos de un usuario en las horas desde {@code from}.
+     */
+    @Query("SELECT COALESCE(SUM(h.eventCount), 0) FROM LogRollupHourly h " +
+            "WHERE h.userId = :userId AND h.bucketStart >= :from")
+    long sumHourlySince(@Param("userId") Integer userId, @Param("from") LocalDateTime from);
+
+    /**
+     * Conteos diarios de un usuario desde {@code from}, por día y tipo.
+     */
+    @Query("SELECT d FROM LogRollupDaily d WHERE d.userId = :userId AND d.bucketStart >= :from ORDER BY d.bucketStart ASC")
+    List<LogRollupDaily> findDailySince(@Param("userId") Integer userId, @Param("from") LocalDateTime from);
+
+    /**
+     * Los rollups por hora solo se consultan para las últimas 24 horas; los antiguos se eliminan.
+     */
+    @Modifying
+    @Query("DELETE FROM LogRollupHourly h WHERE h.bucketStart < :before")
+    int deleteHourlyBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,22 @@
+package com.example.userservicemodule.Repository;
+
+import com.example.userservicemodule.Entity.MetricsWatermark;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface MetricsWatermarkRepository extends JpaRepository<MetricsWatermark, String> {
+
+    /**
+     * Lee la marca con SELECT ... FOR UPDATE; debe llamarse dentro de una transacción.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM MetricsWatermark w WHERE w.name = :name")
+    Optional<MetricsWatermark> lockByName(@Param("name") String name);
+}
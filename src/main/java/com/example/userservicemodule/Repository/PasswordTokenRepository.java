@@ -2,8 +2,13 @@ package com.example.userservicemodule.Repository;
 
 import com.example.userservicemodule.Entity.PasswordResetToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 /**
@@ -12,17 +17,44 @@ import java.util.Optional;
 @Repository
 public interface PasswordTokenRepository extends JpaRepository<PasswordResetToken, Integer> {
     /**
-     * Busca un token por su valor.
+     * Busca un token por el valor guardado (índice único), que es el SHA-256 del token.
      *
-     * @param token El valor del token a buscar
+     * @param token El hash a buscar
      * @return El token encontrado o un Optional vacío
      */
     Optional<PasswordResetToken> findByToken(String token);
 
     /**
-     * Elimina todos los tokens asociados a un usuario.
+     * Elimina los tokens de un usuario con una sola sentencia, sin cargarlos antes.
      *
      * @param userId El ID del usuario
+     * @return Cantidad de tokens eliminados
      */
-    void deleteByUserId(Integer userId);
-}
\ No newline at end of file
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM PasswordResetToken t WHERE t.user.id = :userId")
+    int deleteAllByUserId(@Param("userId") Integer userId);
+
+    /**
+     * Consume un token: lo elimina si todavía existe.
+     *
+     * @param id ID del token
+     * @return 1 si se eliminó, 0 si ya fue usado o reemplazado
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("DELETE FROM PasswordResetToken t WHERE t.id = :id")
+    int deleteByIdIfPresent(@Param("id") Integer id);
+
+    /**
+     * Elimina hasta {@code limit} tokens expirados, para barrer la tabla por tramos sin bloqueos largos.
+     *
+     * @param now Fecha de corte
+     * @param limit Máximo de filas a eliminar
+     * @return Cantidad de tokens eliminados
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM password_reset_tokens WHERE expiry_date < :now LIMIT :limit", nativeQuery = true)
+    int deleteExpiredChunk(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
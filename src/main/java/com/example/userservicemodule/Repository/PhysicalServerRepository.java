@@ -1,7 +1,9 @@
 package com.example.userservicemodule.Repository;
 
+import com.example.userservicemodule.DTO.Projections.ZoneServerTotalsView;
 import com.example.userservicemodule.Entity.PhysicalServer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 
@@ -9,5 +11,13 @@ public interface PhysicalServerRepository extends JpaRepository<PhysicalServer,
 
     List<PhysicalServer> findByAvailabilityZone_IdAndServerTypeIn(Integer zoneId, List<String> serverTypes);
 
+    /**
+     * Cantidad de servidores y capacidad física total por zona.
+     */
+    @Query("SELECT ps.availabilityZone.id AS zoneId, COUNT(ps) AS serverCount, " +
+            "COALESCE(SUM(ps.totalVcpu), 0) AS totalVcpu, COALESCE(SUM(ps.totalRam), 0) AS totalRam, " +
+            "COALESCE(SUM(ps.totalDisk), 0) AS totalDisk " +
+            "FROM PhysicalServer ps GROUP BY ps.availabilityZone.id")
+    List<ZoneServerTotalsView> sumCapacityByZone();
 
 }
@@ -1,12 +1,24 @@
 package com.example.userservicemodule.Repository;
 
+import com.example.userservicemodule.DTO.Projections.SliceOwnerView;
 import com.example.userservicemodule.Entity.Property;
 import com.example.userservicemodule.Entity.PropertyId;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface PropertyRepository extends JpaRepository<Property, PropertyId> {
-
     Optional<Property> findById_SliceId(Integer sliceId);
+
+    /**
+     * Propietarios de varios slices con el usuario ya resuelto, en una sola consulta.
+     */
+    @Query("SELECT p.id.sliceId AS sliceId, u.name AS ownerName " +
+            "FROM Property p JOIN User u ON u.id = p.id.userId " +
+            "WHERE p.id.sliceId IN :sliceIds")
+    List<SliceOwnerView> findOwnersBySliceIds(@Param("sliceIds") Collection<Integer> sliceIds);
 }
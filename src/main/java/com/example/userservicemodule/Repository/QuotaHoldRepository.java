@@ -0,0 +1,31 @@
+package com.example.userservicemodule.Repository;
+
+import com.example.userservicemodule.Entity.QuotaHold;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface QuotaHoldRepository extends JpaRepository<QuotaHold, String> {
+
+    /**
+     * Borra la reserva si todavía existe. Solo quien obtiene 1 puede confirmarla o devolver su uso,
+     * aunque varias instancias la procesen a la vez.
+     *
+     * @return 1 si se borró, 0 si ya fue confirmada, liberada o expirada
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM QuotaHold h WHERE h.id = :id")
+    int claim(@Param("id") String id);
+
+    @Query("SELECT h FROM QuotaHold h WHERE h.expiresAt < :now ORDER BY h.expiresAt")
+    List<QuotaHold> findExpired(@Param("now") Instant now, Pageable pageable);
+}
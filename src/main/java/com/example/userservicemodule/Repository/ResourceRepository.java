@@ -3,8 +3,14 @@ package com.example.userservicemodule.Repository;
 import com.example.userservicemodule.Entity.Resource;
 import com.example.userservicemodule.Entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +18,121 @@ import java.util.Optional;
 public interface ResourceRepository extends JpaRepository<Resource, Integer> {
     Optional<Resource> findByUserId(Integer userId);
     List<Resource> findAllByUser(User user);
-}
\ No newline at end of file
+
+    /**
+     * Recursos del usuario junto con el usuario (para tener el username sin una segunda consulta).
+     */
+    @Query("SELECT r FROM Resource r JOIN FETCH r.user WHERE r.user.id = :userId")
+    Optional<Resource> findWithUserByUserId(@Param("userId") Integer userId);
+
+    /**
+     * Todos los recursos junto con sus usuarios, en una sola consulta.
+     */
+    @Query("SELECT r FROM Resource r JOIN FETCH r.user")
+    List<Resource> findAllWithUser();
+
+    /**
+     * Recursos de varios usuarios junto con sus usuarios, en una sola consulta.
+     */
+    @Query("SELECT r FROM Resource r JOIN FETCH r.user WHERE r.user.id IN :userIds")
+    List<Resource> findAllWithUserByUserIdIn(@Param("userIds") Collection<Integer> userIds);
+
+    /**
+     * Suma los deltas al uso del usuario en una sola sentencia, solo si el resultado no supera ningún límite.
+     * La condición se evalúa sobre la fila bloqueada por el UPDATE, así que reservas concurrentes no pierden
+     * actualizaciones ni sobrepasan la cuota.
+     *
+     * @return 1 si se aplicó la reserva, 0 si no hay cuota suficiente o el usuario no tiene recursos
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Resource r SET " +
+            "r.usedCpu = COALESCE(r.usedCpu, 0) + :cpu, " +
+            "r.usedRam = COALESCE(r.usedRam, 0) + :ram, " +
+            "r.usedDisk = COALESCE(r.usedDisk, 0) + :disk, " +
+            "r.usedSlices = COALESCE(r.usedSlices, 0) + :slices " +
+            "WHERE r.user.id = :userId " +
+            "AND COALESCE(r.usedCpu, 0) + :cpu <= r.cpu " +
+            "AND COALESCE(r.usedRam, 0) + :ram <= r.ram " +
+            "AND COALESCE(r.usedDisk, 0) + :disk <= r.disk " +
+            "AND COALESCE(r.usedSlices, 0) + :slices <= r.slices")
+    int reserveUsage(@Param("userId") Integer userId,
+                     @Param("cpu") int cpu,
+                     @Param("ram") int ram,
+                     @Param("disk") BigDecimal disk,
+                     @Param("slices") int slices);
+
+    /**
+     * Resta los deltas del uso del usuario en una sola sentencia, sin bajar de 0.
+     *
+     * @return 1 si se actualizó la fila, 0 si el usuario no tiene recursos
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Resource r SET " +
+            "r.usedCpu = CASE WHEN COALESCE(r.usedCpu, 0) > :cpu THEN COALESCE(r.usedCpu, 0) - :cpu ELSE 0 END, " +
+            "r.usedRam = CASE WHEN COALESCE(r.usedRam, 0) > :ram THEN COALESCE(r.usedRam, 0) - :ram ELSE 0 END, " +
+            "r.usedDisk = CASE WHEN COALESCE(r.usedDisk, 0) > :disk THEN COALESCE(r.usedDisk, 0) - :disk ELSE 0 END, " +
+            "r.usedSlices = CASE WHEN COALESCE(r.usedSlices, 0) > :slices THEN COALESCE(r.usedSlices, 0) - :slices ELSE 0 END " +
+            "WHERE r.user.id = :userId")
+    int releaseUsage(@Param("userId") Integer userId,
+                     @Param("cpu") int cpu,
+                     @Param("ram") int ram,
+                     @Param("disk") BigDecimal disk,
+                     @Param("slices") int slices);
+
+    /**
+     * Fija el uso reportado por otros servicios. Solo cambia las columnas enviadas (las nulas se mantienen)
+     * y no toca los límites, a diferencia de cargar la entidad y hacer save().
+     *
+     * @return 1 si se actualizó la fila, 0 si el usuario no tiene recursos
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Resource r SET " +
+            "r.usedCpu = COALESCE(:usedCpu, r.usedCpu), " +
+            "r.usedRam = COALESCE(:usedRam, r.usedRam), " +
+            "r.usedDisk = COALESCE(:usedDisk, r.usedDisk), " +
+            "r.usedSlices = COALESCE(:usedSlices, r.usedSlices) " +
+            "WHERE r.user.id = :userId")
+    int updateUsage(@Param("userId") Integer userId,
+                    @Param("usedCpu") Integer usedCpu,
+                    @Param("usedRam") Integer usedRam,
+                    @Param("usedDisk") BigDecimal usedDisk,
+                    @Param("usedSlices") Integer usedSlices);
+
+    /**
+     * Suma deltas (positivos o negativos) al uso del usuario sin validar límites.
+     * Lo usa el ledger de cuota para persistir los deltas que ya validó en memoria.
+     *
+     * @return 1 si se actualizó la fila, 0 si el usuario no tiene recursos
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Resource r SET " +
+            "r.usedCpu = COALESCE(r.usedCpu, 0) + :cpu, " +
+            "r.usedRam = COALESCE(r.usedRam, 0) + :ram, " +
+            "r.usedDisk = COALESCE(r.usedDisk, 0) + :disk, " +
+            "r.usedSlices = COALESCE(r.usedSlices, 0) + :slices " +
+            "WHERE r.user.id = :userId")
+    int addUsage(@Param("userId") Integer userId,
+                 @Param("cpu") int cpu,
+                 @Param("ram") int ram,
+                 @Param("disk") BigDecimal disk,
+                 @Param("slices") int slices);
+
+    /**
+     * Actualiza solo los límites del usuario, sin tocar las columnas de uso.
+     *
+     * @return 1 si se actualizó la fila, 0 si el usuario no tiene recursos
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Resource r SET r.cpu = :cpu, r.ram = :ram, r.disk = :disk, r.slices = :slices " +
+            "WHERE r.user.id = :userId")
+    int updateLimits(@Param("userId") Integer userId,
+                     @Param("cpu") Integer cpu,
+                     @Param("ram") Integer ram,
+                     @Param("disk") BigDecimal disk,
+                     @Param("slices") Integer slices);
+}
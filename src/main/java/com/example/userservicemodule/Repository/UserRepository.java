@@ -1,12 +1,22 @@
 package com.example.userservicemodule.Repository;
 
+import com.example.userservicemodule.DTO.Projections.UserSummaryView;
 import com.example.userservicemodule.Entity.Role;
 import com.example.userservicemodule.Entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Integer> {
@@ -14,5 +24,44 @@ public interface UserRepository extends JpaRepository<User, Integer> {
     Optional<User> findByUsername(String username);
     List<User> findByRole(Role role);
 
+    /**
+     * Lista todos los usuarios con el nombre del rol ya resuelto (una sola consulta).
+     */
+    @Query("SELECT u.id AS id, u.name AS name, u.lastname AS lastname, u.username AS username, " +
+            "r.name AS role, u.code AS code, u.state AS state, u.createdAt AS createdAt, u.lastLogin AS lastLogin " +
+            "FROM User u JOIN u.role r ORDER BY u.id ASC")
+    List<UserSummaryView> findAllSummaries();
 
-}
\ No newline at end of file
+    /**
+     * Página de usuarios por keyset: devuelve los usuarios con ID mayor a {@code afterId}, ordenados por ID.
+     * El tamaño de página se toma del {@link Pageable} (se usa siempre la página 0).
+     */
+    @Query("SELECT u.id AS id, u.name AS name, u.lastname AS lastname, u.username AS username, " +
+            "r.name AS role, u.code AS code, u.state AS state, u.createdAt AS createdAt, u.lastLogin AS lastLogin " +
+            "FROM User u JOIN u.role r WHERE u.id > :afterId ORDER BY u.id ASC")
+    List<UserSummaryView> findSummariesAfter(@Param("afterId") Integer afterId, Pageable pageable);
+
+    /**
+     * Recorre todos los usuarios como un stream sobre el cursor JDBC, leyendo por bloques de tamaño acotado.
+     * Debe consumirse dentro de una transacción y cerrarse al terminar.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT u.id AS id, u.name AS name, u.lastname AS lastname, u.username AS username, " +
+            "r.name AS role, u.code AS code, u.state AS state, u.createdAt AS createdAt, u.lastLogin AS lastLogin " +
+            "FROM User u JOIN u.role r ORDER BY u.id ASC")
+    Stream<UserSummaryView> streamAllSummaries();
+
+    /**
+     * Reemplaza el hash de la contraseña solo si no cambió desde que se leyó (rehash con el costo vigente).
+     *
+     * @return 1 si se actualizó, 0 si la contraseña cambió entretanto
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE User u SET u.password = :newHash WHERE u.id = :id AND u.password = :currentHash")
+    int updatePasswordHash(@Param("id") Integer id, @Param("currentHash") String currentHash, @Param("newHash") String newHash);
+
+}
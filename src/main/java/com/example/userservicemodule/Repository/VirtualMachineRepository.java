@@ -1,9 +1,52 @@
 package com.example.userservicemodule.Repository;
 
+import com.example.userservicemodule.DTO.Projections.ImageUsageView;
+import com.example.userservicemodule.DTO.Projections.VmUsageView;
+import com.example.userservicemodule.DTO.Projections.ZoneVmUsageView;
 import com.example.userservicemodule.Entity.VirtualMachine;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface VirtualMachineRepository extends JpaRepository<VirtualMachine, Integer> {
+
+    /**
+     * Cuenta las VMs por imagen en una sola consulta agrupada (las imágenes sin VMs no aparecen).
+     */
+    @Query("SELECT vm.image.id AS imageId, COUNT(vm) AS vmCount FROM VirtualMachine vm " +
+            "WHERE vm.image.id IN :imageIds GROUP BY vm.image.id")
+    List<ImageUsageView> countByImageIds(@Param("imageIds") Collection<Integer> imageIds);
+
+    /**
+     * Cantidad de VMs y capacidad asignada (según su flavor) por zona, agrupando por la zona de su servidor físico.
+     */
+    @Query("SELECT ps.availabilityZone.id AS zoneId, COUNT(vm) AS vmCount, " +
+            "COALESCE(SUM(f.vcpu), 0) AS usedVcpu, COALESCE(SUM(f.ram), 0) AS usedRam, " +
+            "COALESCE(SUM(f.disk), 0) AS usedDisk " +
+            "FROM VirtualMachine vm JOIN vm.physicalServer ps JOIN vm.flavor f " +
+            "GROUP BY ps.availabilityZone.id")
+    List<ZoneVmUsageView> sumUsageByZone();
+
+    /**
+     * Cantidad de VMs y capacidad asignada por servidor físico de una zona.
+     */
+    @Query("SELECT ps.id AS groupId, COUNT(vm) AS vmCount, " +
+            "COALESCE(SUM(f.vcpu), 0) AS usedVcpu, COALESCE(SUM(f.ram), 0) AS usedRam, " +
+            "COALESCE(SUM(f.disk), 0) AS usedDisk " +
+            "FROM VirtualMachine vm JOIN vm.physicalServer ps JOIN vm.flavor f " +
+            "WHERE ps.availabilityZone.id = :zoneId GROUP BY ps.id")
+    List<VmUsageView> sumUsageByServerInZone(@Param("zoneId") Integer zoneId);
+
+    /**
+     * Cantidad de VMs y capacidad asignada por slice.
+     */
+    @Query("SELECT vm.slice.id AS groupId, COUNT(vm) AS vmCount, " +
+            "COALESCE(SUM(f.vcpu), 0) AS usedVcpu, COALESCE(SUM(f.ram), 0) AS usedRam, " +
+            "COALESCE(SUM(f.disk), 0) AS usedDisk " +
+            "FROM VirtualMachine vm JOIN vm.flavor f " +
+            "WHERE vm.slice.id IN :sliceIds GROUP BY vm.slice.id")
+    List<VmUsageView> sumUsageBySliceIds(@Param("sliceIds") Collection<Integer> sliceIds);
 }
@@ -0,0 +1,53 @@
+package com.example.userservicemodule.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Mantiene al día los rollups de métricas: cada ciclo agrega los registros nuevos del log, lote por lote,
+ * hasta alcanzar los que aún están dentro del margen de gracia. Cada lote se confirma por separado junto con su marca.
+ */
+@Component
+@Slf4j
+public class AdminMetricsAggregator {
+
+    private final AdminMetricsService adminMetricsService;
+    private final int batchSize;
+    private final int hourlyRetentionDays;
+
+    public AdminMetricsAggregator(AdminMetricsService adminMetricsService,
+                                  @Value("${metrics.rollup.batch-size:5000}") int batchSize,
+                                  @Value("${metrics.rollup.hourly-retention-days:7}") int hourlyRetentionDays) {
+        this.adminMetricsService = adminMetricsService;
+        this.batchSize = batchSize;
+        this.hourlyRetentionDays = hourlyRetentionDays;
+    }
+
+    @Scheduled(fixedDelayString = "${metrics.rollup.interval-ms:60000}")
+    public void aggregate() {
+        try {
+            int total = 0;
+            int processed;
+            do {
+                processed = adminMetricsService.aggregateNextBatch();
+                total += processed;
+            } while (processed == batchSize);
+
+            if (total > 0) {
+                log.info("Agregados {} registros del log en los rollups de métricas", total);
+            }
+        } catch (Exception e) {
+            log.error("Error al agregar rollups de métricas: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "${metrics.rollup.purge-cron:0 15 4 * * *}")
+    public void purgeHourly() {
+        int deleted = adminMetricsService.purgeHourly(hourlyRetentionDays);
+        if (deleted > 0) {
+            log.info("Eliminados {} rollups por hora antiguos", deleted);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.DTO.Projections.ActivityTotalView;
+import com.example.userservicemodule.DTO.Projections.LogEventView;
+import com.example.userservicemodule.Entity.Log;
+import com.example.userservicemodule.Entity.LogRollupDaily;
+import com.example.userservicemodule.Entity.MetricsWatermark;
+import com.example.userservicemodule.Repository.LogRepository;
+import com.example.userservicemodule.Repository.LogRollupRepository;
+import com.example.userservicemodule.Repository.MetricsWatermarkRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Métricas de actividad de administradores a partir de la tabla de log. Los eventos se escriben en el log
+ * y el agregador los suma incrementalmente en rollups por hora y por día, leyendo solo los registros nuevos
+ * desde la última marca; las consultas de métricas leen los rollups, no el log.
+ */
+@Service
+@Slf4j
+public class AdminMetricsService {
+
+    public static final String SLICE_CREATION = "slice_creation";
+    public static final String USER_CREATION = "user_creation";
+    public static final String VM_CREATION = "vm_creation";
+    public static final String PASSWORD_CHANGE = "password_change";
+
+    /**
+     * Tipos de evento que otros módulos pueden informar; el resto solo los registra este servicio.
+     */
+    public static final Set<String> EXTERNAL_EVENT_TYPES = Set.of(SLICE_CREATION, VM_CREATION);
+
+    private static final String WATERMARK = "admin_metrics";
+    private static final int DAILY_SERIES_DAYS = 7;
+
+    private final LogRepository logRepository;
+    private final LogRollupRepository logRollupRepository;
+    private final MetricsWatermarkRepository metricsWatermarkRepository;
+    private final int batchSize;
+    private final Duration grace;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private record BucketKey(Integer userId, String type, LocalDateTime bucketStart) {
+    }
+
+    public AdminMetricsService(LogRepository logRepository,
+                               LogRollupRepository logRollupRepository,
+                               MetricsWatermarkRepository metricsWatermarkRepository,
+                               @Value("${metrics.rollup.batch-size:5000}") int batchSize,
+                               @Value("${metrics.rollup.grace-seconds:300}") long graceSeconds) {
+        this.logRepository = logRepository;
+        this.logRollupRepository = logRollupRepository;
+        this.metricsWatermarkRepository = metricsWatermarkRepository;
+        this.batchSize = batchSize;
+        this.grace = Duration.ofSeconds(graceSeconds);
+    }
+
+    /**
+     * Agrega el siguiente lote de registros del log posteriores a la marca y la avanza, todo en una transacción.
+     * La marca se lee con bloqueo, así que si otra instancia está agregando, esta espera y continúa donde quedó.
+     * <p>
+     * Los IDs se asignan al insertar pero las transacciones pueden confirmarse en otro orden: un registro con
+     * un ID menor puede aparecer después de que la marca lo pasó. Por eso solo se agrega el tramo inicial de
+     * registros con {@code time} anterior a {@code metrics.rollup.grace-seconds}; el primero más reciente
+     * detiene el lote. El margen debe cubrir la demora entre fijar {@code time} y confirmar el insert.
+     *
+     * @return Cantidad de registros agregados
+     */
+    @Transactional
+    public int aggregateNextBatch() {
+        MetricsWatermark watermark = metricsWatermarkRepository.lockByName(WATERMARK).orElseGet(() -> {
+            MetricsWatermark created = new MetricsWatermark();
+            created.setName(WATERMARK);
+            created.setLastLogId(0);
+            created.setUpdatedAt(LocalDateTime.now());
+            return metricsWatermarkRepository.saveAndFlush(created);
+        });
+
+        List<LogEventView> events = logRepository.findEventsAfter(watermark.getLastLogId(), PageRequest.of(0, batchSize));
+        Instant cutoff = Instant.now().minus(grace);
+        int settled = 0;
+        while (settled < events.size() && events.get(settled).getTime().isBefore(cutoff)) {
+            settled++;
+        }
+        if (settled == 0) {
+            return 0;
+        }
+        events = events.subList(0, settled);
+
+        Map<BucketKey, Long> hourly = new HashMap<>();
+        Map<BucketKey, Long> daily = new HashMap<>();
+        for (LogEventView event : events) {
+            if (event.getUserId() == null) {
+                continue;  // Evento del sistema o de un usuario eliminado: no tiene a quién sumarse
+            }
+            LocalDateTime time = LocalDateTime.ofInstant(event.getTime(), zone);
+            hourly.merge(new BucketKey(event.getUserId(), event.getType(), time.truncatedTo(ChronoUnit.HOURS)), 1L, Long::sum);
+            daily.merge(new BucketKey(event.getUserId(), event.getType(), time.truncatedTo(ChronoUnit.DAYS)), 1L, Long::sum);
+        }
+        hourly.forEach((key, count) -> logRollupRepository.addHourly(key.userId(), key.type(), key.bucketStart(), count));
+        daily.forEach((key, count) -> logRollupRepository.addDaily(key.userId(), key.type(), key.bucketStart(), count));
+
+        watermark.setLastLogId(events.get(events.size() - 1).getId());
+        watermark.setUpdatedAt(LocalDateTime.now());
+        metricsWatermarkRepository.save(watermark);
+        return events.size();
+    }
+
+    /**
+     * Elimina los rollups por hora más antiguos que la retención; los diarios se conservan.
+     */
+    @Transactional
+    public int purgeHourly(int retentionDays) {
+        return logRollupRepository.deleteHourlyBefore(LocalDateTime.now(zone).minusDays(retentionDays));
+    }
+
+    /**
+     * Métricas de un usuario leídas de los rollups: totales por tipo, eventos de las últimas 24 horas
+     * y serie diaria de los últimos días.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> metricsFor(Integer userId) {
+        Map<String, Long> totals = new HashMap<>();
+        for (ActivityTotalView total : logRollupRepository.findTotalsByUser(userId)) {
+            totals.put(total.getType(), total.getTotal());
+        }
+
+        LocalDateTime now = LocalDateTime.now(zone);
+        LocalDate firstDay = now.toLocalDate().minusDays(DAILY_SERIES_DAYS - 1);
+        Map<LocalDate, Long> perDay = new LinkedHashMap<>();
+        for (int i = 0; i < DAILY_SERIES_DAYS; i++) {
+            perDay.put(firstDay.plusDays(i), 0L);
+        }
+        for (LogRollupDaily day : logRollupRepository.findDailySince(userId, firstDay.atStartOfDay())) {
+            perDay.merge(day.getBucketStart().toLocalDate(), day.getEventCount(), Long::sum);
+        }
+        List<Map<String, Object>> dailyActivity = new ArrayList<>();
+        perDay.forEach((date, count) -> dailyActivity.add(Map.of("date", date.toString(), "count", count)));
+
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("slicesManaged", totals.getOrDefault(SLICE_CREATION, 0L));
+        metrics.put("usersManaged", totals.getOrDefault(USER_CREATION, 0L));
+        metrics.put("vmsCreated", totals.getOrDefault(VM_CREATION, 0L));
+        metrics.put("totalsByType", totals);
+        metrics.put("last24h", logRollupRepository.sumHourlySince(userId, now.truncatedTo(ChronoUnit.HOURS).minusHours(23)));
+        metrics.put("dailyActivity", dailyActivity);
+        return metrics;
+    }
+
+    /**
+     * Últimos eventos del usuario (por índice, sin recorrer el log).
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> recentActivities(Integer userId) {
+        List<Map<String, Object>> activities = new ArrayList<>();
+        for (Log entry : logRepository.findTop5ByUserIdOrderByIdDesc(userId)) {
+            Map<String, Object> activity = new HashMap<>();
+            activity.put("type", entry.getType());
+            activity.put("description", entry.getDescription());
+            activity.put("timestamp", relativeTime(entry.getTime()));
+            activity.put("time", entry.getTime().toString());
+            activities.add(activity);
+        }
+        return activities;
+    }
+
+    public Optional<Instant> lastEventTime(Integer userId, String type) {
+        return logRepository.findFirstByUserIdAndTypeOrderByIdDesc(userId, type).map(Log::getTime);
+    }
+
+    /**
+     * Tiempo transcurrido en el formato que muestra el perfil ("Hace 2 horas", "Ayer", ...).
+     */
+    public static String relativeTime(Instant time) {
+        Duration elapsed = Duration.between(time, Instant.now());
+        long minutes = Math.max(0, elapsed.toMinutes());
+        if (minutes < 1) {
+            return "Hace un momento";
+        }
+        if (minutes < 60) {
+            return minutes == 1 ? "Hace 1 minuto" : "Hace " + minutes + " minutos";
+        }
+        long hours = elapsed.toHours();
+        if (hours < 24) {
+            return hours == 1 ? "Hace 1 hora" : "Hace " + hours + " horas";
+        }
+        long days = elapsed.toDays();
+        return days == 1 ? "Ayer" : "Hace " + days + " días";
+    }
+}
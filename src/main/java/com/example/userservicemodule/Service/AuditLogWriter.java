@@ -0,0 +1,252 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.Util.LatencyHistogram;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Auditoría de acciones administrativas en {@code cloud_v3.log}. Los controladores encolan el evento en un
+ * buffer circular acotado (sin tocar la BD) y un hilo en segundo plano lo vacía con inserts JDBC por lotes.
+ * Si el buffer está lleno, el llamador espera como máximo {@code audit.log.offer-timeout-ms}; pasado ese
+ * plazo el evento se descarta y se cuenta, para no frenar las peticiones cuando la BD no da abasto.
+ * <p>
+ * Cada fila guarda el ID del autor ({@code user}, que queda en null si el usuario se elimina) y una copia de
+ * su username ({@code actor}), así el historial sobrevive al borrado del usuario.
+ */
+@Component
+@Slf4j
+public class AuditLogWriter {
+
+    /**
+     * Cabecera con el ID del administrador que realiza la acción (la agrega el gateway).
+     */
+    public static final String ACTOR_HEADER = "X-User-Id";
+
+    /**
+     * Atributo de la petición con el {@link Actor} ya validado por {@code AuditActorInterceptor}.
+     */
+    public static final String ACTOR_ATTRIBUTE = "auditActor";
+
+    /**
+     * Autor de un evento: ID del usuario (null para el sistema) y su username al momento del evento.
+     */
+    public record Actor(Integer userId, String name) {
+    }
+
+    /**
+     * Autor de los eventos sin petición con actor validado (tareas en segundo plano).
+     */
+    public static final Actor SYSTEM = new Actor(null, "system");
+
+    private static final String INSERT_SQL = "INSERT INTO cloud_v3.log (type, description, time, `user`, actor) VALUES (?, ?, ?, ?, ?)";
+    private static final int LOG_FIELD_LENGTH = 45;
+
+    private record AuditEvent(Actor actor, String type, String description, Instant time) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<AuditEvent> buffer;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long offerTimeoutMs;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder systemEvents = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final AtomicInteger peakQueued = new AtomicInteger();
+    private final LatencyHistogram flushTimes = new LatencyHistogram();
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public AuditLogWriter(JdbcTemplate jdbcTemplate,
+                          @Value("${audit.log.buffer-capacity:8192}") int capacity,
+                          @Value("${audit.log.batch-size:200}") int batchSize,
+                          @Value("${audit.log.flush-interval-ms:500}") long flushIntervalMs,
+                          @Value("${audit.log.offer-timeout-ms:2}") long offerTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::run, "audit-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Encola un evento de auditoría atribuido al administrador validado de la petición (ver
+     * {@code AuditActorInterceptor}). Fuera de una petición con actor, el evento se registra a nombre de
+     * {@link #SYSTEM} en lugar de descartarse.
+     *
+     * @param type Tipo de evento (p. ej. user_creation)
+     * @param description Descripción breve; se trunca al largo de la columna
+     */
+    public void record(String type, String description) {
+        Actor actor = currentActor();
+        if (actor == null) {
+            systemEvents.increment();
+            log.debug("Evento de auditoría {} sin actor validado, se registra como sistema", type);
+            actor = SYSTEM;
+        }
+        recordAs(actor, type, description);
+    }
+
+    /**
+     * Encola un evento de auditoría con un autor explícito: una acción que el propio usuario realizó y
+     * demostró (p. ej. cambiar su contraseña con la actual).
+     *
+     * @param actor Autor del evento
+     * @param type Tipo de evento
+     * @param description Descripción breve; se trunca al largo de la columna
+     */
+    public void recordAs(Actor actor, String type, String description) {
+        AuditEvent event = new AuditEvent(new Actor(actor.userId(), truncate(actor.name())), truncate(type),
+                truncate(description != null ? description : type), Instant.now());
+        boolean accepted;
+        try {
+            accepted = buffer.offer(event, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+
+        if (!accepted) {
+            dropped.increment();
+            log.warn("Buffer de auditoría lleno ({} eventos), se descarta el evento {}", capacity, type);
+            return;
+        }
+        enqueued.increment();
+        peakQueued.accumulateAndGet(buffer.size(), Math::max);
+    }
+
+    /**
+     * Ocupación del buffer, totales escritos, descartados y fallidos, y tiempos de escritura por lote.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("capacity", capacity);
+        stats.put("queued", buffer.size());
+        stats.put("peakQueued", peakQueued.get());
+        stats.put("enqueued", enqueued.sum());
+        stats.put("written", written.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("failed", failed.sum());
+        stats.put("systemEvents", systemEvents.sum());
+        stats.put("batches", batches.sum());
+        stats.put("flushTimes", flushTimes.snapshot());
+        return stats;
+    }
+
+    /**
+     * Detiene el hilo escritor y escribe lo que quede en el buffer.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        writerThread.interrupt();
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private void run() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                AuditEvent first = running ? buffer.poll(flushIntervalMs, TimeUnit.MILLISECONDS) : buffer.poll();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                // Apagado: se sale del poll y se vacía el buffer sin esperar
+                running = false;
+            } catch (Exception e) {
+                log.error("Error inesperado en el escritor de auditoría: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+        log.info("Escritor de auditoría detenido ({} eventos escritos)", written.sum());
+    }
+
+    private void write(List<AuditEvent> batch) {
+        long start = System.nanoTime();
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, event) -> {
+                ps.setString(1, event.type());
+                ps.setString(2, event.description());
+                ps.setTimestamp(3, Timestamp.from(event.time()));
+                ps.setObject(4, event.actor().userId(), Types.INTEGER);
+                ps.setString(5, event.actor().name());
+            });
+            written.add(batch.size());
+        } catch (DataAccessException e) {
+            // Un evento inválido (p. ej. usuario ya eliminado) no debe perder el resto del lote
+            log.warn("Falló el lote de auditoría ({} eventos), se reintenta uno por uno: {}", batch.size(), e.getMessage());
+            for (AuditEvent event : batch) {
+                if (insert(event, event.actor().userId()) || (event.actor().userId() != null && insert(event, null))) {
+                    // Sin el ID (usuario eliminado entretanto) el evento se conserva con la copia del username
+                    written.increment();
+                } else {
+                    failed.increment();
+                }
+            }
+        } finally {
+            batches.increment();
+            flushTimes.record(System.nanoTime() - start);
+        }
+    }
+
+    private boolean insert(AuditEvent event, Integer userId) {
+        try {
+            jdbcTemplate.update(INSERT_SQL, event.type(), event.description(), Timestamp.from(event.time()), userId, event.actor().name());
+            return true;
+        } catch (DataAccessException e) {
+            log.warn("Evento de auditoría {} de {} no se pudo escribir: {}", event.type(), event.actor().name(), e.getMessage());
+            return false;
+        }
+    }
+
+    private Actor currentActor() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return null;
+        }
+        return attributes.getRequest().getAttribute(ACTOR_ATTRIBUTE) instanceof Actor actor ? actor : null;
+    }
+
+    private static String truncate(String value) {
+        return value.length() > LOG_FIELD_LENGTH ? value.substring(0, LOG_FIELD_LENGTH) : value;
+    }
+}
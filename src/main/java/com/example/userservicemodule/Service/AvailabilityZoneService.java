@@ -1,73 +1,176 @@
 package com.example.userservicemodule.Service;
 
 import com.example.userservicemodule.DTO.AvailabilityZoneDTO;
+import com.example.userservicemodule.DTO.Projections.SliceOwnerView;
+import com.example.userservicemodule.DTO.Projections.VmUsageView;
+import com.example.userservicemodule.DTO.Projections.ZoneServerTotalsView;
+import com.example.userservicemodule.DTO.Projections.ZoneVmUsageView;
 import com.example.userservicemodule.DTO.ZoneDetails.PhysicalServerDTO;
 import com.example.userservicemodule.DTO.ZoneDetails.SliceDTO;
 import com.example.userservicemodule.DTO.ZoneDetails.ZoneDetailDTO;
 import com.example.userservicemodule.Entity.AvailabilityZone;
-import com.example.userservicemodule.Entity.Flavor;
 import com.example.userservicemodule.Entity.Property;
-import com.example.userservicemodule.Entity.VirtualMachine;
+import com.example.userservicemodule.Entity.Slice;
 import com.example.userservicemodule.Repository.AvailabilityZoneRepository;
+import com.example.userservicemodule.Repository.PhysicalServerRepository;
 import com.example.userservicemodule.Repository.PropertyRepository;
-import com.example.userservicemodule.Repository.UserRepository;
 import com.example.userservicemodule.Repository.VirtualMachineRepository;
+import com.example.userservicemodule.Events.CapacityChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
-import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
+@Slf4j
 public class AvailabilityZoneService {
 
     private final AvailabilityZoneRepository availabilityZoneRepository;
+    private final VirtualMachineRepository virtualMachineRepository;
+    private final PhysicalServerRepository physicalServerRepository;
     private final PropertyRepository propertyRepository;
-    private final UserRepository userRepository;
 
+    /**
+     * Última foto de capacidad de las zonas. Se reemplaza completa (nunca se modifica), así que las lecturas
+     * no necesitan lock.
+     */
+    private volatile ZoneCapacitySnapshot snapshot;
+    private volatile boolean snapshotStale = true;
+    private final ReentrantLock refreshLock = new ReentrantLock();
 
-    public AvailabilityZoneService(AvailabilityZoneRepository availabilityZoneRepository, VirtualMachineRepository virtualMachineRepository, PropertyRepository propertyRepository, UserRepository userRepository) {
+
+    public AvailabilityZoneService(AvailabilityZoneRepository availabilityZoneRepository, VirtualMachineRepository virtualMachineRepository, PhysicalServerRepository physicalServerRepository, PropertyRepository propertyRepository) {
         this.availabilityZoneRepository = availabilityZoneRepository;
+        this.virtualMachineRepository = virtualMachineRepository;
+        this.physicalServerRepository = physicalServerRepository;
         this.propertyRepository = propertyRepository;
-        this.userRepository = userRepository;
     }
 
-    public List<AvailabilityZoneDTO> getAllZonesDTO() {
-        return availabilityZoneRepository.findAll().stream().map(zone -> {
-            int totalVcpu = zone.getPhysicalServers().stream().mapToInt(s -> s.getTotalVcpu() != null ? s.getTotalVcpu() : 0).sum();
-            int totalRam = zone.getPhysicalServers().stream().mapToInt(s -> s.getTotalRam() != null ? s.getTotalRam() : 0).sum();
-            int totalDisk = zone.getPhysicalServers().stream().mapToInt(s -> s.getTotalDisk() != null ? s.getTotalDisk() : 0).sum();
-            int serverCount = zone.getPhysicalServers().size();
-            int sliceCount = zone.getSlices() != null ? zone.getSlices().size() : 0;
-
-            List<VirtualMachine> vmsActivas = zone.getPhysicalServers().stream()
-                    .flatMap(server -> server.getVirtualMachines().stream())
-                    //.filter(vm -> "running".equalsIgnoreCase(vm.getStatus())) Se consideran todas las VMs instanciadas
-                    .toList();
-
-            int usedVcpu = 0;
-            int usedRam = 0;
-            BigDecimal usedDisk = BigDecimal.ZERO;
-
-            for (VirtualMachine vm : vmsActivas) {
-                Flavor flavor = vm.getFlavor();
-                if (flavor != null) {
-                    usedVcpu += flavor.getVcpu();
-                    usedRam += flavor.getRam();
-                    usedDisk = usedDisk.add(flavor.getDisk());
-                }
+    /**
+     * Capacidad de las zonas calculada en un instante dado.
+     */
+    public static final class ZoneCapacitySnapshot {
+        private final List<AvailabilityZoneDTO> zones;
+        private final Instant computedAt;
+
+        private ZoneCapacitySnapshot(List<AvailabilityZoneDTO> zones, Instant computedAt) {
+            this.zones = List.copyOf(zones);
+            this.computedAt = computedAt;
+        }
+
+        public List<AvailabilityZoneDTO> getZones() {
+            return zones;
+        }
+
+        public Instant getComputedAt() {
+            return computedAt;
+        }
+
+        public Duration getAge() {
+            return Duration.between(computedAt, Instant.now());
+        }
+    }
+
+    /**
+     * Capacidad de las zonas desde caché. Si la foto fue invalidada, la recalcula un solo hilo; mientras tanto
+     * el resto sigue leyendo la foto anterior.
+     */
+    public ZoneCapacitySnapshot getZonesSnapshot() {
+        ZoneCapacitySnapshot current = snapshot;
+        if (current != null && !snapshotStale) {
+            return current;
+        }
+        if (current == null) {
+            // Primera lectura: todos esperan a que se calcule
+            refreshLock.lock();
+        } else if (!refreshLock.tryLock()) {
+            return current;
+        }
+        try {
+            if (snapshot == null || snapshotStale) {
+                recomputeSnapshot();
             }
+            return snapshot;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Recalcula la foto periódicamente aunque no haya cambios registrados (p. ej. VMs creadas por otros servicios).
+     */
+    @Scheduled(fixedDelayString = "${zones.capacity.refresh-interval-ms:30000}")
+    public void refreshSnapshot() {
+        refreshLock.lock();
+        try {
+            recomputeSnapshot();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Marca la foto como desactualizada; se recalcula en la siguiente lectura. Si el cambio ocurre dentro de
+     * una transacción, se marca al confirmarla, para no recalcular la foto con datos aún no visibles.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCapacityChanged(CapacityChangedEvent event) {
+        snapshotStale = true;
+        log.debug("Capacidad de zonas invalidada: {}", event.getReason());
+    }
 
-            int totalVMs = vmsActivas.size();
+    private void recomputeSnapshot() {
+        // Se marca antes de calcular para no perder invalidaciones que lleguen durante el cálculo
+        snapshotStale = false;
+        try {
+            snapshot = new ZoneCapacitySnapshot(getAllZonesDTO(), Instant.now());
+        } catch (RuntimeException e) {
+            snapshotStale = true;
+            throw e;
+        }
+    }
 
+    /**
+     * Resumen de capacidad de todas las zonas. Los totales se calculan en la base de datos con 3 consultas
+     * agrupadas (zonas, servidores y VMs), sin importar cuántos servidores o VMs existan.
+     */
+    public List<AvailabilityZoneDTO> getAllZonesDTO() {
+        Map<Integer, ZoneServerTotalsView> serverTotals = new HashMap<>();
+        for (ZoneServerTotalsView totals : physicalServerRepository.sumCapacityByZone()) {
+            serverTotals.put(totals.getZoneId(), totals);
+        }
+        Map<Integer, ZoneVmUsageView> vmUsage = new HashMap<>();
+        for (ZoneVmUsageView usage : virtualMachineRepository.sumUsageByZone()) {
+            vmUsage.put(usage.getZoneId(), usage);
+        }
+
+        return availabilityZoneRepository.findAllSummaries().stream().map(zone -> {
+            ZoneServerTotalsView totals = serverTotals.get(zone.getId());
+            ZoneVmUsageView usage = vmUsage.get(zone.getId());
+
+            // Se consideran todas las VMs instanciadas, no solo las que están en ejecución
             return new AvailabilityZoneDTO(
                     zone.getId(), zone.getName(), zone.getDescription(),
-                    totalVcpu, usedVcpu, totalRam, usedRam,
-                    totalDisk, usedDisk.intValue(),
-                    serverCount, sliceCount, totalVMs
+                    totals != null ? totals.getTotalVcpu().intValue() : 0,
+                    usage != null ? usage.getUsedVcpu().intValue() : 0,
+                    totals != null ? totals.getTotalRam().intValue() : 0,
+                    usage != null ? usage.getUsedRam().intValue() : 0,
+                    totals != null ? totals.getTotalDisk().intValue() : 0,
+                    usage != null ? usage.getUsedDisk().intValue() : 0,
+                    totals != null ? totals.getServerCount().intValue() : 0,
+                    zone.getSliceCount().intValue(),
+                    usage != null ? usage.getVmCount().intValue() : 0
             );
         }).toList();
     }
@@ -81,6 +184,12 @@ public class AvailabilityZoneService {
         AtomicInteger usedRam = new AtomicInteger(0);
         AtomicInteger usedDisk = new AtomicInteger(0);
 
+        // Uso por servidor en una sola consulta agrupada
+        Map<Integer, VmUsageView> serverUsage = new HashMap<>();
+        for (VmUsageView usage : virtualMachineRepository.sumUsageByServerInZone(zone.getId())) {
+            serverUsage.put(usage.getGroupId(), usage);
+        }
+
         // Servidores físicos
         List<PhysicalServerDTO> serverDTOs = zone.getPhysicalServers().stream().map(server -> {
             PhysicalServerDTO dto = new PhysicalServerDTO();
@@ -95,23 +204,33 @@ public class AvailabilityZoneService {
             dto.setTotalDisk(server.getTotalDisk());
             dto.setUsedDisk(server.getUsedDisk());
 
-            int vmCount = server.getVirtualMachines() != null ? server.getVirtualMachines().size() : 0;
+            VmUsageView usage = serverUsage.get(server.getId());
+            int vmCount = usage != null ? usage.getVmCount().intValue() : 0;
             dto.setVmCount(vmCount);
             totalVMs.addAndGet(vmCount);
 
-            if (server.getVirtualMachines() != null) {
-                for (VirtualMachine vm : server.getVirtualMachines()) {
-                    if (vm.getFlavor() != null) {
-                        usedVcpu.addAndGet(vm.getFlavor().getVcpu());
-                        usedRam.addAndGet(vm.getFlavor().getRam());
-                        usedDisk.addAndGet(vm.getFlavor().getDisk().intValue());
-                    }
-                }
+            if (usage != null) {
+                usedVcpu.addAndGet(usage.getUsedVcpu().intValue());
+                usedRam.addAndGet(usage.getUsedRam().intValue());
+                usedDisk.addAndGet(usage.getUsedDisk().intValue());
             }
 
             return dto;
         }).toList();
 
+        // Uso y propietarios de todos los slices de la zona, con una consulta cada uno
+        List<Integer> sliceIds = zone.getSlices().stream().map(Slice::getId).toList();
+        Map<Integer, VmUsageView> sliceUsage = new HashMap<>();
+        Map<Integer, String> sliceOwners = new HashMap<>();
+        if (!sliceIds.isEmpty()) {
+            for (VmUsageView usage : virtualMachineRepository.sumUsageBySliceIds(sliceIds)) {
+                sliceUsage.put(usage.getGroupId(), usage);
+            }
+            for (SliceOwnerView owner : propertyRepository.findOwnersBySliceIds(sliceIds)) {
+                sliceOwners.putIfAbsent(owner.getSliceId(), owner.getOwnerName());
+            }
+        }
+
         // Slices
         List<SliceDTO> sliceDTOs = zone.getSlices().stream().map(slice -> {
             SliceDTO dto = new SliceDTO();
@@ -127,31 +246,14 @@ public class AvailabilityZoneService {
                 );
             }
 
-            int vmCount = slice.getVirtualMachines() != null ? slice.getVirtualMachines().size() : 0;
-            dto.setVmCount(vmCount);
-
-            int sliceVcpu = 0, sliceRam = 0, sliceDisk = 0;
-            if (slice.getVirtualMachines() != null) {
-                for (VirtualMachine vm : slice.getVirtualMachines()) {
-                    if (vm.getFlavor() != null) {
-                        sliceVcpu += vm.getFlavor().getVcpu();
-                        sliceRam += vm.getFlavor().getRam();
-                        sliceDisk += vm.getFlavor().getDisk().intValue();
-                    }
-                }
-            }
+            VmUsageView usage = sliceUsage.get(slice.getId());
+            dto.setVmCount(usage != null ? usage.getVmCount().intValue() : 0);
+            dto.setAssignedVcpu(usage != null ? usage.getUsedVcpu().intValue() : 0);
+            dto.setAssignedRam(usage != null ? usage.getUsedRam().intValue() : 0);
+            dto.setAssignedDisk(usage != null ? usage.getUsedDisk().intValue() : 0);
 
-            dto.setAssignedVcpu(sliceVcpu);
-            dto.setAssignedRam(sliceRam);
-            dto.setAssignedDisk(sliceDisk);
-
-            // Buscar propietario desde tabla property
-            propertyRepository.findById_SliceId(slice.getId()).ifPresent(property -> {
-                Integer userId = property.getId().getUserId();
-                userRepository.findById(userId).ifPresent(user -> {
-                    dto.setOwner(user.getName()); // o getUsername() si prefieres
-                });
-            });
+            // Propietario desde tabla property
+            dto.setOwner(sliceOwners.get(slice.getId()));
 
             return dto;
         }).toList();
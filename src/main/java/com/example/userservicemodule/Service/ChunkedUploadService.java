@@ -0,0 +1,585 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.Beans.ImageRequest;
+import com.example.userservicemodule.BeansRequest.ChunkedUploadRequest;
+import com.example.userservicemodule.Entity.Image;
+import com.example.userservicemodule.Repository.UserRepository;
+import com.example.userservicemodule.Util.ContentHash;
+import com.example.userservicemodule.Util.SpoolDirectory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Subidas de imágenes por partes (initiate / chunks / complete).
+ * Cada parte se recibe en un archivo temporal propio, se verifica su tamaño y SHA-256 y solo entonces se mueve
+ * a su lugar en el directorio de la subida, así que las partes pueden llegar en paralelo y en cualquier orden,
+ * y un reenvío defectuoso no pisa una parte ya recibida.
+ * Al completar, las partes se leen en orden y se suben al servicio de almacenamiento (salvo que ya exista un
+ * archivo con el mismo SHA-256) y recién entonces se crea la imagen.
+ * <p>
+ * Cada subida guarda en su directorio un manifiesto ({@value #MANIFEST_FILE}: datos de la imagen, tamaño y
+ * cantidad de partes) y el SHA-256 de cada parte recibida ({@value #RECEIVED_FILE}, una línea por parte).
+ * Al arrancar, las subidas se reconstruyen desde esos archivos, así un reinicio dentro del TTL no obliga a
+ * reenviar lo ya transferido; solo se eliminan los directorios sin manifiesto válido o vencidos.
+ * <p>
+ * El estado de las subidas y sus partes son locales a la instancia: el directorio de trabajo no debe
+ * compartirse entre instancias, y las partes, el estado y el complete de una subida deben llegar a la
+ * instancia que la inició (afinidad por uploadId en el balanceador).
+ */
+@Service
+@Slf4j
+public class ChunkedUploadService {
+
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int MIN_CHUNK_SIZE = 1024 * 1024;
+    private static final int MAX_CHUNK_SIZE = 512 * 1024 * 1024;
+    private static final int MAX_CHUNKS = 100_000;
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final String MANIFEST_FILE = "manifest.json";
+    private static final String RECEIVED_FILE = "received.sha256";
+
+    private final ImageService imageService;
+    private final StorageStreamClient storageStreamClient;
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final Path uploadDir;
+    private final Duration sessionTtl;
+
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    public ChunkedUploadService(ImageService imageService,
+                                StorageStreamClient storageStreamClient,
+                                UserRepository userRepository,
+                                ObjectMapper objectMapper,
+                                @Value("${images.chunked.dir:${java.io.tmpdir}/image-uploads}") String uploadDir,
+                                @Value("${images.chunked.session-ttl-minutes:1440}") long sessionTtlMinutes) throws IOException {
+        this.imageService = imageService;
+        this.storageStreamClient = storageStreamClient;
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+        this.uploadDir = Files.createDirectories(Paths.get(uploadDir));
+        this.sessionTtl = Duration.ofMinutes(sessionTtlMinutes);
+
+        restoreSessions();
+    }
+
+    /**
+     * Error de una operación de subida por partes, con el estado HTTP y el código para X-Error-Code.
+     */
+    public static class ChunkedUploadException extends RuntimeException {
+        private final HttpStatus status;
+        private final String code;
+
+        public ChunkedUploadException(HttpStatus status, String code, String message) {
+            super(message);
+            this.status = status;
+            this.code = code;
+        }
+
+        public HttpStatus getStatus() {
+            return status;
+        }
+
+        public String getCode() {
+            return code;
+        }
+    }
+
+    /**
+     * Datos de la subida que se guardan al iniciarla, para reconstruirla tras un reinicio.
+     */
+    record UploadManifest(String id, ImageRequest imageData, String filename, long totalSize, int chunkSize) {
+    }
+
+    /**
+     * Estado de una subida en curso.
+     */
+    private static final class UploadSession {
+        final String id;
+        final ImageRequest imageData;
+        final String filename;
+        final long totalSize;
+        final int chunkSize;
+        final int chunkCount;
+        final Path dir;
+        final BitSet received;
+        volatile Instant lastActivity = Instant.now();
+        boolean completing;
+
+        UploadSession(String id, ImageRequest imageData, String filename, long totalSize, int chunkSize, Path dir) {
+            this.id = id;
+            this.imageData = imageData;
+            this.filename = filename;
+            this.totalSize = totalSize;
+            this.chunkSize = chunkSize;
+            this.chunkCount = (int) ((totalSize + chunkSize - 1) / chunkSize);
+            this.dir = dir;
+            this.received = new BitSet(chunkCount);
+        }
+
+        long chunkLength(int index) {
+            return index < chunkCount - 1 ? chunkSize : totalSize - (long) chunkSize * (chunkCount - 1);
+        }
+
+        Path chunkFile(int index) {
+            return dir.resolve(index + ".chunk");
+        }
+    }
+
+    /**
+     * Inicia una subida: valida los datos de la imagen y crea el directorio de sus partes.
+     *
+     * @return Estado inicial de la subida (uploadId, chunkSize, chunkCount)
+     */
+    public Map<String, Object> initiate(ChunkedUploadRequest request) throws IOException {
+        if (request.getImageData() == null) {
+            throw new ChunkedUploadException(HttpStatus.BAD_REQUEST, "IMAGE_DATA_REQUIRED", "imageData is required");
+        }
+        imageService.validate(request.getImageData()).ifPresent(error -> {
+            throw new ChunkedUploadException(HttpStatus.BAD_REQUEST, error.getCode(), error.getMessage());
+        });
+        // Verificar el usuario antes de recibir el archivo
+        Integer userId = request.getImageData().getUserId();
+        if (userId != null && !userRepository.existsById(userId)) {
+            throw new ChunkedUploadException(HttpStatus.NOT_FOUND, "USER_NOT_FOUND", "User not found with ID: " + userId);
+        }
+        if (request.getFilename() == null || request.getFilename().isBlank()) {
+            throw new ChunkedUploadException(HttpStatus.BAD_REQUEST, "FILENAME_REQUIRED", "filename is required");
+        }
+        if (request.getTotalSize() == null || request.getTotalSize() <= 0) {
+            throw new ChunkedUploadException(HttpStatus.BAD_REQUEST, "INVALID_TOTAL_SIZE", "totalSize must be greater than 0");
+        }
+        int chunkSize = request.getChunkSize() != null ? request.getChunkSize() : DEFAULT_CHUNK_SIZE;
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE) {
+            throw new ChunkedUploadException(HttpStatus.BAD_REQUEST, "INVALID_CHUNK_SIZE",
+                    "chunkSize must be between " + MIN_CHUNK_SIZE + " and " + MAX_CHUNK_SIZE + " bytes");
+        }
+        if ((request.getTotalSize() + chunkSize - 1) / chunkSize > MAX_CHUNKS) {
+            throw new ChunkedUploadException(HttpStatus.BAD_REQUEST, "TOO_MANY_CHUNKS",
+                    "The upload would need more than " + MAX_CHUNKS + " chunks; use a larger chunkSize");
+        }
+
+        String id = UUID.randomUUID().toString();
+        Path dir = Files.createDirectory(uploadDir.resolve(id));
+
+        UploadSession session = new UploadSession(id, request.getImageData(), request.getFilename(),
+                request.getTotalSize(), chunkSize, dir);
+        try {
+            writeManifest(session);
+        } catch (IOException | RuntimeException e) {
+            SpoolDirectory.deleteRecursively(dir);
+            throw e;
+        }
+        sessions.put(id, session);
+        log.info("Subida por partes {} iniciada: {} ({} bytes, {} partes de {} bytes)",
+                id, session.filename, session.totalSize, session.chunkCount, chunkSize);
+        return toStatus(session);
+    }
+
+    /**
+     * Recibe una parte en un archivo temporal, verifica su tamaño y SHA-256 y la mueve a su lugar.
+     * Reenviar una parte ya recibida la reemplaza solo si la nueva copia es válida.
+     *
+     * @param sha256 SHA-256 esperado de la parte, en hexadecimal
+     * @return Estado de la subida tras recibir la parte
+     */
+    public Map<String, Object> putChunk(String uploadId, int index, String sha256, InputStream content) throws IOException {
+        UploadSession session = session(uploadId);
+        if (index < 0 || index >= session.chunkCount) {
+            throw new ChunkedUploadException(HttpStatus.BAD_REQUEST, "INVALID_CHUNK_INDEX",
+                    "Chunk index must be between 0 and " + (session.chunkCount - 1));
+        }
+        if (sha256 == null || sha256.isBlank()) {
+            throw new ChunkedUploadException(HttpStatus.BAD_REQUEST, "CHUNK_CHECKSUM_REQUIRED", "X-Chunk-SHA256 header is required");
+        }
+        checkNotCompleting(session);
+
+        long expected = session.chunkLength(index);
+        MessageDigest digest = ContentHash.newDigest();
+        long written = 0;
+        Path temp = session.dir.resolve(index + "." + UUID.randomUUID() + ".tmp");
+
+        try {
+            try (OutputStream out = Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = content.read(buffer, 0, (int) Math.min(buffer.length, expected - written + 1))) != -1) {
+                    if (written + read > expected) {
+                        throw new ChunkedUploadException(HttpStatus.BAD_REQUEST, "INVALID_CHUNK_SIZE",
+                                "Chunk " + index + " must be " + expected + " bytes");
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                    written += read;
+                }
+            }
+            if (written != expected) {
+                throw new ChunkedUploadException(HttpStatus.BAD_REQUEST, "INVALID_CHUNK_SIZE",
+                        "Chunk " + index + " must be " + expected + " bytes, received " + written);
+            }
+            String actual = ContentHash.toHex(digest);
+            if (!actual.equalsIgnoreCase(sha256.trim())) {
+                throw new ChunkedUploadException(HttpStatus.UNPROCESSABLE_ENTITY, "CHUNK_CHECKSUM_MISMATCH",
+                        "Checksum mismatch for chunk " + index + "; resend it");
+            }
+
+            // La parte ya está verificada: se mueve bajo el lock para no cruzarse con complete ni con abort
+            synchronized (session) {
+                checkNotCompleting(session);
+                if (sessions.get(uploadId) != session) {
+                    throw notFound(uploadId);
+                }
+                Files.move(temp, session.chunkFile(index), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                // Recién con la parte en su lugar se anota: tras una caída entre ambos pasos la parte se pide de nuevo
+                Files.writeString(session.dir.resolve(RECEIVED_FILE), index + " " + actual + "\n",
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                session.received.set(index);
+                session.lastActivity = Instant.now();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        log.debug("Subida {}: parte {} recibida ({} bytes)", uploadId, index, written);
+        return toStatus(session);
+    }
+
+    /**
+     * Estado de la subida, incluyendo las partes que faltan (para reanudarla).
+     */
+    public Map<String, Object> status(String uploadId) {
+        return toStatus(session(uploadId));
+    }
+
+    /**
+     * Completa la subida: envía el archivo reensamblado al servicio de almacenamiento y crea la imagen.
+     *
+     * @return Imagen creada y respuesta del servicio de almacenamiento (fileUrl)
+     */
+    public CompletedUpload complete(String uploadId) throws IOException {
+        UploadSession session = session(uploadId);
+        synchronized (session) {
+            if (session.completing) {
+                throw new ChunkedUploadException(HttpStatus.CONFLICT, "UPLOAD_COMPLETING", "Upload is already being completed");
+            }
+            int missing = session.chunkCount - session.received.cardinality();
+            if (missing > 0) {
+                throw new ChunkedUploadException(HttpStatus.CONFLICT, "UPLOAD_INCOMPLETE",
+                        missing + " chunk(s) missing; check the upload status");
+            }
+            session.completing = true;
+        }
+
+        try {
+            // Leer el archivo local es mucho más barato que transferirlo: si el contenido ya está
+            // en almacenamiento se reutiliza ese archivo
+            String contentHash;
+            try (InputStream content = openChunks(session)) {
+                contentHash = ContentHash.of(content);
+            }
+
+            Image image;
+            String fileUrl = null;
+            Optional<Image> existing = imageService.findByContentHash(contentHash);
+            if (existing.isPresent()) {
+                image = imageService.registerImage(session.imageData,
+                        imageService.storedFilename(existing.get()), contentHash);
+                log.info("Subida por partes {}: contenido ya almacenado (imagen ID {}), se reutiliza el archivo",
+                        uploadId, existing.get().getId());
+            } else {
+                Map<String, Object> uploadResponse;
+                try (InputStream content = openChunks(session)) {
+                    uploadResponse = storageStreamClient.upload(session.filename,
+                            MediaType.APPLICATION_OCTET_STREAM_VALUE, content, session.totalSize);
+                }
+                String savedFilename = (String) uploadResponse.get("savedFilename");
+                try {
+                    image = imageService.registerImage(session.imageData, savedFilename, contentHash);
+                } catch (RuntimeException e) {
+                    // Un reintento del complete vuelve a subir el archivo; este quedaría huérfano
+                    imageService.discardStoredFile(savedFilename);
+                    throw e;
+                }
+                fileUrl = (String) uploadResponse.get("fileUrl");
+            }
+
+            sessions.remove(uploadId);
+            deleteSessionFiles(session);
+            log.info("Subida por partes {} completada: imagen ID {}", uploadId, image.getId());
+            return new CompletedUpload(image, fileUrl, existing.isPresent());
+        } catch (IOException | RuntimeException e) {
+            // Las partes se conservan para reintentar el complete
+            synchronized (session) {
+                session.completing = false;
+                session.lastActivity = Instant.now();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cancela una subida y elimina sus partes.
+     */
+    public void abort(String uploadId) {
+        UploadSession session = sessions.remove(uploadId);
+        if (session == null) {
+            throw notFound(uploadId);
+        }
+        deleteSessionFiles(session);
+        log.info("Subida por partes {} cancelada", uploadId);
+    }
+
+    /**
+     * Resultado de completar una subida.
+     */
+    public static final class CompletedUpload {
+        private final Image image;
+        private final String fileUrl;
+        private final boolean deduplicated;
+
+        private CompletedUpload(Image image, String fileUrl, boolean deduplicated) {
+            this.image = image;
+            this.fileUrl = fileUrl;
+            this.deduplicated = deduplicated;
+        }
+
+        public Image getImage() {
+            return image;
+        }
+
+        public String getFileUrl() {
+            return fileUrl;
+        }
+
+        /**
+         * true si se reutilizó un archivo ya almacenado con el mismo contenido.
+         */
+        public boolean isDeduplicated() {
+            return deduplicated;
+        }
+    }
+
+    /**
+     * Elimina las subidas sin actividad durante más tiempo que el TTL configurado.
+     */
+    @Scheduled(fixedDelayString = "${images.chunked.sweep-interval-ms:600000}")
+    public void removeStaleSessions() {
+        Instant limit = Instant.now().minus(sessionTtl);
+        for (UploadSession session : new ArrayList<>(sessions.values())) {
+            synchronized (session) {
+                if (session.completing || session.lastActivity.isAfter(limit)) {
+                    continue;
+                }
+            }
+            if (sessions.remove(session.id, session)) {
+                deleteSessionFiles(session);
+                log.info("Subida por partes {} eliminada por inactividad", session.id);
+            }
+        }
+    }
+
+    /**
+     * Reconstruye las subidas de una ejecución anterior a partir de sus manifiestos. Los directorios sin
+     * manifiesto válido o sin actividad dentro del TTL se eliminan.
+     */
+    private void restoreSessions() throws IOException {
+        Instant limit = Instant.now().minus(sessionTtl);
+        int restored = 0;
+        int purged = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(uploadDir)) {
+            for (Path entry : entries) {
+                UploadSession session = restore(entry, limit);
+                if (session != null) {
+                    sessions.put(session.id, session);
+                    restored++;
+                } else {
+                    SpoolDirectory.deleteRecursively(entry);
+                    purged++;
+                }
+            }
+        }
+        if (restored > 0 || purged > 0) {
+            log.info("Subidas por partes en {}: {} reanudables, {} abandonadas eliminadas", uploadDir, restored, purged);
+        }
+    }
+
+    private UploadSession restore(Path dir, Instant limit) {
+        Path manifestFile = dir.resolve(MANIFEST_FILE);
+        if (!Files.isDirectory(dir) || !Files.isRegularFile(manifestFile)) {
+            return null;
+        }
+        try {
+            UploadManifest manifest = objectMapper.readValue(manifestFile.toFile(), UploadManifest.class);
+            if (!dir.getFileName().toString().equals(manifest.id())
+                    || manifest.totalSize() <= 0 || manifest.chunkSize() < MIN_CHUNK_SIZE || manifest.chunkSize() > MAX_CHUNK_SIZE) {
+                return null;
+            }
+            UploadSession session = new UploadSession(manifest.id(), manifest.imageData(), manifest.filename(),
+                    manifest.totalSize(), manifest.chunkSize(), dir);
+
+            Instant lastActivity = Files.getLastModifiedTime(manifestFile).toInstant();
+            Path receivedFile = dir.resolve(RECEIVED_FILE);
+            if (Files.isRegularFile(receivedFile)) {
+                Instant lastChunk = Files.getLastModifiedTime(receivedFile).toInstant();
+                lastActivity = lastChunk.isAfter(lastActivity) ? lastChunk : lastActivity;
+                for (String line : Files.readAllLines(receivedFile)) {
+                    int index = receivedIndex(line, session.chunkCount);
+                    // Una línea cortada por la caída o una parte que ya no está se piden de nuevo
+                    if (index >= 0 && Files.isRegularFile(session.chunkFile(index))
+                            && Files.size(session.chunkFile(index)) == session.chunkLength(index)) {
+                        session.received.set(index);
+                    }
+                }
+            }
+            if (lastActivity.isBefore(limit)) {
+                return null;
+            }
+
+            // Partes que se estaban recibiendo cuando se detuvo la instancia
+            try (DirectoryStream<Path> temps = Files.newDirectoryStream(dir, "*.tmp")) {
+                for (Path temp : temps) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            session.lastActivity = lastActivity;
+            return session;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Subida por partes en {} no reanudable, se elimina: {}", dir, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Índice de una línea "índice sha256" del registro de partes recibidas, o -1 si la línea no es válida.
+     */
+    private static int receivedIndex(String line, int chunkCount) {
+        String[] fields = line.trim().split(" ");
+        if (fields.length != 2 || fields[1].length() != 64) {
+            return -1;
+        }
+        try {
+            int index = Integer.parseInt(fields[0]);
+            return index >= 0 && index < chunkCount ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Escribe el manifiesto en un temporal y lo mueve a su lugar, para no dejar un manifiesto a medias.
+     */
+    private void writeManifest(UploadSession session) throws IOException {
+        UploadManifest manifest = new UploadManifest(session.id, session.imageData, session.filename,
+                session.totalSize, session.chunkSize);
+        Path temp = session.dir.resolve(MANIFEST_FILE + ".tmp");
+        objectMapper.writeValue(temp.toFile(), manifest);
+        Files.move(temp, session.dir.resolve(MANIFEST_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void checkNotCompleting(UploadSession session) {
+        synchronized (session) {
+            if (session.completing) {
+                throw new ChunkedUploadException(HttpStatus.CONFLICT, "UPLOAD_COMPLETING", "Upload is being completed");
+            }
+        }
+    }
+
+    /**
+     * Contenido reensamblado: las partes en orden, abriendo cada archivo recién cuando se llega a él.
+     */
+    private InputStream openChunks(UploadSession session) {
+        return new SequenceInputStream(new Enumeration<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasMoreElements() {
+                return next < session.chunkCount;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return Files.newInputStream(session.chunkFile(next++));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Elimina el directorio de la subida. Se hace bajo el lock para que una parte en curso no se mueva
+     * a un directorio que se está borrando.
+     */
+    private void deleteSessionFiles(UploadSession session) {
+        synchronized (session) {
+            try {
+                SpoolDirectory.deleteRecursively(session.dir);
+            } catch (IOException e) {
+                log.warn("No se pudo eliminar el directorio temporal {}: {}", session.dir, e.getMessage());
+            }
+        }
+    }
+
+    private UploadSession session(String uploadId) {
+        UploadSession session = sessions.get(uploadId);
+        if (session == null) {
+            throw notFound(uploadId);
+        }
+        return session;
+    }
+
+    private ChunkedUploadException notFound(String uploadId) {
+        return new ChunkedUploadException(HttpStatus.NOT_FOUND, "UPLOAD_NOT_FOUND", "Upload not found: " + uploadId);
+    }
+
+    private Map<String, Object> toStatus(UploadSession session) {
+        List<Integer> missing = new ArrayList<>();
+        int receivedCount;
+        synchronized (session) {
+            for (int i = session.received.nextClearBit(0); i < session.chunkCount; i = session.received.nextClearBit(i + 1)) {
+                missing.add(i);
+            }
+            receivedCount = session.received.cardinality();
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("uploadId", session.id);
+        status.put("filename", session.filename);
+        status.put("totalSize", session.totalSize);
+        status.put("chunkSize", session.chunkSize);
+        status.put("chunkCount", session.chunkCount);
+        status.put("receivedChunks", receivedCount);
+        status.put("missingChunks", missing);
+        return status;
+    }
+}
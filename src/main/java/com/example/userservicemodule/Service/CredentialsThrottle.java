@@ -0,0 +1,63 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.Util.TokenBucketRateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limita las verificaciones de credenciales por IP y por username desde cada IP (token buckets en memoria),
+ * para que el endpoint no sirva para probar contraseñas por fuerza bruta. El balde del username va por IP:
+ * uno global dejaría que cualquiera bloquee a un usuario con solo enviar su username.
+ */
+@Component
+@Slf4j
+public class CredentialsThrottle {
+
+    private final TokenBucketRateLimiter ipLimiter;
+    private final TokenBucketRateLimiter usernameLimiter;
+
+    public CredentialsThrottle(@Value("${credentials.verify.ip-capacity:30}") int ipCapacity,
+                               @Value("${credentials.verify.ip-refill-seconds:2}") long ipRefillSeconds,
+                               @Value("${credentials.verify.username-capacity:5}") int usernameCapacity,
+                               @Value("${credentials.verify.username-refill-seconds:60}") long usernameRefillSeconds) {
+        this.ipLimiter = new TokenBucketRateLimiter(ipCapacity, ipRefillSeconds, TimeUnit.SECONDS);
+        this.usernameLimiter = new TokenBucketRateLimiter(usernameCapacity, usernameRefillSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Consume un intento de la IP y otro del par IP y username.
+     *
+     * @return 0 si se admite, o los segundos que faltan para el próximo intento
+     */
+    public long tryAcquire(String username, String clientIp) {
+        long wait = ipLimiter.tryAcquire(clientIp);
+        if (wait > 0) {
+            log.warn("Verificaciones de credenciales limitadas para IP {}", clientIp);
+            return toSeconds(wait);
+        }
+        wait = usernameLimiter.tryAcquire(clientIp + "|" + username.trim().toLowerCase(Locale.ROOT));
+        if (wait > 0) {
+            log.warn("Verificaciones de credenciales limitadas para usuario {} desde IP {}", username, clientIp);
+            return toSeconds(wait);
+        }
+        return 0;
+    }
+
+    /**
+     * Descarta los baldes ya llenos para que los mapas no crezcan sin límite.
+     */
+    @Scheduled(fixedDelayString = "${credentials.verify.cleanup-interval-ms:60000}")
+    public void cleanup() {
+        ipLimiter.evictFull();
+        usernameLimiter.evictFull();
+    }
+
+    private static long toSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.Entity.EmailOutbox;
+import com.example.userservicemodule.Entity.User;
+import com.example.userservicemodule.Repository.EmailOutboxRepository;
+import com.example.userservicemodule.Repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Envía en segundo plano los correos del outbox, por lotes. Cada correo se reserva con un update
+ * condicionado por versión, así varias instancias pueden despachar sin enviar dos veces el mismo correo.
+ * Los fallos se reintentan con backoff exponencial hasta agotar los intentos.
+ * <p>
+ * El token de restablecimiento se genera en cada intento de envío y reemplaza al del intento anterior,
+ * así el outbox no guarda tokens y solo el último enlace enviado es válido.
+ */
+@Component
+@Slf4j
+public class EmailOutboxDispatcher {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailServiceClient emailServiceClient;
+    private final PasswordTokenStore passwordTokenStore;
+    private final UserRepository userRepository;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+    private final long leaseMs;
+    private final int retentionDays;
+
+    public EmailOutboxDispatcher(EmailOutboxRepository emailOutboxRepository,
+                                 EmailServiceClient emailServiceClient,
+                                 PasswordTokenStore passwordTokenStore,
+                                 UserRepository userRepository,
+                                 @Value("${email.outbox.batch-size:20}") int batchSize,
+                                 @Value("${email.outbox.max-attempts:8}") int maxAttempts,
+                                 @Value("${email.outbox.backoff-base-ms:5000}") long backoffBaseMs,
+                                 @Value("${email.outbox.backoff-max-ms:600000}") long backoffMaxMs,
+                                 @Value("${email.outbox.lease-ms:60000}") long leaseMs,
+                                 @Value("${email.outbox.retention-days:7}") int retentionDays) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.emailServiceClient = emailServiceClient;
+        this.passwordTokenStore = passwordTokenStore;
+        this.userRepository = userRepository;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.backoffBaseMs = backoffBaseMs;
+        this.backoffMaxMs = backoffMaxMs;
+        this.leaseMs = leaseMs;
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * Envía los correos vencidos, lote por lote, hasta vaciar la cola.
+     *
+     * @return Cantidad de correos enviados
+     */
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval-ms:2000}")
+    public int dispatch() {
+        int sent = 0;
+        while (true) {
+            List<EmailOutbox> due = emailOutboxRepository.findDue(LocalDateTime.now(), PageRequest.of(0, batchSize));
+            int processed = 0;
+            for (EmailOutbox email : due) {
+                if (emailOutboxRepository.claim(email.getId(), email.getVersion(),
+                        LocalDateTime.now().plusNanos(leaseMs * 1_000_000)) == 0) {
+                    continue;  // Otra instancia lo tomó
+                }
+                processed++;
+                if (send(email.getId())) {
+                    sent++;
+                }
+            }
+            // Si en el lote no se pudo reservar nada, el resto lo está procesando otra instancia
+            if (due.size() < batchSize || processed == 0) {
+                return sent;
+            }
+        }
+    }
+
+    /**
+     * Elimina los correos enviados o descartados creados hace más días que la retención configurada.
+     */
+    @Scheduled(cron = "${email.outbox.purge-cron:0 30 3 * * *}")
+    public void purgeFinished() {
+        int deleted = emailOutboxRepository.deleteFinishedBefore(LocalDateTime.now().minusDays(retentionDays));
+        if (deleted > 0) {
+            log.info("Eliminados {} correos terminados del outbox", deleted);
+        }
+    }
+
+    private boolean send(Integer id) {
+        Optional<EmailOutbox> claimed = emailOutboxRepository.findById(id);
+        if (claimed.isEmpty()) {
+            return false;
+        }
+        EmailOutbox email = claimed.get();
+
+        User user = null;
+        if (email.getType() == EmailOutbox.Type.PASSWORD_RESET) {
+            user = email.getUserId() != null ? userRepository.findById(email.getUserId()).orElse(null) : null;
+            if (user == null) {
+                // Sin usuario no hay token que generar: reintentar no sirve
+                email.setAttempts(email.getAttempts() + 1);
+                email.setStatus(EmailOutbox.Status.FAILED);
+                email.setLastError("Usuario no encontrado con ID: " + email.getUserId());
+                emailOutboxRepository.save(email);
+                log.error("Correo {} a {} descartado: usuario {} no encontrado", email.getType(), email.getRecipient(), email.getUserId());
+                return false;
+            }
+        }
+
+        String error;
+        try {
+            ResponseEntity<Map<String, Object>> response = switch (email.getType()) {
+                case PASSWORD_RESET -> emailServiceClient.sendPasswordResetEmail(
+                        email.getRecipient(), email.getRedirectUrl() + "?token=" + passwordTokenStore.issue(user),
+                        email.getUsername());
+                case PASSWORD_CHANGED -> emailServiceClient.sendPasswordChangedNotification(
+                        email.getRecipient(), email.getUsername());
+            };
+            if (response != null && response.getStatusCode().is2xxSuccessful()) {
+                email.setStatus(EmailOutbox.Status.SENT);
+                email.setSentAt(LocalDateTime.now());
+                email.setAttempts(email.getAttempts() + 1);
+                email.setLastError(null);
+                emailOutboxRepository.save(email);
+                log.info("Correo {} enviado a {} (ID {})", email.getType(), email.getRecipient(), id);
+                return true;
+            }
+            error = "El servicio de correo respondió con estado " + (response != null ? response.getStatusCode() : "vacío");
+        } catch (Exception e) {
+            error = e.getMessage();
+        }
+
+        int attempts = email.getAttempts() + 1;
+        email.setAttempts(attempts);
+        email.setLastError(error != null && error.length() > 500 ? error.substring(0, 500) : error);
+        if (attempts >= maxAttempts) {
+            email.setStatus(EmailOutbox.Status.FAILED);
+            log.error("Correo {} a {} descartado tras {} intentos: {}", email.getType(), email.getRecipient(), attempts, error);
+        } else {
+            long delayMs = backoffMs(attempts);
+            email.setStatus(EmailOutbox.Status.PENDING);
+            email.setNextAttemptAt(LocalDateTime.now().plusNanos(delayMs * 1_000_000));
+            log.warn("Error enviando correo {} a {} (intento {}), se reintenta en {} ms: {}",
+                    email.getType(), email.getRecipient(), attempts, delayMs, error);
+        }
+        emailOutboxRepository.save(email);
+        return false;
+    }
+
+    /**
+     * Backoff exponencial con ±20% de jitter para no reintentar todos los correos a la vez.
+     */
+    private long backoffMs(int attempts) {
+        long delay = backoffBaseMs << Math.min(attempts - 1, 20);
+        delay = Math.min(delay, backoffMaxMs);
+        return (long) (delay * ThreadLocalRandom.current().nextDouble(0.8, 1.2));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.Entity.EmailOutbox;
+import com.example.userservicemodule.Repository.EmailOutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encola correos en el outbox. Se llama dentro de la transacción del cambio que origina el correo,
+ * de modo que el correo se registra si y solo si el cambio se confirma.
+ */
+@Service
+@Slf4j
+public class EmailOutboxService {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+
+    public EmailOutboxService(EmailOutboxRepository emailOutboxRepository) {
+        this.emailOutboxRepository = emailOutboxRepository;
+    }
+
+    /**
+     * Encola el correo de restablecimiento. El token se genera recién al enviarlo.
+     *
+     * @param to Email del destinatario
+     * @param userId ID del usuario al que se le genera el token
+     * @param redirectUrl URL de la página de restablecimiento a la que se agrega el token
+     * @param username Nombre que se muestra en el correo
+     */
+    @Transactional
+    public EmailOutbox enqueuePasswordReset(String to, Integer userId, String redirectUrl, String username) {
+        EmailOutbox email = newEmail(EmailOutbox.Type.PASSWORD_RESET, to, username);
+        email.setUserId(userId);
+        email.setRedirectUrl(redirectUrl);
+        return save(email);
+    }
+
+    @Transactional
+    public EmailOutbox enqueuePasswordChanged(String to, String username) {
+        return save(newEmail(EmailOutbox.Type.PASSWORD_CHANGED, to, username));
+    }
+
+    /**
+     * Cantidad de correos por estado.
+     */
+    public Map<String, Long> countByStatus() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (EmailOutbox.Status status : EmailOutbox.Status.values()) {
+            counts.put(status.name(), emailOutboxRepository.countByStatus(status));
+        }
+        return counts;
+    }
+
+    private EmailOutbox newEmail(EmailOutbox.Type type, String to, String username) {
+        LocalDateTime now = LocalDateTime.now();
+        EmailOutbox email = new EmailOutbox();
+        email.setType(type);
+        email.setRecipient(to);
+        email.setUsername(username);
+        email.setStatus(EmailOutbox.Status.PENDING);
+        email.setAttempts(0);
+        email.setNextAttemptAt(now);
+        email.setCreatedAt(now);
+        return email;
+    }
+
+    private EmailOutbox save(EmailOutbox email) {
+        EmailOutbox saved = emailOutboxRepository.save(email);
+        log.info("Correo {} encolado para {} (ID {})", saved.getType(), saved.getRecipient(), saved.getId());
+        return saved;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.userservicemodule.Service;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ocupación del pool de conexiones HTTP salientes. Además del estado actual se muestrea periódicamente
+ * para registrar picos y cuántas veces hubo peticiones esperando una conexión (pool saturado).
+ */
+@Component
+public class HttpPoolMetrics {
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    private final AtomicInteger peakLeased = new AtomicInteger();
+    private final AtomicInteger peakPending = new AtomicInteger();
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong saturatedSamples = new AtomicLong();
+
+    public HttpPoolMetrics(PoolingHttpClientConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    @Scheduled(fixedDelayString = "${http.client.metrics-sample-interval-ms:1000}")
+    public void sample() {
+        PoolStats stats = connectionManager.getTotalStats();
+        peakLeased.accumulateAndGet(stats.getLeased(), Math::max);
+        peakPending.accumulateAndGet(stats.getPending(), Math::max);
+        samples.incrementAndGet();
+        if (stats.getPending() > 0) {
+            saturatedSamples.incrementAndGet();
+        }
+    }
+
+    /**
+     * Estado actual del pool (total y por ruta) y picos desde el arranque.
+     */
+    public Map<String, Object> snapshot() {
+        List<Map<String, Object>> routes = new ArrayList<>();
+        for (HttpRoute route : connectionManager.getRoutes()) {
+            Map<String, Object> routeStats = toMap(connectionManager.getStats(route));
+            routeStats.put("route", route.getTargetHost().toURI());
+            routes.add(routeStats);
+        }
+
+        long sampleCount = samples.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("total", toMap(connectionManager.getTotalStats()));
+        metrics.put("maxPerRoute", connectionManager.getDefaultMaxPerRoute());
+        metrics.put("peakLeased", peakLeased.get());
+        metrics.put("peakPending", peakPending.get());
+        metrics.put("saturatedSamplePercent", sampleCount > 0 ? (saturatedSamples.get() * 100.0) / sampleCount : 0.0);
+        metrics.put("routes", routes);
+        return metrics;
+    }
+
+    private Map<String, Object> toMap(PoolStats stats) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("leased", stats.getLeased());
+        map.put("available", stats.getAvailable());
+        map.put("pending", stats.getPending());
+        map.put("max", stats.getMax());
+        return map;
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.Beans.ImageRequest;
+import com.example.userservicemodule.Entity.Image;
+import com.example.userservicemodule.Util.ContentHash;
+import com.example.userservicemodule.Util.SpoolDirectory;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ingesta asíncrona de imágenes: la petición solo deja el archivo en un directorio temporal y encola el trabajo;
+ * un pool acotado de workers hace la transferencia al servicio de almacenamiento y el registro en la BD.
+ * Si la cola está llena el trabajo se rechaza en lugar de acumularse sin límite.
+ * <p>
+ * Los trabajos y su estado viven solo en memoria de la instancia que recibió la petición: tras un reinicio
+ * los trabajos pendientes se pierden (su archivo temporal se elimina al arrancar) y consultar su ID devuelve
+ * 404, por lo que el cliente debe volver a enviar la imagen. Por lo mismo, el directorio de trabajo no debe
+ * compartirse entre instancias.
+ */
+@Service
+@Slf4j
+public class ImageIngestService {
+
+    public enum JobState { QUEUED, UPLOADING, REGISTERING, COMPLETED, FAILED }
+
+    private final ImageService imageService;
+    private final StorageStreamClient storageStreamClient;
+    private final Path spoolDir;
+    private final Duration jobRetention;
+    private final ThreadPoolExecutor executor;
+
+    private final Map<String, IngestJob> jobs = new ConcurrentHashMap<>();
+
+    public ImageIngestService(ImageService imageService,
+                              StorageStreamClient storageStreamClient,
+                              @Value("${images.ingest.dir:${java.io.tmpdir}/image-ingest}") String spoolDir,
+                              @Value("${images.ingest.workers:4}") int workers,
+                              @Value("${images.ingest.queue-capacity:50}") int queueCapacity,
+                              @Value("${images.ingest.job-retention-minutes:60}") long jobRetentionMinutes) throws IOException {
+        this.imageService = imageService;
+        this.storageStreamClient = storageStreamClient;
+        this.spoolDir = Files.createDirectories(Paths.get(spoolDir));
+        this.jobRetention = Duration.ofMinutes(jobRetentionMinutes);
+
+        int purged = SpoolDirectory.purge(this.spoolDir);
+        if (purged > 0) {
+            log.info("Eliminados {} archivos de ingestas interrumpidas en {}", purged, this.spoolDir);
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-ingest-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Trabajo de ingesta y su progreso.
+     */
+    public static final class IngestJob {
+        private final String id = UUID.randomUUID().toString();
+        private final ImageRequest imageRequest;
+        private final String filename;
+        private final String contentType;
+        private final long totalBytes;
+        private final Path spoolFile;
+        private final Instant createdAt = Instant.now();
+        private final AtomicLong transferredBytes = new AtomicLong();
+        private volatile JobState state = JobState.QUEUED;
+        private volatile Integer imageId;
+        private volatile String fileUrl;
+        private volatile boolean deduplicated;
+        private volatile String errorCode;
+        private volatile String errorMessage;
+        private volatile Instant finishedAt;
+
+        private IngestJob(ImageRequest imageRequest, String filename, String contentType, long totalBytes, Path spoolFile) {
+            this.imageRequest = imageRequest;
+            this.filename = filename;
+            this.contentType = contentType;
+            this.totalBytes = totalBytes;
+            this.spoolFile = spoolFile;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public JobState getState() {
+            return state;
+        }
+
+        private void fail(String code, String message) {
+            this.errorCode = code;
+            this.errorMessage = message;
+            this.state = JobState.FAILED;
+            this.finishedAt = Instant.now();
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            long bytes = transferredBytes.get();
+            map.put("jobId", id);
+            map.put("state", state.name());
+            map.put("filename", filename);
+            map.put("totalBytes", totalBytes);
+            map.put("transferredBytes", bytes);
+            map.put("progressPercent", totalBytes > 0 ? (bytes * 100) / totalBytes : null);
+            map.put("createdAt", createdAt.toString());
+            map.put("finishedAt", finishedAt != null ? finishedAt.toString() : null);
+            if (state == JobState.COMPLETED) {
+                map.put("imageId", imageId);
+                map.put("fileUrl", fileUrl);
+                map.put("deduplicated", deduplicated);
+            }
+            if (state == JobState.FAILED) {
+                map.put("errorCode", errorCode);
+                map.put("error", errorMessage);
+            }
+            return map;
+        }
+    }
+
+    /**
+     * Encola la ingesta de una imagen. El archivo del multipart se mueve al directorio de trabajo,
+     * ya que el temporal de Spring se elimina al terminar la petición.
+     *
+     * @param imageRequest Datos de la imagen (ya validados)
+     * @return El trabajo creado, en estado QUEUED
+     * @throws RejectedExecutionException si la cola de ingesta está llena
+     */
+    public IngestJob submit(ImageRequest imageRequest, MultipartFile file) throws IOException {
+        if (executor.getQueue().remainingCapacity() == 0) {
+            throw new RejectedExecutionException("La cola de ingesta de imágenes está llena");
+        }
+
+        Path spoolFile = spoolDir.resolve(UUID.randomUUID() + ".upload");
+        file.transferTo(spoolFile);
+
+        IngestJob job = new IngestJob(imageRequest, file.getOriginalFilename(), file.getContentType(), file.getSize(), spoolFile);
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            Files.deleteIfExists(spoolFile);
+            throw e;
+        }
+        log.info("Ingesta {} encolada: {} ({} bytes)", job.getId(), job.filename, job.totalBytes);
+        return job;
+    }
+
+    public Optional<IngestJob> findJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /**
+     * Trabajos en cola y en ejecución, y capacidad del pool.
+     */
+    public Map<String, Object> queueStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("workers", executor.getMaximumPoolSize());
+        status.put("activeJobs", executor.getActiveCount());
+        status.put("queuedJobs", executor.getQueue().size());
+        status.put("remainingQueueCapacity", executor.getQueue().remainingCapacity());
+        return status;
+    }
+
+    private void run(IngestJob job) {
+        try {
+            String contentHash;
+            try (InputStream content = Files.newInputStream(job.spoolFile)) {
+                contentHash = ContentHash.of(content);
+            }
+
+            String savedFilename;
+            String uploadedFilename = null;
+            Optional<Image> existing = imageService.findByContentHash(contentHash);
+            if (existing.isPresent()) {
+                savedFilename = imageService.storedFilename(existing.get());
+                job.deduplicated = true;
+                job.transferredBytes.set(job.totalBytes);
+                log.info("Ingesta {}: contenido ya almacenado (imagen ID {}), se reutiliza el archivo",
+                        job.getId(), existing.get().getId());
+            } else {
+                job.state = JobState.UPLOADING;
+                try (InputStream content = new CountingInputStream(Files.newInputStream(job.spoolFile), job.transferredBytes)) {
+                    Map<String, Object> uploadResponse = storageStreamClient.upload(
+                            job.filename, job.contentType, content, job.totalBytes);
+                    savedFilename = (String) uploadResponse.get("savedFilename");
+                    uploadedFilename = savedFilename;
+                    job.fileUrl = (String) uploadResponse.get("fileUrl");
+                } catch (IOException e) {
+                    log.error("Ingesta {}: error subiendo al almacenamiento", job.getId(), e);
+                    job.fail("STORAGE_SERVICE_ERROR", "Error uploading file to storage service: " + e.getMessage());
+                    return;
+                }
+            }
+
+            job.state = JobState.REGISTERING;
+            Image image;
+            try {
+                image = imageService.registerImage(job.imageRequest, savedFilename, contentHash);
+            } catch (RuntimeException e) {
+                // Sin imagen registrada nadie referencia el archivo recién subido
+                imageService.discardStoredFile(uploadedFilename);
+                throw e;
+            }
+            job.imageId = image.getId();
+            job.finishedAt = Instant.now();
+            job.state = JobState.COMPLETED;
+            log.info("Ingesta {} completada: imagen ID {}", job.getId(), image.getId());
+        } catch (NoSuchElementException e) {
+            job.fail("USER_NOT_FOUND", e.getMessage());
+        } catch (Exception e) {
+            log.error("Ingesta {}: error creando la imagen", job.getId(), e);
+            job.fail("DATABASE_ERROR", "Error creating image: " + e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(job.spoolFile);
+            } catch (IOException e) {
+                log.warn("No se pudo eliminar el archivo temporal {}: {}", job.spoolFile, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Olvida los trabajos terminados hace más tiempo que la retención configurada.
+     */
+    @Scheduled(fixedDelayString = "${images.ingest.cleanup-interval-ms:300000}")
+    public void removeFinishedJobs() {
+        Instant limit = Instant.now().minus(jobRetention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(limit));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Cuenta los bytes leídos para informar el progreso de la transferencia.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private final AtomicLong counter;
+
+        CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                counter.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                counter.addAndGet(read);
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.Beans.ImageRequest;
+import com.example.userservicemodule.Entity.Image;
+import com.example.userservicemodule.Entity.User;
+import com.example.userservicemodule.Repository.ImageRepository;
+import com.example.userservicemodule.Repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * Validación y registro de imágenes, compartido por las distintas formas de subida
+ * (multipart, streaming, por partes).
+ */
+@Service
+@Slf4j
+public class ImageService {
+
+    private static final String PATH_PREFIX = "images/";
+
+    private final ImageRepository imageRepository;
+    private final UserRepository userRepository;
+    private final StorageFeignService storageFeignService;
+
+    public ImageService(ImageRepository imageRepository, UserRepository userRepository,
+                        StorageFeignService storageFeignService) {
+        this.imageRepository = imageRepository;
+        this.userRepository = userRepository;
+        this.storageFeignService = storageFeignService;
+    }
+
+    /**
+     * Error de validación de los datos de una imagen (código para X-Error-Code y mensaje).
+     */
+    public static final class ValidationError {
+        private final String code;
+        private final String message;
+
+        private ValidationError(String code, String message) {
+            this.code = code;
+            this.message = message;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * Valida nombre, tipo y la consistencia del usuario según el tipo de imagen.
+     *
+     * @return El primer error encontrado, o vacío si los datos son válidos
+     */
+    public Optional<ValidationError> validate(ImageRequest imageRequest) {
+        if (imageRequest.getName() == null || imageRequest.getName().trim().isEmpty()) {
+            return Optional.of(new ValidationError("IMAGE_NAME_REQUIRED", "Image name is required"));
+        }
+
+        // Validar que el campo type esté presente y sea "public" o "private"
+        if (imageRequest.getType() == null || imageRequest.getType().trim().isEmpty()) {
+            return Optional.of(new ValidationError("IMAGE_TYPE_REQUIRED", "Image type is required"));
+        }
+        String type = imageRequest.getType().trim().toLowerCase();
+        if (!type.equals("public") && !type.equals("private")) {
+            return Optional.of(new ValidationError("INVALID_IMAGE_TYPE", "Invalid image type. Must be 'public' or 'private'"));
+        }
+
+        // Validar la consistencia de los datos según sea public o private
+        boolean isPublic = "public".equals(type);
+        if (!isPublic && imageRequest.getUserId() == null) {
+            return Optional.of(new ValidationError("USER_ID_REQUIRED_FOR_PRIVATE", "For private images, userId is required"));
+        }
+        if (isPublic && imageRequest.getUserId() != null) {
+            return Optional.of(new ValidationError("USER_ID_NOT_ALLOWED_FOR_PUBLIC", "For public images, userId should not be provided"));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Crea la fila de la imagen para un archivo ya guardado en el servicio de almacenamiento.
+     *
+     * @param imageRequest Datos de la imagen (ya validados)
+     * @param savedFilename Nombre con el que el servicio de almacenamiento guardó el archivo
+     * @return La imagen guardada
+     * @throws NoSuchElementException si la imagen es privada y el usuario no existe
+     */
+    public Image registerImage(ImageRequest imageRequest, String savedFilename) {
+        return registerImage(imageRequest, savedFilename, null);
+    }
+
+    /**
+     * Igual que {@link #registerImage(ImageRequest, String)}, registrando además el SHA-256 del archivo
+     * para que las siguientes subidas del mismo contenido lo reutilicen.
+     *
+     * @param contentHash SHA-256 del archivo en hexadecimal, o null si no se calculó
+     */
+    public Image registerImage(ImageRequest imageRequest, String savedFilename, String contentHash) {
+        boolean isPublic = "public".equals(imageRequest.getType().trim().toLowerCase());
+
+        Image image = new Image();
+        image.setName(imageRequest.getName());
+        image.setPath(PATH_PREFIX + savedFilename); // Guardamos el nombre del archivo generado por el servicio
+        image.setType(imageRequest.getType().toLowerCase().trim());
+        image.setState("active");
+        image.setDisco((new BigDecimal(imageRequest.getDisco().replace(" GB" , ""))));
+        image.setDescription(imageRequest.getDescription());
+        image.setSo(imageRequest.getOs());
+        image.setSize(imageRequest.getImageSize());
+        image.setVersion(imageRequest.getVersion());
+        image.setContentHash(contentHash);
+
+        // Asignar usuario según el tipo de imagen
+        if (!isPublic) {
+            User user = userRepository.findById(imageRequest.getUserId())
+                    .orElseThrow(() -> new NoSuchElementException("User not found with ID: " + imageRequest.getUserId()));
+            image.setUser(user);
+            log.info("Creating private image assigned to user ID: {}", user.getId());
+        } else {
+            // Es una imagen pública (sin usuario asignado)
+            image.setUser(null);
+            log.info("Creating public image (no user assigned)");
+        }
+
+        return imageRepository.save(image);
+    }
+
+    /**
+     * Imagen activa cuyo archivo tiene el digest dado, para reutilizar ese archivo en lugar de subirlo de nuevo.
+     */
+    public Optional<Image> findByContentHash(String contentHash) {
+        if (contentHash == null) {
+            return Optional.empty();
+        }
+        return imageRepository.findFirstByContentHashAndStateOrderByIdAsc(contentHash, "active");
+    }
+
+    /**
+     * Nombre del archivo en el servicio de almacenamiento (el path sin el prefijo "images/").
+     */
+    public String storedFilename(Image image) {
+        String path = image.getPath();
+        return path != null && path.startsWith(PATH_PREFIX) ? path.substring(PATH_PREFIX.length()) : path;
+    }
+
+    /**
+     * Elimina del almacenamiento un archivo recién subido cuya imagen no llegó a registrarse, para no dejarlo
+     * huérfano. Un error solo se registra: no debe ocultar el error original del registro.
+     *
+     * @param savedFilename Nombre devuelto por el servicio de almacenamiento (sin el prefijo "images/")
+     */
+    public void discardStoredFile(String savedFilename) {
+        if (savedFilename == null) {
+            return;
+        }
+        try {
+            storageFeignService.deleteFile(PATH_PREFIX + savedFilename);
+            log.info("Archivo huérfano {} eliminado del almacenamiento", savedFilename);
+        } catch (Exception e) {
+            log.warn("No se pudo eliminar el archivo huérfano {} del almacenamiento: {}", savedFilename, e.getMessage());
+        }
+    }
+
+    /**
+     * Indica si otra imagen activa sigue usando el mismo archivo, en cuyo caso no debe eliminarse del almacenamiento.
+     */
+    public boolean isFileShared(Image image) {
+        return image.getPath() != null && imageRepository.countOtherActiveByPath(image.getPath(), image.getId()) > 0;
+    }
+}
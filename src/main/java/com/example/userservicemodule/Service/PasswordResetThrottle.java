@@ -0,0 +1,125 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.Util.TokenBucketRateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Limita las solicitudes de restablecimiento de contraseña por IP y por email (token buckets en memoria)
+ * y agrupa las solicitudes repetidas: dentro de la ventana de agrupación, las solicitudes para el mismo
+ * email reciben el resultado de la primera en lugar de encolar otro correo.
+ */
+@Component
+@Slf4j
+public class PasswordResetThrottle {
+
+    /**
+     * Resultado de una solicitud: limitada (con segundos de espera) o procesada (con si el email existe).
+     */
+    public record Decision(boolean limited, long retryAfterSeconds, boolean userFound) {
+        static Decision limited(long waitNanos) {
+            return new Decision(true, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L)), false);
+        }
+    }
+
+    private record InFlight(CompletableFuture<Boolean> result, long expiresAtNanos) {
+        boolean isFresh(long now) {
+            return expiresAtNanos - now > 0;
+        }
+    }
+
+    private final TokenBucketRateLimiter ipLimiter;
+    private final TokenBucketRateLimiter emailLimiter;
+    private final long coalesceWindowNanos;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public PasswordResetThrottle(@Value("${password.reset-request.ip-capacity:20}") int ipCapacity,
+                                 @Value("${password.reset-request.ip-refill-seconds:30}") long ipRefillSeconds,
+                                 @Value("${password.reset-request.email-capacity:3}") int emailCapacity,
+                                 @Value("${password.reset-request.email-refill-seconds:300}") long emailRefillSeconds,
+                                 @Value("${password.reset-request.coalesce-window-seconds:30}") long coalesceWindowSeconds) {
+        this.ipLimiter = new TokenBucketRateLimiter(ipCapacity, ipRefillSeconds, TimeUnit.SECONDS);
+        this.emailLimiter = new TokenBucketRateLimiter(emailCapacity, emailRefillSeconds, TimeUnit.SECONDS);
+        this.coalesceWindowNanos = TimeUnit.SECONDS.toNanos(coalesceWindowSeconds);
+    }
+
+    /**
+     * Aplica los límites y ejecuta {@code generate} solo si no hay una solicitud reciente para el mismo email.
+     * Las solicitudes agrupadas no consumen del balde del email.
+     *
+     * @param email Email solicitado
+     * @param clientIp IP del cliente
+     * @param generate Encola el correo de restablecimiento; devuelve false si el email no está registrado
+     */
+    public Decision request(String email, String clientIp, Supplier<Boolean> generate) {
+        long ipWait = ipLimiter.tryAcquire(clientIp);
+        if (ipWait > 0) {
+            log.warn("Solicitudes de restablecimiento limitadas para IP {}", clientIp);
+            return Decision.limited(ipWait);
+        }
+
+        String key = email.trim().toLowerCase(Locale.ROOT);
+        long now = System.nanoTime();
+        InFlight mine = new InFlight(new CompletableFuture<>(), now + coalesceWindowNanos);
+        long[] emailWait = {0};
+        InFlight current = inFlight.compute(key, (k, existing) -> {
+            if (existing != null && existing.isFresh(now)) {
+                return existing;
+            }
+            emailWait[0] = emailLimiter.tryAcquire(k);
+            return emailWait[0] > 0 ? null : mine;
+        });
+
+        if (current == null) {
+            log.warn("Solicitudes de restablecimiento limitadas para email {}", email);
+            return Decision.limited(emailWait[0]);
+        }
+        if (current != mine) {
+            log.info("Solicitud de restablecimiento para {} agrupada con una reciente", email);
+            return new Decision(false, 0, join(current.result()));
+        }
+
+        try {
+            boolean found = generate.get();
+            mine.result().complete(found);
+            return new Decision(false, 0, found);
+        } catch (RuntimeException e) {
+            // Si falló, la próxima solicitud debe reintentar en lugar de recibir el error agrupado
+            inFlight.remove(key, mine);
+            mine.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Descarta las agrupaciones vencidas y los baldes ya llenos para que los mapas no crezcan sin límite.
+     */
+    @Scheduled(fixedDelayString = "${password.reset-request.cleanup-interval-ms:60000}")
+    public void cleanup() {
+        long now = System.nanoTime();
+        inFlight.values().removeIf(entry -> !entry.isFresh(now) && entry.result().isDone());
+        ipLimiter.evictFull();
+        emailLimiter.evictFull();
+    }
+
+    private boolean join(CompletableFuture<Boolean> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+}
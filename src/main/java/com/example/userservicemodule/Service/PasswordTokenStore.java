@@ -0,0 +1,173 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.Entity.PasswordResetToken;
+import com.example.userservicemodule.Entity.User;
+import com.example.userservicemodule.Repository.PasswordTokenRepository;
+import com.example.userservicemodule.Util.ContentHash;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Capa de acceso a los tokens de restablecimiento de contraseña. Los tokens se guardan y buscan por su
+ * SHA-256 (columna {@code token}, con índice único) y las verificaciones se responden desde una caché en memoria con expiración.
+ * Un barrido periódico elimina por tramos los tokens expirados para que la tabla no crezca sin límite.
+ * <p>
+ * La caché es local a cada instancia: un token usado en otra instancia puede seguir verificándose aquí
+ * hasta {@code password.reset-token.cache-ttl-seconds}, pero el restablecimiento siempre lo consume en la BD.
+ */
+@Component
+@Slf4j
+public class PasswordTokenStore {
+
+    /**
+     * Datos del token necesarios para verificarlo y restablecer la contraseña.
+     */
+    public record StoredToken(Integer id, Integer userId, String email, LocalDateTime expiresAt) {
+        public boolean isExpired(LocalDateTime now) {
+            return expiresAt.isBefore(now);
+        }
+    }
+
+    private record CacheEntry(StoredToken token, long cachedUntilMillis) {
+    }
+
+    private final PasswordTokenRepository passwordTokenRepository;
+    private final long ttlHours;
+    private final long cacheTtlMillis;
+    private final int cacheMaxEntries;
+    private final int sweepChunkSize;
+
+    private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+
+    public PasswordTokenStore(PasswordTokenRepository passwordTokenRepository,
+                              @Value("${password.reset-token.ttl-hours:24}") long ttlHours,
+                              @Value("${password.reset-token.cache-ttl-seconds:60}") long cacheTtlSeconds,
+                              @Value("${password.reset-token.cache-max-entries:10000}") int cacheMaxEntries,
+                              @Value("${password.reset-token.sweep-chunk-size:500}") int sweepChunkSize) {
+        this.passwordTokenRepository = passwordTokenRepository;
+        this.ttlHours = ttlHours;
+        this.cacheTtlMillis = cacheTtlSeconds * 1000;
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.sweepChunkSize = sweepChunkSize;
+    }
+
+    /**
+     * Genera un token nuevo para el usuario, que reemplaza a los anteriores y vence en
+     * {@code password.reset-token.ttl-hours}. Se llama al enviar el correo, así el valor original
+     * no se guarda en ninguna tabla.
+     *
+     * @param user Usuario dueño del token
+     * @return Valor del token que se envía en el enlace
+     */
+    @Transactional
+    public String issue(User user) {
+        String rawToken = UUID.randomUUID().toString();
+        save(user, rawToken, LocalDateTime.now().plusHours(ttlHours));
+        return rawToken;
+    }
+
+    /**
+     * Reemplaza los tokens del usuario por uno nuevo.
+     *
+     * @param user Usuario dueño del token
+     * @param rawToken Valor del token que se envía en el enlace
+     * @param expiresAt Fecha de expiración
+     */
+    public void save(User user, String rawToken, LocalDateTime expiresAt) {
+        passwordTokenRepository.deleteAllByUserId(user.getId());
+        cache.values().removeIf(entry -> entry.token().userId().equals(user.getId()));
+
+        String tokenHash = hash(rawToken);
+        PasswordResetToken passwordToken = new PasswordResetToken();
+        passwordToken.setToken(tokenHash);
+        passwordToken.setUser(user);
+        passwordToken.setExpiryDate(expiresAt);
+        passwordToken.setCreatedAt(LocalDateTime.now());
+        passwordTokenRepository.save(passwordToken);
+
+        cache(tokenHash, new StoredToken(passwordToken.getId(), user.getId(), user.getUsername(), expiresAt));
+    }
+
+    /**
+     * Busca un token por su valor, primero en la caché y luego en la BD. No filtra los expirados.
+     *
+     * @param rawToken Valor del token recibido
+     * @return El token o vacío si no existe
+     */
+    public Optional<StoredToken> find(String rawToken) {
+        if (rawToken == null || rawToken.isEmpty()) {
+            return Optional.empty();
+        }
+        String tokenHash = hash(rawToken);
+        CacheEntry entry = cache.get(tokenHash);
+        if (entry != null && entry.cachedUntilMillis() > System.currentTimeMillis()) {
+            return Optional.of(entry.token());
+        }
+        if (entry != null) {
+            cache.remove(tokenHash, entry);
+        }
+
+        Optional<StoredToken> stored = passwordTokenRepository.findByToken(tokenHash)
+                .map(token -> new StoredToken(token.getId(), token.getUser().getId(),
+                        token.getUser().getUsername(), token.getExpiryDate()));
+        stored.ifPresent(token -> cache(tokenHash, token));
+        return stored;
+    }
+
+    /**
+     * Consume el token: lo elimina de la BD y de la caché.
+     *
+     * @return true si este llamado lo consumió, false si ya había sido usado o reemplazado
+     */
+    public boolean consume(String rawToken, StoredToken token) {
+        cache.remove(hash(rawToken));
+        return passwordTokenRepository.deleteByIdIfPresent(token.id()) == 1;
+    }
+
+    /**
+     * Elimina los tokens expirados por tramos de {@code password.reset-token.sweep-chunk-size} filas,
+     * cada uno en su propia transacción corta, y purga la caché.
+     */
+    @Scheduled(fixedDelayString = "${password.reset-token.sweep-interval-ms:600000}")
+    public int sweepExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        long nowMillis = System.currentTimeMillis();
+        cache.values().removeIf(entry -> entry.cachedUntilMillis() <= nowMillis || entry.token().isExpired(now));
+
+        int deleted = 0;
+        int chunk;
+        do {
+            chunk = passwordTokenRepository.deleteExpiredChunk(now, sweepChunkSize);
+            deleted += chunk;
+        } while (chunk == sweepChunkSize);
+
+        if (deleted > 0) {
+            log.info("Eliminados {} tokens de restablecimiento expirados", deleted);
+        }
+        return deleted;
+    }
+
+    private void cache(String tokenHash, StoredToken token) {
+        if (cache.size() >= cacheMaxEntries) {
+            return;  // Caché llena: se sigue respondiendo desde la BD hasta el próximo barrido
+        }
+        cache.put(tokenHash, new CacheEntry(token, System.currentTimeMillis() + cacheTtlMillis));
+    }
+
+    private static String hash(String rawToken) {
+        MessageDigest digest = ContentHash.newDigest();
+        digest.update(rawToken.getBytes(StandardCharsets.UTF_8));
+        return ContentHash.toHex(digest);
+    }
+}
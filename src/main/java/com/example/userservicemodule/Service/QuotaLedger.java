@@ -0,0 +1,307 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.DTO.QuotaSnapshot;
+import com.example.userservicemodule.Entity.Resource;
+import com.example.userservicemodule.Repository.ResourceRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ledger de cuotas en memoria (opcional, {@code quota.ledger.enabled=true}).
+ * Mantiene límites y uso de cada usuario para responder verificaciones y reservas sin ir a la base de datos.
+ * Los deltas aceptados se acumulan por usuario y se persisten periódicamente con un solo UPDATE por usuario.
+ * <p>
+ * Esta instancia debe ser la única que modifica el uso de recursos; los cambios hechos directamente en la tabla
+ * solo se ven tras {@link #refresh(Integer)} o un reinicio.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "quota.ledger.enabled", havingValue = "true")
+public class QuotaLedger {
+
+    private final ResourceRepository resourceRepository;
+
+    /**
+     * Cuentas por ID de usuario. Cada cuenta se protege con su propio lock, así que usuarios distintos no compiten.
+     */
+    private final Map<Integer, Account> accounts = new ConcurrentHashMap<>();
+
+    public QuotaLedger(ResourceRepository resourceRepository) {
+        this.resourceRepository = resourceRepository;
+    }
+
+    /**
+     * Estado de la cuota de un usuario. El disco se guarda en centésimas (escala 2 de la columna).
+     */
+    private static final class Account {
+        final Integer userId;
+        final String username;
+
+        int cpu;
+        int ram;
+        long disk;
+        int slices;
+
+        int usedCpu;
+        int usedRam;
+        long usedDisk;
+        int usedSlices;
+
+        // Deltas aceptados aún no escritos en la tabla
+        int pendingCpu;
+        int pendingRam;
+        long pendingDisk;
+        int pendingSlices;
+
+        Account(Integer userId, String username) {
+            this.userId = userId;
+            this.username = username;
+        }
+
+        void load(Resource resource) {
+            cpu = orZero(resource.getCpu());
+            ram = orZero(resource.getRam());
+            disk = toHundredths(resource.getDisk());
+            slices = orZero(resource.getSlices());
+            usedCpu = orZero(resource.getUsedCpu());
+            usedRam = orZero(resource.getUsedRam());
+            usedDisk = toHundredths(resource.getUsedDisk());
+            usedSlices = orZero(resource.getUsedSlices());
+        }
+
+        boolean hasPending() {
+            return pendingCpu != 0 || pendingRam != 0 || pendingDisk != 0 || pendingSlices != 0;
+        }
+
+        QuotaSnapshot snapshot() {
+            return new QuotaSnapshot(userId, username,
+                    cpu, ram, fromHundredths(disk), slices,
+                    usedCpu, usedRam, fromHundredths(usedDisk), usedSlices);
+        }
+    }
+
+    /**
+     * Carga todas las cuotas al arrancar, en una sola consulta.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<Resource> resources = resourceRepository.findAllWithUser();
+        for (Resource resource : resources) {
+            Account account = new Account(resource.getUser().getId(), resource.getUser().getUsername());
+            account.load(resource);
+            accounts.putIfAbsent(account.userId, account);
+        }
+        log.info("Ledger de cuotas inicializado con {} usuarios", accounts.size());
+    }
+
+    /**
+     * @return Cuota actual del usuario, o vacío si no tiene recursos asignados
+     */
+    public Optional<QuotaSnapshot> snapshot(Integer userId) {
+        Account account = account(userId);
+        if (account == null) {
+            return Optional.empty();
+        }
+        synchronized (account) {
+            return Optional.of(account.snapshot());
+        }
+    }
+
+    /**
+     * Suma los deltas al uso del usuario solo si caben en todos sus límites.
+     *
+     * @return Vacío si el usuario no tiene recursos; si no, la lista de recursos insuficientes
+     *         (lista vacía si la reserva se aplicó)
+     */
+    public Optional<List<String>> tryReserve(Integer userId, int cpu, int ram, BigDecimal disk, int slices) {
+        Account account = account(userId);
+        if (account == null) {
+            return Optional.empty();
+        }
+        long diskHundredths = toHundredths(disk);
+        synchronized (account) {
+            if (account.usedCpu + cpu > account.cpu || account.usedRam + ram > account.ram ||
+                    account.usedDisk + diskHundredths > account.disk || account.usedSlices + slices > account.slices) {
+                return Optional.of(account.snapshot().insufficientFor(cpu, ram, disk, slices));
+            }
+            account.usedCpu += cpu;
+            account.usedRam += ram;
+            account.usedDisk += diskHundredths;
+            account.usedSlices += slices;
+            account.pendingCpu += cpu;
+            account.pendingRam += ram;
+            account.pendingDisk += diskHundredths;
+            account.pendingSlices += slices;
+            return Optional.of(Collections.emptyList());
+        }
+    }
+
+    /**
+     * Resta los deltas del uso del usuario, sin bajar de 0.
+     */
+    public void release(Integer userId, int cpu, int ram, BigDecimal disk, int slices) {
+        Account account = account(userId);
+        if (account == null) {
+            return;
+        }
+        long diskHundredths = toHundredths(disk);
+        synchronized (account) {
+            int releasedCpu = Math.min(cpu, account.usedCpu);
+            int releasedRam = Math.min(ram, account.usedRam);
+            long releasedDisk = Math.min(diskHundredths, account.usedDisk);
+            int releasedSlices = Math.min(slices, account.usedSlices);
+            account.usedCpu -= releasedCpu;
+            account.usedRam -= releasedRam;
+            account.usedDisk -= releasedDisk;
+            account.usedSlices -= releasedSlices;
+            account.pendingCpu -= releasedCpu;
+            account.pendingRam -= releasedRam;
+            account.pendingDisk -= releasedDisk;
+            account.pendingSlices -= releasedSlices;
+        }
+    }
+
+    /**
+     * Fija el uso absoluto del usuario (los valores nulos se mantienen), escribiéndolo de inmediato en la tabla.
+     *
+     * @return true si el usuario tiene recursos asignados y se actualizaron
+     */
+    public boolean setUsage(Integer userId, Integer usedCpu, Integer usedRam, BigDecimal usedDisk, Integer usedSlices) {
+        Account account = account(userId);
+        if (account == null) {
+            return false;
+        }
+        synchronized (account) {
+            flush(account);
+            if (resourceRepository.updateUsage(userId, usedCpu, usedRam, usedDisk, usedSlices) == 0) {
+                accounts.remove(userId, account);
+                return false;
+            }
+            if (usedCpu != null) {
+                account.usedCpu = usedCpu;
+            }
+            if (usedRam != null) {
+                account.usedRam = usedRam;
+            }
+            if (usedDisk != null) {
+                account.usedDisk = toHundredths(usedDisk);
+            }
+            if (usedSlices != null) {
+                account.usedSlices = usedSlices;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Persiste los deltas pendientes del usuario y vuelve a leer su fila.
+     * Debe llamarse tras cambiar límites o crear/eliminar los recursos del usuario.
+     */
+    public void refresh(Integer userId) {
+        Account account = accounts.get(userId);
+        if (account == null) {
+            account(userId);
+            return;
+        }
+        synchronized (account) {
+            flush(account);
+            Optional<Resource> resource = resourceRepository.findByUserId(userId);
+            if (resource.isPresent()) {
+                account.load(resource.get());
+            } else {
+                accounts.remove(userId, account);
+            }
+        }
+    }
+
+    /**
+     * Escribe en la tabla los deltas acumulados: un UPDATE por usuario con cambios, sin importar cuántas
+     * reservas se hayan hecho desde la última escritura.
+     */
+    @Scheduled(fixedDelayString = "${quota.ledger.flush-interval-ms:1000}")
+    public void flushPending() {
+        int flushed = 0;
+        for (Account account : new ArrayList<>(accounts.values())) {
+            synchronized (account) {
+                if (!account.hasPending()) {
+                    continue;
+                }
+                try {
+                    flush(account);
+                    flushed++;
+                } catch (RuntimeException e) {
+                    // Los deltas se mantienen y se reintentan en la siguiente pasada
+                    log.error("Error al persistir el uso de recursos del usuario ID {}: {}",
+                            account.userId, e.getMessage(), e);
+                }
+            }
+        }
+        if (flushed > 0) {
+            log.debug("Ledger de cuotas: uso persistido para {} usuarios", flushed);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushPending();
+    }
+
+    /**
+     * Debe llamarse con el lock de la cuenta tomado.
+     */
+    private void flush(Account account) {
+        if (!account.hasPending()) {
+            return;
+        }
+        resourceRepository.addUsage(account.userId, account.pendingCpu, account.pendingRam,
+                fromHundredths(account.pendingDisk), account.pendingSlices);
+        account.pendingCpu = 0;
+        account.pendingRam = 0;
+        account.pendingDisk = 0;
+        account.pendingSlices = 0;
+    }
+
+    /**
+     * Cuenta del usuario, cargándola desde la tabla si aún no está en memoria.
+     */
+    private Account account(Integer userId) {
+        Account account = accounts.get(userId);
+        if (account != null) {
+            return account;
+        }
+        Optional<Resource> resource = resourceRepository.findWithUserByUserId(userId);
+        if (resource.isEmpty()) {
+            return null;
+        }
+        Account loaded = new Account(userId, resource.get().getUser().getUsername());
+        loaded.load(resource.get());
+        Account existing = accounts.putIfAbsent(userId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private static int orZero(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private static long toHundredths(BigDecimal value) {
+        return value != null ? value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact() : 0L;
+    }
+
+    private static BigDecimal fromHundredths(long value) {
+        return BigDecimal.valueOf(value, 2);
+    }
+}
@@ -0,0 +1,400 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.BeansRequest.ResourceRequirementRequest;
+import com.example.userservicemodule.DTO.QuotaCheckVerdict;
+import com.example.userservicemodule.DTO.QuotaReservation;
+import com.example.userservicemodule.DTO.QuotaSnapshot;
+import com.example.userservicemodule.Entity.QuotaHold;
+import com.example.userservicemodule.Entity.Resource;
+import com.example.userservicemodule.Events.CapacityChangedEvent;
+import com.example.userservicemodule.Repository.QuotaHoldRepository;
+import com.example.userservicemodule.Repository.ResourceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Servicio de reservas de cuota (reserve / commit / release).
+ * Cada reserva se aplica con un único UPDATE condicional sobre la fila de recursos del usuario,
+ * por lo que despliegues concurrentes del mismo usuario no pierden actualizaciones ni exceden la cuota.
+ * Las reservas pendientes se guardan en {@code quota_reservation} junto con el UPDATE del uso, así que
+ * sobreviven a reinicios y cualquier instancia puede confirmarlas o liberarlas. Las que no se confirman
+ * ni liberan antes de expirar se liberan automáticamente.
+ * Si el {@link QuotaLedger} está habilitado, las reservas y consultas se resuelven en memoria y el uso
+ * se persiste en segundo plano.
+ */
+@Service
+@Slf4j
+public class QuotaReservationService {
+
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    private final ResourceRepository resourceRepository;
+    private final QuotaHoldRepository quotaHoldRepository;
+    private final QuotaLedger ledger;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration reservationTtl;
+
+    public QuotaReservationService(ResourceRepository resourceRepository,
+                                   QuotaHoldRepository quotaHoldRepository,
+                                   ObjectProvider<QuotaLedger> ledgerProvider,
+                                   ApplicationEventPublisher eventPublisher,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${quota.reservation.ttl-seconds:600}") long ttlSeconds) {
+        this.resourceRepository = resourceRepository;
+        this.quotaHoldRepository = quotaHoldRepository;
+        this.ledger = ledgerProvider.getIfAvailable();
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reservationTtl = Duration.ofSeconds(ttlSeconds);
+    }
+
+    /**
+     * Estado final de un intento de reserva.
+     */
+    public enum ReservationStatus {
+        RESERVED,
+        INSUFFICIENT,
+        NO_RESOURCES
+    }
+
+    /**
+     * Resultado de un intento de reserva.
+     */
+    public static final class ReservationOutcome {
+        private final ReservationStatus status;
+        private final QuotaReservation reservation;
+        private final List<String> insufficientResources;
+
+        private ReservationOutcome(ReservationStatus status, QuotaReservation reservation, List<String> insufficientResources) {
+            this.status = status;
+            this.reservation = reservation;
+            this.insufficientResources = insufficientResources;
+        }
+
+        public ReservationStatus getStatus() {
+            return status;
+        }
+
+        public QuotaReservation getReservation() {
+            return reservation;
+        }
+
+        public List<String> getInsufficientResources() {
+            return insufficientResources;
+        }
+    }
+
+    /**
+     * Reserva recursos para el usuario sumándolos a su uso actual, solo si caben dentro de su cuota.
+     *
+     * @param userId ID del usuario
+     * @param required Recursos a reservar (los campos nulos se consideran 0)
+     * @return Resultado con la reserva creada o los recursos insuficientes
+     */
+    @Transactional
+    public ReservationOutcome reserve(Integer userId, ResourceRequirementRequest required) {
+        validateDeltas(required);
+
+        if (ledger != null) {
+            Optional<List<String>> insufficient = ledger.tryReserve(userId,
+                    required.cpuOrZero(), required.ramOrZero(), required.diskOrZero(), required.slicesOrZero());
+            if (insufficient.isEmpty()) {
+                return new ReservationOutcome(ReservationStatus.NO_RESOURCES, null, Collections.emptyList());
+            }
+            if (!insufficient.get().isEmpty()) {
+                log.debug("Reserva rechazada para usuario ID {}: {}", userId, insufficient.get());
+                return new ReservationOutcome(ReservationStatus.INSUFFICIENT, null, insufficient.get());
+            }
+            try {
+                return new ReservationOutcome(ReservationStatus.RESERVED, register(userId, required), Collections.emptyList());
+            } catch (RuntimeException e) {
+                // El ledger no participa de la transacción: se devuelve lo sumado si la reserva no quedó guardada
+                ledger.release(userId, required.cpuOrZero(), required.ramOrZero(), required.diskOrZero(), required.slicesOrZero());
+                throw e;
+            }
+        }
+
+        int updated = resourceRepository.reserveUsage(userId,
+                required.cpuOrZero(), required.ramOrZero(), required.diskOrZero(), required.slicesOrZero());
+
+        if (updated == 0) {
+            Optional<Resource> resource = resourceRepository.findByUserId(userId);
+            if (resource.isEmpty()) {
+                return new ReservationOutcome(ReservationStatus.NO_RESOURCES, null, Collections.emptyList());
+            }
+            List<String> insufficient = QuotaSnapshot.of(resource.get(), userId, null).insufficientFor(
+                    required.cpuOrZero(), required.ramOrZero(), required.diskOrZero(), required.slicesOrZero());
+            log.debug("Reserva rechazada para usuario ID {}: {}", userId, insufficient);
+            return new ReservationOutcome(ReservationStatus.INSUFFICIENT, null, insufficient);
+        }
+
+        return new ReservationOutcome(ReservationStatus.RESERVED, register(userId, required), Collections.emptyList());
+    }
+
+    /**
+     * Confirma una reserva: el uso ya aplicado se mantiene y la reserva deja de poder liberarse.
+     *
+     * @param reservationId ID de la reserva
+     * @return La reserva confirmada, o vacío si no existe o ya expiró
+     */
+    @Transactional
+    public Optional<QuotaReservation> commit(String reservationId) {
+        Optional<QuotaReservation> reservation = claim(reservationId);
+        reservation.ifPresent(committed -> {
+            log.debug("Reserva {} confirmada para usuario ID {}", reservationId, committed.getUserId());
+            eventPublisher.publishEvent(new CapacityChangedEvent(committed.getUserId(), "reserva confirmada"));
+        });
+        return reservation;
+    }
+
+    /**
+     * Libera una reserva pendiente devolviendo los recursos al usuario.
+     *
+     * @param reservationId ID de la reserva
+     * @return La reserva liberada, o vacío si no existe o ya fue confirmada
+     */
+    @Transactional
+    public Optional<QuotaReservation> release(String reservationId) {
+        // Si devolver el uso falla, el borrado se revierte y la reserva puede reintentarse o expirar
+        Optional<QuotaReservation> reservation = claim(reservationId);
+        reservation.ifPresent(released -> {
+            releaseUsage(released);
+            log.debug("Reserva {} liberada para usuario ID {}", reservationId, released.getUserId());
+            eventPublisher.publishEvent(new CapacityChangedEvent(released.getUserId(), "reserva liberada"));
+        });
+        return reservation;
+    }
+
+    /**
+     * Fija el uso reportado por otros servicios sin leer ni reescribir la fila completa.
+     *
+     * @return true si el usuario tiene recursos asignados y se actualizaron
+     */
+    public boolean setUsage(Integer userId, Integer usedCpu, Integer usedRam, BigDecimal usedDisk, Integer usedSlices) {
+        boolean updated = ledger != null
+                ? ledger.setUsage(userId, usedCpu, usedRam, usedDisk, usedSlices)
+                : resourceRepository.updateUsage(userId, usedCpu, usedRam, usedDisk, usedSlices) > 0;
+        if (updated) {
+            eventPublisher.publishEvent(new CapacityChangedEvent(userId, "uso reportado"));
+        }
+        return updated;
+    }
+
+    /**
+     * Cuota actual del usuario (límites, uso y username). Con el ledger habilitado no consulta la base de datos.
+     *
+     * @return La cuota, o vacío si el usuario no tiene recursos asignados
+     */
+    public Optional<QuotaSnapshot> findSnapshot(Integer userId) {
+        if (ledger != null) {
+            return ledger.snapshot(userId);
+        }
+        return resourceRepository.findWithUserByUserId(userId)
+                .map(resource -> QuotaSnapshot.of(resource, userId, resource.getUser().getUsername()));
+    }
+
+    /**
+     * Cuotas de varios usuarios: con el ledger habilitado se leen de memoria, si no, con una sola consulta.
+     *
+     * @return Cuotas por ID de usuario (los usuarios sin recursos asignados no aparecen)
+     */
+    public Map<Integer, QuotaSnapshot> findSnapshots(Collection<Integer> userIds) {
+        Map<Integer, QuotaSnapshot> snapshots = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return snapshots;
+        }
+        if (ledger != null) {
+            for (Integer userId : userIds) {
+                ledger.snapshot(userId).ifPresent(snapshot -> snapshots.put(userId, snapshot));
+            }
+            return snapshots;
+        }
+        for (Resource resource : resourceRepository.findAllWithUserByUserIdIn(userIds)) {
+            Integer userId = resource.getUser().getId();
+            snapshots.put(userId, QuotaSnapshot.of(resource, userId, resource.getUser().getUsername()));
+        }
+        return snapshots;
+    }
+
+    /**
+     * Verifica un lote de requerimientos contra la cuota de sus usuarios, leyendo todas las cuotas de una vez.
+     * No reserva nada.
+     *
+     * @param requirements Requerimientos (cada uno con su userId)
+     * @param cumulative Si es true, cada elemento se evalúa sumando lo que piden los elementos anteriores
+     *                   del mismo usuario (p. ej. todas las VMs de una misma topología)
+     * @return Un veredicto por elemento, en el mismo orden
+     */
+    public List<QuotaCheckVerdict> checkBatch(List<ResourceRequirementRequest> requirements, boolean cumulative) {
+        Set<Integer> userIds = new HashSet<>();
+        for (ResourceRequirementRequest required : requirements) {
+            if (required == null || required.getUserId() == null) {
+                throw new IllegalArgumentException("Cada elemento del lote debe indicar userId");
+            }
+            validateDeltas(required);
+            userIds.add(required.getUserId());
+        }
+
+        Map<Integer, QuotaSnapshot> snapshots = findSnapshots(userIds);
+        // Acumulado por usuario: {cpu, ram, slices} y disco por separado
+        Map<Integer, int[]> requested = new HashMap<>();
+        Map<Integer, BigDecimal> requestedDisk = new HashMap<>();
+
+        List<QuotaCheckVerdict> verdicts = new ArrayList<>(requirements.size());
+        for (int i = 0; i < requirements.size(); i++) {
+            ResourceRequirementRequest required = requirements.get(i);
+            Integer userId = required.getUserId();
+            QuotaSnapshot snapshot = snapshots.get(userId);
+            if (snapshot == null) {
+                verdicts.add(new QuotaCheckVerdict(i, userId, false, List.of("NoResources")));
+                continue;
+            }
+
+            int cpu = required.cpuOrZero();
+            int ram = required.ramOrZero();
+            BigDecimal disk = required.diskOrZero();
+            int slices = required.slicesOrZero();
+            if (cumulative) {
+                int[] totals = requested.computeIfAbsent(userId, id -> new int[3]);
+                totals[0] += cpu;
+                totals[1] += ram;
+                totals[2] += slices;
+                cpu = totals[0];
+                ram = totals[1];
+                slices = totals[2];
+                disk = requestedDisk.merge(userId, disk, BigDecimal::add);
+            }
+
+            List<String> insufficient = snapshot.insufficientFor(cpu, ram, disk, slices);
+            verdicts.add(new QuotaCheckVerdict(i, userId, insufficient.isEmpty(), insufficient));
+        }
+        return verdicts;
+    }
+
+    /**
+     * Notifica que los límites o la fila de recursos del usuario cambiaron fuera de este servicio.
+     */
+    public void refresh(Integer userId) {
+        if (ledger != null) {
+            ledger.refresh(userId);
+        }
+    }
+
+    /**
+     * Cantidad de reservas pendientes, de todas las instancias.
+     */
+    public long getPendingReservations() {
+        return quotaHoldRepository.count();
+    }
+
+    /**
+     * Libera periódicamente las reservas que expiraron sin ser confirmadas, incluidas las que quedaron
+     * de antes de un reinicio. Cada reserva se libera en su propia transacción.
+     */
+    @Scheduled(fixedDelayString = "${quota.reservation.sweep-interval-ms:60000}")
+    public void releaseExpiredReservations() {
+        Instant now = Instant.now();
+        int released = 0;
+        List<QuotaHold> expired;
+        do {
+            expired = quotaHoldRepository.findExpired(now, PageRequest.of(0, SWEEP_BATCH_SIZE));
+            int releasedInBatch = 0;
+            for (QuotaHold hold : expired) {
+                try {
+                    Boolean done = transactionTemplate.execute(status -> claim(hold.getId()).map(reservation -> {
+                        releaseUsage(reservation);
+                        return true;
+                    }).orElse(false));
+                    if (Boolean.TRUE.equals(done)) {
+                        releasedInBatch++;
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Error al liberar la reserva expirada {}: {}", hold.getId(), e.getMessage(), e);
+                }
+            }
+            released += releasedInBatch;
+            // Si ningún elemento del lote pudo liberarse, se reintenta en el próximo ciclo en vez de girar aquí
+            if (releasedInBatch == 0) {
+                break;
+            }
+        } while (expired.size() == SWEEP_BATCH_SIZE);
+        if (released > 0) {
+            log.info("Se liberaron {} reservas de cuota expiradas", released);
+            eventPublisher.publishEvent(new CapacityChangedEvent(null, "reservas expiradas"));
+        }
+    }
+
+    private QuotaReservation register(Integer userId, ResourceRequirementRequest required) {
+        Instant now = Instant.now();
+        QuotaHold hold = new QuotaHold();
+        hold.setId(UUID.randomUUID().toString());
+        hold.setUserId(userId);
+        hold.setCpu(required.cpuOrZero());
+        hold.setRam(required.ramOrZero());
+        hold.setDisk(required.diskOrZero());
+        hold.setSlices(required.slicesOrZero());
+        hold.setCreatedAt(now);
+        hold.setExpiresAt(now.plus(reservationTtl));
+        quotaHoldRepository.saveAndFlush(hold);
+
+        log.debug("Reserva {} creada para usuario ID {}", hold.getId(), userId);
+        return toReservation(hold);
+    }
+
+    /**
+     * Lee la reserva y la borra con un DELETE condicional; solo una llamada concurrente obtiene la reserva.
+     */
+    private Optional<QuotaReservation> claim(String reservationId) {
+        Optional<QuotaHold> hold = quotaHoldRepository.findById(reservationId);
+        if (hold.isEmpty() || quotaHoldRepository.claim(reservationId) == 0) {
+            return Optional.empty();
+        }
+        return hold.map(QuotaReservationService::toReservation);
+    }
+
+    private static QuotaReservation toReservation(QuotaHold hold) {
+        return new QuotaReservation(hold.getId(), hold.getUserId(),
+                hold.getCpu(), hold.getRam(), hold.getDisk(), hold.getSlices(),
+                hold.getCreatedAt(), hold.getExpiresAt());
+    }
+
+    private void releaseUsage(QuotaReservation reservation) {
+        if (ledger != null) {
+            ledger.release(reservation.getUserId(),
+                    reservation.getCpu(), reservation.getRam(), reservation.getDisk(), reservation.getSlices());
+            return;
+        }
+        resourceRepository.releaseUsage(reservation.getUserId(),
+                reservation.getCpu(), reservation.getRam(), reservation.getDisk(), reservation.getSlices());
+    }
+
+    private void validateDeltas(ResourceRequirementRequest required) {
+        if (required.cpuOrZero() < 0 || required.ramOrZero() < 0 ||
+                required.diskOrZero().compareTo(BigDecimal.ZERO) < 0 || required.slicesOrZero() < 0) {
+            throw new IllegalArgumentException("Los recursos a reservar no pueden ser negativos");
+        }
+    }
+}
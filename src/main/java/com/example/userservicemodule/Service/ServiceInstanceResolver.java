@@ -0,0 +1,228 @@
+package com.example.userservicemodule.Service;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.EurekaClient;
+import com.netflix.discovery.shared.Application;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resuelve instancias de servicios registrados en Eureka y reparte las llamadas entre ellas.
+ * La lista de instancias UP se guarda en una caché local de TTL corto; se elige la instancia con menos
+ * llamadas en curso (round-robin entre empates) y las que fallan quedan expulsadas por un tiempo.
+ */
+@Service
+@Slf4j
+public class ServiceInstanceResolver {
+
+    private final EurekaClient eurekaClient;
+    private final long cacheTtlNanos;
+    private final long ejectionNanos;
+
+    private final Map<String, CachedInstances> cache = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> cursors = new ConcurrentHashMap<>();
+    private final Map<String, InstanceState> states = new ConcurrentHashMap<>();
+
+    public ServiceInstanceResolver(EurekaClient eurekaClient,
+                                   @Value("${discovery.instance-cache-ttl-ms:5000}") long cacheTtlMs,
+                                   @Value("${discovery.ejection-ms:30000}") long ejectionMs) {
+        this.eurekaClient = eurekaClient;
+        this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(cacheTtlMs);
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMs);
+    }
+
+    private static final class CachedInstances {
+        final List<Endpoint> endpoints;
+        final long expiresAtNanos;
+
+        CachedInstances(List<Endpoint> endpoints, long expiresAtNanos) {
+            this.endpoints = endpoints;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private static final class Endpoint {
+        final String instanceId;
+        final String baseUrl;
+
+        Endpoint(String instanceId, String baseUrl) {
+            this.instanceId = instanceId;
+            this.baseUrl = baseUrl;
+        }
+    }
+
+    /**
+     * Llamadas en curso y expulsión de una instancia; se conserva aunque la instancia salga de la caché.
+     */
+    private static final class InstanceState {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        volatile long ejectedUntilNanos;
+
+        boolean isEjected(long now) {
+            return ejectedUntilNanos - now > 0;
+        }
+    }
+
+    /**
+     * Instancia asignada a una llamada. Debe cerrarse al terminar la llamada; si la instancia falló
+     * (no se pudo conectar o respondió 5xx) se marca con {@link #failed()} para expulsarla.
+     */
+    public final class Lease implements AutoCloseable {
+        private final Endpoint endpoint;
+        private final InstanceState state;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(Endpoint endpoint, InstanceState state) {
+            this.endpoint = endpoint;
+            this.state = state;
+            state.inFlight.incrementAndGet();
+        }
+
+        public String getBaseUrl() {
+            return endpoint.baseUrl;
+        }
+
+        public String getInstanceId() {
+            return endpoint.instanceId;
+        }
+
+        public void succeeded() {
+            state.consecutiveFailures.set(0);
+            state.ejectedUntilNanos = 0;
+        }
+
+        public void failed() {
+            int failures = state.consecutiveFailures.incrementAndGet();
+            state.ejectedUntilNanos = System.nanoTime() + ejectionNanos;
+            log.warn("Instancia {} expulsada por {} ms tras {} fallo(s) consecutivo(s)",
+                    endpoint.instanceId, TimeUnit.NANOSECONDS.toMillis(ejectionNanos), failures);
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                state.inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Elige una instancia del servicio para una llamada.
+     *
+     * @param serviceName Nombre del servicio registrado en Eureka
+     * @return La instancia asignada, o vacío si el servicio no tiene instancias UP
+     */
+    public Optional<Lease> acquire(String serviceName) {
+        List<Endpoint> endpoints = endpoints(serviceName);
+        if (endpoints.isEmpty()) {
+            return Optional.empty();
+        }
+
+        long now = System.nanoTime();
+        List<Endpoint> candidates = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            if (!state(endpoint).isEjected(now)) {
+                candidates.add(endpoint);
+            }
+        }
+        if (candidates.isEmpty()) {
+            // Si todas están expulsadas se prueba igual: es preferible a rechazar la llamada
+            log.warn("Todas las instancias de {} están expulsadas, se usan igualmente", serviceName);
+            candidates = endpoints;
+        }
+
+        // Menos llamadas en curso; el recorrido empieza en una posición rotativa para repartir los empates
+        int size = candidates.size();
+        int start = Math.floorMod(cursors.computeIfAbsent(serviceName, k -> new AtomicInteger()).getAndIncrement(), size);
+        Endpoint selected = null;
+        int selectedInFlight = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Endpoint endpoint = candidates.get((start + i) % size);
+            int inFlight = state(endpoint).inFlight.get();
+            if (inFlight < selectedInFlight) {
+                selected = endpoint;
+                selectedInFlight = inFlight;
+            }
+        }
+
+        log.debug("Instancia seleccionada para {}: {} ({} llamadas en curso)", serviceName, selected.instanceId, selectedInFlight);
+        return Optional.of(new Lease(selected, state(selected)));
+    }
+
+    /**
+     * Descarta la lista en caché para que la siguiente llamada la vuelva a leer de Eureka.
+     */
+    public void invalidate(String serviceName) {
+        cache.remove(serviceName);
+    }
+
+    /**
+     * Instancias conocidas del servicio con sus llamadas en curso y estado de expulsión.
+     */
+    public List<Map<String, Object>> describe(String serviceName) {
+        long now = System.nanoTime();
+        List<Map<String, Object>> instances = new ArrayList<>();
+        for (Endpoint endpoint : endpoints(serviceName)) {
+            InstanceState state = state(endpoint);
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("instanceId", endpoint.instanceId);
+            info.put("baseUrl", endpoint.baseUrl);
+            info.put("inFlight", state.inFlight.get());
+            info.put("consecutiveFailures", state.consecutiveFailures.get());
+            info.put("ejected", state.isEjected(now));
+            info.put("ejectedForMs", state.isEjected(now) ? TimeUnit.NANOSECONDS.toMillis(state.ejectedUntilNanos - now) : 0);
+            instances.add(info);
+        }
+        return instances;
+    }
+
+    private List<Endpoint> endpoints(String serviceName) {
+        long now = System.nanoTime();
+        CachedInstances cached = cache.get(serviceName);
+        if (cached != null && cached.expiresAtNanos - now > 0) {
+            return cached.endpoints;
+        }
+
+        List<Endpoint> endpoints = new ArrayList<>();
+        try {
+            Application application = eurekaClient.getApplication(serviceName);
+            if (application != null) {
+                for (InstanceInfo instance : application.getInstances()) {
+                    if (instance.getStatus() == InstanceInfo.InstanceStatus.UP) {
+                        endpoints.add(new Endpoint(instance.getInstanceId(),
+                                String.format("http://%s:%s", instance.getIPAddr(), instance.getPort())));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error obteniendo instancias de {}: {}", serviceName, e.getMessage(), e);
+            // Ante un error de Eureka se sigue usando la última lista conocida
+            if (cached != null) {
+                return cached.endpoints;
+            }
+        }
+
+        if (endpoints.isEmpty()) {
+            log.error("No hay instancias activas del servicio {}", serviceName);
+        }
+        List<Endpoint> snapshot = List.copyOf(endpoints);
+        cache.put(serviceName, new CachedInstances(snapshot, now + cacheTtlNanos));
+        return snapshot;
+    }
+
+    private InstanceState state(Endpoint endpoint) {
+        return states.computeIfAbsent(endpoint.instanceId, k -> new InstanceState());
+    }
+}
@@ -1,47 +1,210 @@
 package com.example.userservicemodule.Service;
 
 import com.example.userservicemodule.DTO.Slices.SliceSummaryDTO;
+import com.example.userservicemodule.Util.KeysetCursor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @Service
+@Slf4j
 public class SliceService {
 
+    /**
+     * Filas leídas por viaje al servidor al recorrer el cursor JDBC.
+     */
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    /**
+     * Cada cuántas filas se fuerza el envío de lo escrito al cliente.
+     */
+    private static final int FLUSH_EVERY_ROWS = 500;
+
     @Autowired
     private EntityManager entityManager;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Filtros opcionales del listado de slices (los nulos no filtran).
+     */
+    public static class SliceFilter {
+        private final String status;
+        private final Integer ownerId;
+        private final Integer zoneId;
+
+        public SliceFilter(String status, Integer ownerId, Integer zoneId) {
+            this.status = status;
+            this.ownerId = ownerId;
+            this.zoneId = zoneId;
+        }
+
+        public static SliceFilter none() {
+            return new SliceFilter(null, null, null);
+        }
+    }
+
+    /**
+     * Página del resumen de slices y la posición de su última fila (slice y propietario), para pedir la siguiente.
+     */
+    public record SlicePage(List<SliceSummaryDTO> items, KeysetCursor.Position last) {
+    }
+
     public List<SliceSummaryDTO> obtenerResumenSlices() {
-        String query = """
-            SELECT s.id, s.name, u.name AS propietario, s.description AS topologia, 
-                   SUM(f.vcpus) AS totalVcpu, SUM(f.ram) AS totalRam, 
-                   s.status
+        return obtenerResumenSlices(SliceFilter.none(), null, null, null).items();
+    }
+
+    /**
+     * Resumen de slices filtrado y paginado en la base de datos. Hay una fila por slice y propietario,
+     * ordenadas por (ID de slice, ID de propietario); el keyset usa ese mismo par para no saltar
+     * propietarios de un slice que quedó partido entre dos páginas.
+     *
+     * @param filter Filtros por estado, propietario y zona
+     * @param after Si no es nulo, solo filas posteriores a esta posición (paginación por keyset)
+     * @param offset Filas a saltar; requiere limit y no se combina con after
+     * @param limit Máximo de filas a devolver, o null para todas
+     * @throws IllegalArgumentException si offset viene sin limit o junto con after
+     */
+    public SlicePage obtenerResumenSlices(SliceFilter filter, KeysetCursor.Position after, Integer offset, Integer limit) {
+        if (offset != null && limit == null) {
+            throw new IllegalArgumentException("offset requiere limit");
+        }
+        if (offset != null && after != null) {
+            throw new IllegalArgumentException("offset y next no se pueden combinar");
+        }
+
+        Query query = buildQuery(filter, after);
+        if (limit != null) {
+            query.setMaxResults(limit);
+            if (offset != null) {
+                query.setFirstResult(offset);
+            }
+        }
+
+        List<Object[]> resultados = query.getResultList();
+
+        List<SliceSummaryDTO> lista = new ArrayList<>(resultados.size());
+        for (Object[] fila : resultados) {
+            lista.add(mapRow(fila));
+        }
+
+        KeysetCursor.Position last = null;
+        if (!resultados.isEmpty()) {
+            Object[] ultima = resultados.get(resultados.size() - 1);
+            last = new KeysetCursor.Position(((Number) ultima[0]).intValue(), ((Number) ultima[7]).intValue());
+        }
+        return new SlicePage(lista, last);
+    }
+
+    /**
+     * Escribe el resumen de slices como NDJSON a medida que se leen las filas del cursor JDBC,
+     * sin cargar el listado completo en memoria.
+     *
+     * @return Cantidad de slices escritos
+     */
+    @Transactional(readOnly = true)
+    public long streamResumenSlices(SliceFilter filter, OutputStream out) throws IOException {
+        Query query = buildQuery(filter, null);
+        query.setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE);
+        query.setHint(HibernateHints.HINT_READ_ONLY, true);
+
+        long count = 0;
+        try (Stream<Object[]> filas = query.getResultStream();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // El stream de la respuesta lo cierra el contenedor, no el generador
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            Iterator<Object[]> iterator = filas.iterator();
+            while (iterator.hasNext()) {
+                generator.writeObject(mapRow(iterator.next()));
+                generator.writeRaw('\n');
+                count++;
+                if (count % FLUSH_EVERY_ROWS == 0) {
+                    generator.flush();
+                }
+            }
+            generator.flush();
+        }
+
+        log.info("Listado de slices enviado en streaming: {} registros", count);
+        return count;
+    }
+
+    private Query buildQuery(SliceFilter filter, KeysetCursor.Position after) {
+        StringBuilder sql = new StringBuilder("""
+            SELECT s.id, s.name, u.name AS propietario, s.description AS topologia,
+                   SUM(f.vcpus) AS totalVcpu, SUM(f.ram) AS totalRam,
+                   s.status, u.id AS propietarioId
             FROM cloud_v3.slice s
             JOIN cloud_v3.property p ON s.id = p.slice
             JOIN cloud_v3.user u ON p.user = u.id
             JOIN cloud_v3.virtual_machine vm ON vm.slice = s.id
             JOIN cloud_v3.flavor f ON vm.flavor = f.id
-            GROUP BY s.id, u.name, s.name, s.description, s.status
-        """;
-
-        List<Object[]> resultados = entityManager.createNativeQuery(query).getResultList();
+            WHERE 1 = 1
+        """);
+        Map<String, Object> params = new LinkedHashMap<>();
 
-        List<SliceSummaryDTO> lista = new ArrayList<>();
-        for (Object[] fila : resultados) {
-            SliceSummaryDTO dto = new SliceSummaryDTO();
-            dto.setId(String.valueOf(fila[0]));
-            dto.setNombre((String) fila[1]);
-            dto.setPropietario((String) fila[2]);
-            dto.setTopologia((String) fila[3]);
-            dto.setRecursos(fila[4] + " vCPU, " + fila[5] + "GB RAM");
-            dto.setEstado((String) fila[6]);
-            lista.add(dto);
+        if (filter.status != null) {
+            sql.append(" AND s.status = :status");
+            params.put("status", filter.status);
+        }
+        if (filter.ownerId != null) {
+            sql.append(" AND u.id = :ownerId");
+            params.put("ownerId", filter.ownerId);
+        }
+        if (filter.zoneId != null) {
+            sql.append(" AND EXISTS (SELECT 1 FROM cloud_v3.slice_availability_zone saz " +
+                    "WHERE saz.slice = s.id AND saz.availability_zone = :zoneId)");
+            params.put("zoneId", filter.zoneId);
         }
+        if (after != null) {
+            // Sobre las filas base, antes de agrupar: (s.id, u.id) identifica cada fila del resultado
+            if (after.tiebreaker() != null) {
+                sql.append(" AND (s.id > :afterId OR (s.id = :afterId AND u.id > :afterOwnerId))");
+                params.put("afterOwnerId", after.tiebreaker());
+            } else {
+                sql.append(" AND s.id > :afterId");
+            }
+            params.put("afterId", after.id());
+        }
+
+        sql.append(" GROUP BY s.id, u.id, u.name, s.name, s.description, s.status");
+        sql.append(" ORDER BY s.id, u.id");
 
-        return lista;
+        Query query = entityManager.createNativeQuery(sql.toString());
+        params.forEach(query::setParameter);
+        return query;
     }
-}
 
+    /**
+     * Convierte una fila del SELECT nativo en el DTO (la última columna, el ID del propietario, solo se usa
+     * para el cursor). Visible en el paquete para los benchmarks de mapeo.
+     */
+    static SliceSummaryDTO mapRow(Object[] fila) {
+        SliceSummaryDTO dto = new SliceSummaryDTO();
+        dto.setId(String.valueOf(fila[0]));
+        dto.setNombre((String) fila[1]);
+        dto.setPropietario((String) fila[2]);
+        dto.setTopologia((String) fila[3]);
+        dto.setRecursos(fila[4] + " vCPU, " + fila[5] + "GB RAM");
+        dto.setEstado((String) fila[6]);
+        return dto;
+    }
+}
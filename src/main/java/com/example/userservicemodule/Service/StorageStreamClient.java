@@ -0,0 +1,227 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.Util.ContentHash;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.EntityTemplate;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.io.IOCallback;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Cliente para subir archivos al servicio de almacenamiento en streaming.
+ * El contenido se reenvía desde el stream de entrada a la conexión con un único buffer grande,
+ * sin copiarlo a disco, y con el sobre multipart armado alrededor. El SHA-256 del contenido se calcula
+ * durante la misma lectura. La instancia de almacenamiento se elige con {@link ServiceInstanceResolver}
+ * y la conexión se toma del pool del cliente HTTP compartido.
+ */
+@Service
+@Slf4j
+public class StorageStreamClient {
+
+    /**
+     * Tamaño del buffer usado para reenviar el contenido.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    public static final String STORAGE_SERVICE = "STORAGESERVICEMODULE";
+
+    /**
+     * 3 minutos para leer la respuesta una vez enviado el archivo.
+     */
+    private static final RequestConfig UPLOAD_REQUEST_CONFIG = RequestConfig.custom()
+            .setResponseTimeout(Timeout.ofMinutes(3))
+            .build();
+
+    /**
+     * Tipo MIME "tipo/subtipo" con caracteres de token (RFC 7230).
+     */
+    private static final Pattern MIME_TYPE = Pattern.compile("[A-Za-z0-9!#$&^_.+-]+/[A-Za-z0-9!#$&^_.+-]+");
+
+    private final ObjectMapper objectMapper;
+    private final UploadMetrics uploadMetrics;
+    private final ServiceInstanceResolver instanceResolver;
+    private final CloseableHttpClient httpClient;
+
+    public StorageStreamClient(ObjectMapper objectMapper, UploadMetrics uploadMetrics,
+                               ServiceInstanceResolver instanceResolver, CloseableHttpClient httpClient) {
+        this.objectMapper = objectMapper;
+        this.uploadMetrics = uploadMetrics;
+        this.instanceResolver = instanceResolver;
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Error al leer el contenido de origen; no es atribuible a la instancia de almacenamiento.
+     */
+    private static final class SourceReadException extends IOException {
+        SourceReadException(String message) {
+            super(message);
+        }
+
+        SourceReadException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Código y cuerpo de la respuesta del servicio de almacenamiento.
+     */
+    private record StorageResponse(int code, String body) {
+    }
+
+    /**
+     * Sube un archivo al endpoint /api/files del servicio de almacenamiento como parte "file" de un multipart.
+     *
+     * @param filename Nombre original del archivo
+     * @param contentType Tipo de contenido del archivo
+     * @param content Contenido a reenviar (no se cierra)
+     * @param contentLength Tamaño del contenido, o -1 si se desconoce
+     * @return Respuesta del servicio de almacenamiento (savedFilename, fileUrl, ...) más el SHA-256 del
+     *         contenido enviado en "contentHash"
+     * @throws IOException si falla la transferencia o el servicio responde con error
+     */
+    public Map<String, Object> upload(String filename, String contentType,
+                                      InputStream content, long contentLength) throws IOException {
+        Optional<ServiceInstanceResolver.Lease> acquired = instanceResolver.acquire(STORAGE_SERVICE);
+        if (acquired.isEmpty()) {
+            throw new IOException("Servicio de almacenamiento no disponible");
+        }
+        try (ServiceInstanceResolver.Lease lease = acquired.get()) {
+            return upload(lease, filename, contentType, content, contentLength);
+        }
+    }
+
+    private Map<String, Object> upload(ServiceInstanceResolver.Lease lease, String filename, String contentType,
+                                       InputStream content, long contentLength) throws IOException {
+        // Aleatorio: no se puede predecir ni repetir entre subidas, así no aparece dentro del contenido
+        String boundary = "----" + UUID.randomUUID().toString().replace("-", "");
+        // El nombre viene del cliente: ContentDisposition lo codifica, así comillas o CR/LF no rompen la cabecera
+        ContentDisposition disposition = ContentDisposition.formData()
+                .name("file")
+                .filename(filename != null && !filename.isBlank() ? filename : "file", StandardCharsets.UTF_8)
+                .build();
+        byte[] head = ("--" + boundary + "\r\n" +
+                HttpHeaders.CONTENT_DISPOSITION + ": " + disposition + "\r\n" +
+                HttpHeaders.CONTENT_TYPE + ": " + partContentType(contentType) + "\r\n\r\n")
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+
+        UploadMetrics.Tracker tracker = uploadMetrics.start(filename, contentLength);
+        MessageDigest digest = ContentHash.newDigest();
+
+        // Con tamaño conocido no hace falta codificación chunked
+        long entityLength = contentLength >= 0 ? head.length + contentLength + tail.length : -1;
+        HttpPost post = new HttpPost(lease.getBaseUrl() + "/api/files");
+        post.setConfig(UPLOAD_REQUEST_CONFIG);
+        post.setEntity(streamingEntity(
+                entityLength,
+                ContentType.MULTIPART_FORM_DATA.withParameters(new BasicNameValuePair("boundary", boundary)),
+                out -> {
+                    out.write(head);
+                    long copied = copy(content, out, tracker, digest);
+                    if (contentLength >= 0 && copied != contentLength) {
+                        throw new SourceReadException("Se esperaban " + contentLength + " bytes y se recibieron " + copied);
+                    }
+                    out.write(tail);
+                }));
+
+        boolean instanceFault = true;  // hasta que la instancia responda
+        try {
+            // El handler consume la respuesta y devuelve la conexión al pool
+            StorageResponse response = httpClient.execute(post, httpResponse -> new StorageResponse(
+                    httpResponse.getCode(),
+                    httpResponse.getEntity() != null ?
+                            EntityUtils.toString(httpResponse.getEntity(), StandardCharsets.UTF_8) : ""));
+            instanceFault = response.code() >= 500;
+            if (response.code() < 200 || response.code() >= 300) {
+                throw new IOException("Error del servicio de almacenamiento: código " + response.code() + " - " + response.body());
+            }
+
+            Map<String, Object> result = objectMapper.readValue(response.body(), Map.class);
+            result.put("contentHash", ContentHash.toHex(digest));
+            tracker.succeeded();
+            lease.succeeded();
+            log.info("Archivo {} subido al almacenamiento ({}): {} bytes",
+                    filename, lease.getInstanceId(), tracker.getTransferredBytes());
+            return result;
+        } catch (IOException | RuntimeException e) {
+            tracker.failed();
+            if (instanceFault && !(e instanceof SourceReadException)) {
+                lease.failed();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Content-Type de la parte: el del cliente, vuelto a armar desde su tipo MIME y charset si es válido, o
+     * application/octet-stream. Así un valor con CR/LF u otros caracteres no llega a la cabecera.
+     */
+    private static String partContentType(String contentType) {
+        try {
+            ContentType parsed = ContentType.parse(contentType);
+            if (parsed != null && MIME_TYPE.matcher(parsed.getMimeType()).matches()) {
+                return ContentType.create(parsed.getMimeType(), parsed.getCharset()).toString();
+            }
+        } catch (RuntimeException e) {
+            log.debug("Content-Type inválido '{}', se usa application/octet-stream: {}", contentType, e.getMessage());
+        }
+        return ContentType.APPLICATION_OCTET_STREAM.getMimeType();
+    }
+
+    /**
+     * Entidad que escribe el cuerpo directamente en la conexión. EntityTemplate se declara repetible, pero el
+     * contenido de origen se consume al escribirlo: si el cliente intenta reenviarlo (p. ej. al reintentar
+     * ante un 503), la segunda escritura falla en lugar de enviar un cuerpo incompleto.
+     */
+    private static EntityTemplate streamingEntity(long length, ContentType contentType, IOCallback<OutputStream> writer) {
+        AtomicBoolean written = new AtomicBoolean();
+        return new EntityTemplate(length, contentType, null, out -> {
+            if (!written.compareAndSet(false, true)) {
+                throw new SourceReadException("El contenido ya se envió y no puede reenviarse");
+            }
+            writer.execute(out);
+        });
+    }
+
+    private long copy(InputStream in, OutputStream out, UploadMetrics.Tracker tracker, MessageDigest digest) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int read;
+        while ((read = read(in, buffer)) != -1) {
+            out.write(buffer, 0, read);
+            digest.update(buffer, 0, read);
+            total += read;
+            tracker.addBytes(read);
+        }
+        return total;
+    }
+
+    private int read(InputStream in, byte[] buffer) throws SourceReadException {
+        try {
+            return in.read(buffer);
+        } catch (IOException e) {
+            throw new SourceReadException("Error leyendo el contenido a subir: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.userservicemodule.Service;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de subida de imágenes al servicio de almacenamiento: progreso de cada subida en curso
+ * y totales acumulados desde el arranque.
+ */
+@Component
+public class UploadMetrics {
+
+    private final Map<String, Tracker> active = new ConcurrentHashMap<>();
+
+    private final LongAdder completedUploads = new LongAdder();
+    private final LongAdder failedUploads = new LongAdder();
+    private final LongAdder totalBytes = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * Progreso de una subida en curso.
+     */
+    public final class Tracker {
+        private final String id = UUID.randomUUID().toString();
+        private final String filename;
+        private final long expectedBytes;  // -1 si se desconoce
+        private final Instant startedAt = Instant.now();
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong transferredBytes = new AtomicLong();
+
+        private Tracker(String filename, long expectedBytes) {
+            this.filename = filename;
+            this.expectedBytes = expectedBytes;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void addBytes(long bytes) {
+            transferredBytes.addAndGet(bytes);
+        }
+
+        public long getTransferredBytes() {
+            return transferredBytes.get();
+        }
+
+        public void succeeded() {
+            finish();
+            completedUploads.increment();
+        }
+
+        public void failed() {
+            finish();
+            failedUploads.increment();
+        }
+
+        private void finish() {
+            if (active.remove(id) != null) {
+                totalBytes.add(transferredBytes.get());
+                totalNanos.add(System.nanoTime() - startNanos);
+            }
+        }
+
+        Map<String, Object> toMap() {
+            long bytes = transferredBytes.get();
+            long elapsedMs = Math.max(1, Duration.ofNanos(System.nanoTime() - startNanos).toMillis());
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("id", id);
+            map.put("filename", filename);
+            map.put("startedAt", startedAt.toString());
+            map.put("transferredBytes", bytes);
+            map.put("expectedBytes", expectedBytes >= 0 ? expectedBytes : null);
+            map.put("progressPercent", expectedBytes > 0 ? (bytes * 100) / expectedBytes : null);
+            map.put("throughputBytesPerSec", bytes * 1000 / elapsedMs);
+            return map;
+        }
+    }
+
+    /**
+     * Registra el inicio de una subida.
+     *
+     * @param expectedBytes Tamaño esperado, o -1 si se desconoce
+     */
+    public Tracker start(String filename, long expectedBytes) {
+        Tracker tracker = new Tracker(filename, expectedBytes);
+        active.put(tracker.getId(), tracker);
+        return tracker;
+    }
+
+    /**
+     * Subidas en curso y totales acumulados.
+     */
+    public Map<String, Object> snapshot() {
+        List<Map<String, Object>> uploads = new ArrayList<>();
+        for (Tracker tracker : active.values()) {
+            uploads.add(tracker.toMap());
+        }
+        long bytes = totalBytes.sum();
+        long millis = Math.max(1, Duration.ofNanos(totalNanos.sum()).toMillis());
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("activeUploads", uploads.size());
+        metrics.put("completedUploads", completedUploads.sum());
+        metrics.put("failedUploads", failedUploads.sum());
+        metrics.put("totalBytes", bytes);
+        metrics.put("averageThroughputBytesPerSec", bytes * 1000 / millis);
+        metrics.put("uploads", uploads);
+        return metrics;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.DTO.Projections.UserSummaryView;
+import com.example.userservicemodule.Repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Servicio para exportar el listado completo de usuarios escribiendo cada fila directamente en la respuesta.
+ * La lectura se hace sobre un stream JDBC con fetch size acotado, por lo que la memoria usada
+ * no depende de la cantidad de usuarios.
+ */
+@Service
+@Slf4j
+public class UserExportService {
+
+    /**
+     * Cada cuántas filas se fuerza el envío de lo escrito al cliente.
+     */
+    private static final int FLUSH_EVERY_ROWS = 500;
+
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+
+    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+    public UserExportService(UserRepository userRepository, ObjectMapper objectMapper) {
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Formato de salida de la exportación.
+     */
+    public enum Format {
+        NDJSON(MediaType.APPLICATION_NDJSON),
+        JSON(MediaType.APPLICATION_JSON);
+
+        private final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public static Format from(String value) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Formato de exportación no soportado: " + value + ". Use ndjson o json");
+        }
+    }
+
+    /**
+     * Campos incluidos por fila: vista completa de administrador o vista básica de usuario regular.
+     */
+    public enum View {
+        ADMIN,
+        BASIC
+    }
+
+    /**
+     * Escribe todos los usuarios en el stream de salida.
+     *
+     * @param out Stream de la respuesta HTTP
+     * @param format NDJSON (un objeto por línea) o arreglo JSON
+     * @param view Campos a incluir
+     * @return Cantidad de usuarios escritos
+     */
+    @Transactional(readOnly = true)
+    public long exportUsers(OutputStream out, Format format, View view) throws IOException {
+        long count = 0;
+        try (Stream<UserSummaryView> users = userRepository.streamAllSummaries();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // El stream de la respuesta lo cierra el contenedor, no el generador
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            if (format == Format.JSON) {
+                generator.writeStartArray();
+            }
+
+            Iterator<UserSummaryView> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                writeUser(generator, iterator.next(), view);
+                if (format == Format.NDJSON) {
+                    generator.writeRaw('\n');
+                }
+                count++;
+                if (count % FLUSH_EVERY_ROWS == 0) {
+                    generator.flush();
+                }
+            }
+
+            if (format == Format.JSON) {
+                generator.writeEndArray();
+            }
+            generator.flush();
+        }
+
+        log.info("Exportación de usuarios completada: {} registros ({}, vista {})", count, format, view);
+        return count;
+    }
+
+    private void writeUser(JsonGenerator generator, UserSummaryView user, View view) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectField("id", user.getId());
+        generator.writeStringField("name", user.getName());
+        generator.writeStringField("lastname", user.getLastname());
+        if (view == View.ADMIN) {
+            generator.writeStringField("username", user.getUsername());
+        }
+        generator.writeStringField("role", user.getRole());
+        if (view == View.ADMIN) {
+            generator.writeStringField("code", user.getCode());
+            generator.writeStringField("state", user.getState());
+            generator.writeStringField("createdAt",
+                    user.getCreatedAt() != null ? user.getCreatedAt().format(formatter) : null);
+            generator.writeStringField("lastLogin",
+                    user.getLastLogin() != null ? user.getLastLogin().format(formatter) : null);
+        }
+        generator.writeEndObject();
+    }
+}
@@ -2,20 +2,16 @@ package com.example.userservicemodule.Service;
 
 import com.example.userservicemodule.DTO.PasswordResetResult;
 import com.example.userservicemodule.DTO.TokenVerificationResult;
-import com.example.userservicemodule.Entity.PasswordResetToken;
 import com.example.userservicemodule.Entity.User;
-import com.example.userservicemodule.Repository.PasswordTokenRepository;
 import com.example.userservicemodule.Repository.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.NoSuchElementException;
 import java.util.Optional;
-import java.util.UUID;
 
 /**
  * Servicio para operaciones relacionadas con contraseñas de usuarios.
@@ -28,89 +24,61 @@ public class UserPasswordService {
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordTokenRepository passwordTokenRepository;
+    private PasswordTokenStore passwordTokenStore;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
 
-    /**
-     * Tiempo de expiración del token de restablecimiento (en horas)
-     */
-    private static final int TOKEN_EXPIRATION_HOURS = 24;
-
-    /**
-     * Verifica si existe un usuario con el email proporcionado.
-     *
-     * @param email Email a verificar
-     * @return true si el email corresponde a un usuario, false en caso contrario
-     */
-    public boolean isValidUserEmail(String email) {
-        return userRepository.findByUsername(email).isPresent();
-    }
+    @Autowired
+    private EmailOutboxService emailOutboxService;
 
     /**
-     * Obtiene el nombre de usuario por su email (que puede ser el mismo que el email).
-     *
-     * @param email Email del usuario
-     * @return El nombre del usuario o null si no se encuentra
+     * Nombre completo del usuario o, si no lo tiene, su username.
      */
-    public String getUsernameByEmail(String email) {
-        Optional<User> user = userRepository.findByUsername(email);
-        return user.map(u -> {
-            // Intentar obtener nombre completo
-            StringBuilder fullName = new StringBuilder();
-            if (u.getName() != null && !u.getName().isEmpty()) {
-                fullName.append(u.getName());
-            }
-            if (u.getLastname() != null && !u.getLastname().isEmpty()) {
-                if (fullName.length() > 0) {
-                    fullName.append(" ");
-                }
-                fullName.append(u.getLastname());
+    private static String displayName(User u) {
+        // Intentar obtener nombre completo
+        StringBuilder fullName = new StringBuilder();
+        if (u.getName() != null && !u.getName().isEmpty()) {
+            fullName.append(u.getName());
+        }
+        if (u.getLastname() != null && !u.getLastname().isEmpty()) {
+            if (fullName.length() > 0) {
+                fullName.append(" ");
             }
+            fullName.append(u.getLastname());
+        }
 
-            // Si no hay nombre completo, usar el username
-            if (fullName.length() == 0) {
-                return u.getUsername();
-            }
+        // Si no hay nombre completo, usar el username
+        if (fullName.length() == 0) {
+            return u.getUsername();
+        }
 
-            return fullName.toString();
-        }).orElse(null);
+        return fullName.toString();
     }
 
     /**
-     * Genera un token de restablecimiento de contraseña para el usuario.
+     * Encola el correo de restablecimiento si el email corresponde a un usuario, consultando al usuario una sola vez.
+     * El token se genera cuando el despachador envía el correo, así no queda guardado en el outbox.
      *
      * @param email Email del usuario
-     * @return Token generado
+     * @param redirectUrl URL de la página de restablecimiento a la que se agrega el token
+     * @return true si se encoló el correo, false si el email no está registrado
      */
     @Transactional
-    public String generateResetToken(String email) {
-        log.info("Generando token de restablecimiento para: {}", email);
-
-        // Buscar al usuario por email
-        User user = userRepository.findByUsername(email)
-                .orElseThrow(() -> new NoSuchElementException("Usuario no encontrado: " + email));
-
-        // Generar token aleatorio
-        String token = UUID.randomUUID().toString();
+    public boolean requestResetToken(String email, String redirectUrl) {
+        log.info("Solicitud de restablecimiento para: {}", email);
 
-        // Calcular fecha de expiración
-        LocalDateTime expirationDate = LocalDateTime.now().plusHours(TOKEN_EXPIRATION_HOURS);
-
-        // Eliminar tokens anteriores para este usuario
-        passwordTokenRepository.deleteByUserId(user.getId());
+        Optional<User> user = userRepository.findByUsername(email);
+        if (user.isEmpty()) {
+            return false;
+        }
+        User u = user.get();
 
-        // Crear y guardar el nuevo token
-        PasswordResetToken passwordToken = new PasswordResetToken();
-        passwordToken.setToken(token);
-        passwordToken.setUser(user);
-        passwordToken.setExpiryDate(expirationDate);
-        passwordToken.setCreatedAt(LocalDateTime.now());
-        passwordTokenRepository.save(passwordToken);
+        // El despachador del outbox genera el token y envía el correo en segundo plano
+        emailOutboxService.enqueuePasswordReset(u.getUsername(), u.getId(), redirectUrl, displayName(u));
 
-        log.info("Token generado correctamente para: {}", email);
-        return token;
+        log.info("Correo de restablecimiento encolado para: {}", email);
+        return true;
     }
 
     /**
@@ -122,23 +90,21 @@ public class UserPasswordService {
     public Optional<TokenVerificationResult> verifyResetToken(String token) {
         log.info("Verificando token de restablecimiento");
 
-        Optional<PasswordResetToken> passwordToken = passwordTokenRepository.findByToken(token);
+        Optional<PasswordTokenStore.StoredToken> passwordToken = passwordTokenStore.find(token);
 
         if (passwordToken.isPresent()) {
-            PasswordResetToken resetToken = passwordToken.get();
+            PasswordTokenStore.StoredToken resetToken = passwordToken.get();
 
             // Verificar si el token ha expirado
-            if (resetToken.getExpiryDate().isBefore(LocalDateTime.now())) {
+            if (resetToken.isExpired(LocalDateTime.now())) {
                 log.info("Token expirado");
                 return Optional.empty();
             }
 
-            User user = resetToken.getUser();
-
             TokenVerificationResult result = new TokenVerificationResult();
-            result.setUserId(user.getId());
-            result.setEmail(user.getUsername());
-            result.setExpiresAt(resetToken.getExpiryDate());
+            result.setUserId(resetToken.userId());
+            result.setEmail(resetToken.email());
+            result.setExpiresAt(resetToken.expiresAt());
 
             return Optional.of(result);
         }
@@ -158,36 +124,43 @@ public class UserPasswordService {
     public PasswordResetResult resetPassword(String token, String newPassword) {
         log.info("Procesando restablecimiento de contraseña con token");
 
-        Optional<PasswordResetToken> passwordToken = passwordTokenRepository.findByToken(token);
+        Optional<PasswordTokenStore.StoredToken> passwordToken = passwordTokenStore.find(token);
 
         if (passwordToken.isEmpty()) {
             log.info("Token no encontrado");
             return PasswordResetResult.error("Token inválido o expirado");
         }
 
-        PasswordResetToken resetToken = passwordToken.get();
+        PasswordTokenStore.StoredToken resetToken = passwordToken.get();
 
         // Verificar si el token ha expirado
-        if (resetToken.getExpiryDate().isBefore(LocalDateTime.now())) {
+        if (resetToken.isExpired(LocalDateTime.now())) {
             log.info("Token expirado");
             return PasswordResetResult.error("El token ha expirado");
         }
 
+        // Consumir el token en la BD; si otra petición (u otra instancia) ya lo usó, no se continúa
+        if (!passwordTokenStore.consume(token, resetToken)) {
+            log.info("Token ya utilizado");
+            return PasswordResetResult.error("Token inválido o expirado");
+        }
+
         // Obtener usuario
-        User user = resetToken.getUser();
+        User user = userRepository.findById(resetToken.userId())
+                .orElseThrow(() -> new NoSuchElementException("Usuario no encontrado con ID: " + resetToken.userId()));
 
         // Actualizar contraseña
-        user.setPassword(passwordEncoder.encode(newPassword));
+        user.setPassword(passwordHashingService.encode(newPassword));
         userRepository.save(user);
 
-        // Eliminar el token utilizado
-        passwordTokenRepository.delete(resetToken);
-
         log.info("Contraseña restablecida correctamente para el usuario: {}", user.getUsername());
 
         // Construir resultado con información del usuario
         String username = user.getName() != null ? user.getName() : user.getUsername();
 
+        // Notificar el cambio por correo (se envía en segundo plano)
+        emailOutboxService.enqueuePasswordChanged(user.getUsername(), username);
+
         return PasswordResetResult.success(user.getUsername(), username);
     }
 }
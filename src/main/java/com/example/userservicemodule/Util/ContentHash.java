@@ -0,0 +1,54 @@
+package com.example.userservicemodule.Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Digest SHA-256 del contenido de los archivos de imagen, en hexadecimal (64 caracteres).
+ */
+public final class ContentHash {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private ContentHash() {
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    public static String toHex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Lee el stream completo (sin cerrarlo) y devuelve su digest.
+     */
+    public static String of(InputStream content) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return toHex(digest);
+    }
+
+    /**
+     * Normaliza un digest recibido del cliente; devuelve null si no es un SHA-256 hexadecimal.
+     */
+    public static String normalize(String hex) {
+        if (hex == null) {
+            return null;
+        }
+        String value = hex.trim().toLowerCase();
+        return value.matches("[0-9a-f]{64}") ? value : null;
+    }
+}
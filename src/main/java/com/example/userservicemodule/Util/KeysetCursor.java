@@ -0,0 +1,75 @@
+package com.example.userservicemodule.Util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Codifica y decodifica cursores opacos para paginación por keyset.
+ * El cursor encapsula el último ID entregado; el cliente solo debe reenviarlo tal cual.
+ */
+public final class KeysetCursor {
+
+    private static final String PREFIX = "id:";
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(Integer lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor Cursor recibido del cliente
+     * @return Último ID entregado en la página anterior
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    public static Integer decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith(PREFIX)) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            return Integer.valueOf(raw.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException también es IllegalArgumentException
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+    }
+
+    /**
+     * Posición compuesta para listados donde el ID no es único por fila (p. ej. un slice con varios
+     * propietarios): el desempate distingue las filas con el mismo ID.
+     *
+     * @param id Último ID entregado
+     * @param tiebreaker Desempate de la última fila, o null si ya se entregaron todas las filas de ese ID
+     */
+    public record Position(Integer id, Integer tiebreaker) {
+    }
+
+    public static String encode(Position position) {
+        String raw = PREFIX + position.id() + (position.tiebreaker() != null ? ":" + position.tiebreaker() : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Acepta también cursores de un solo ID; en ese caso el desempate es null.
+     *
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    public static Position decodePosition(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith(PREFIX)) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            String[] parts = raw.substring(PREFIX.length()).split(":", -1);
+            if (parts.length > 2) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            return new Position(Integer.valueOf(parts[0]), parts.length == 2 ? Integer.valueOf(parts[1]) : null);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+    }
+}
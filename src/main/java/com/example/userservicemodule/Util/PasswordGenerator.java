@@ -0,0 +1,53 @@
+package com.example.userservicemodule.Util;
+
+import java.security.SecureRandom;
+
+/**
+ * Contraseñas temporales aleatorias para los usuarios que se crean sin contraseña.
+ */
+public final class PasswordGenerator {
+
+    private static final String UPPER_CASE = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String LOWER_CASE = "abcdefghijklmnopqrstuvwxyz";
+    private static final String NUMBERS = "0123456789";
+    private static final String SPECIAL_CHARS = "!@#$%^&*()_-+=<>?";
+    private static final String ALL_CHARS = UPPER_CASE + LOWER_CASE + NUMBERS + SPECIAL_CHARS;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private PasswordGenerator() {
+    }
+
+    /**
+     * Genera una contraseña aleatoria segura con al menos una mayúscula, una minúscula, un número y un
+     * carácter especial.
+     *
+     * @param length Longitud de la contraseña
+     * @return Contraseña generada
+     */
+    public static String generate(int length) {
+        StringBuilder password = new StringBuilder(length);
+
+        // Asegurar al menos un carácter de cada tipo
+        password.append(UPPER_CASE.charAt(RANDOM.nextInt(UPPER_CASE.length())));
+        password.append(LOWER_CASE.charAt(RANDOM.nextInt(LOWER_CASE.length())));
+        password.append(NUMBERS.charAt(RANDOM.nextInt(NUMBERS.length())));
+        password.append(SPECIAL_CHARS.charAt(RANDOM.nextInt(SPECIAL_CHARS.length())));
+
+        // Completar el resto de la contraseña
+        for (int i = 4; i < length; i++) {
+            password.append(ALL_CHARS.charAt(RANDOM.nextInt(ALL_CHARS.length())));
+        }
+
+        // Mezclar los caracteres
+        char[] passwordArray = password.toString().toCharArray();
+        for (int i = 0; i < passwordArray.length; i++) {
+            int j = RANDOM.nextInt(passwordArray.length);
+            char temp = passwordArray[i];
+            passwordArray[i] = passwordArray[j];
+            passwordArray[j] = temp;
+        }
+
+        return new String(passwordArray);
+    }
+}
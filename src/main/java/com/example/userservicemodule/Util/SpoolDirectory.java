@@ -0,0 +1,49 @@
+package com.example.userservicemodule.Util;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Utilidades para los directorios temporales donde se dejan archivos mientras se procesan.
+ */
+public final class SpoolDirectory {
+
+    private SpoolDirectory() {
+    }
+
+    /**
+     * Elimina todo el contenido del directorio (archivos y subdirectorios), sin borrar el directorio.
+     * Pensado para el arranque: lo que quedó de una ejecución anterior ya no pertenece a ningún trabajo.
+     *
+     * @return Cantidad de entradas de primer nivel eliminadas
+     */
+    public static int purge(Path dir) throws IOException {
+        int deleted = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                deleteRecursively(entry);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Elimina un archivo, o un directorio con todo su contenido. No falla si no existe.
+     */
+    public static void deleteRecursively(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            Files.deleteIfExists(path);
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            for (Path child : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(child);
+            }
+        }
+    }
+}
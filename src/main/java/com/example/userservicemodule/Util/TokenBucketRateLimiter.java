@@ -0,0 +1,56 @@
+package com.example.userservicemodule.Util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket por clave, sin bloqueos. Cada balde guarda un único instante (el momento en que volvería a
+ * estar lleno, como en GCRA) y se actualiza con CAS: se admiten ráfagas de hasta {@code capacity} y luego
+ * una petición cada {@code refillInterval}.
+ */
+public final class TokenBucketRateLimiter {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    public TokenBucketRateLimiter(int capacity, long refillInterval, TimeUnit unit) {
+        this.intervalNanos = unit.toNanos(refillInterval);
+        this.burstNanos = intervalNanos * capacity;
+    }
+
+    /**
+     * Intenta consumir un token del balde de la clave.
+     *
+     * @return 0 si se admitió, o los nanosegundos que faltan para el próximo token
+     */
+    public long tryAcquire(String key) {
+        AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime()));
+        while (true) {
+            long now = System.nanoTime();
+            long fullAt = bucket.get();
+            long next = (fullAt - now > 0 ? fullAt : now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Descarta los baldes que ya se rellenaron por completo (equivalen a uno nuevo).
+     *
+     * @return Cantidad de baldes descartados
+     */
+    public int evictFull() {
+        long now = System.nanoTime();
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+        return before - buckets.size();
+    }
+}
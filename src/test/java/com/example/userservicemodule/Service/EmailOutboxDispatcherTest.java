@@ -0,0 +1,200 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.Entity.EmailOutbox;
+import com.example.userservicemodule.Entity.Role;
+import com.example.userservicemodule.Entity.User;
+import com.example.userservicemodule.Repository.EmailOutboxRepository;
+import com.example.userservicemodule.Repository.PasswordTokenRepository;
+import com.example.userservicemodule.Repository.RoleRepository;
+import com.example.userservicemodule.Repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * El despachador del outbox contra un servicio de correo simulado que falla un número configurable de veces.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:outbox;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+        "spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+        "email.outbox.backoff-base-ms=0",
+        "email.outbox.max-attempts=3"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EmailOutboxDispatcherTest {
+
+    @Configuration
+    @EntityScan("com.example.userservicemodule.Entity")
+    @EnableJpaRepositories("com.example.userservicemodule.Repository")
+    @Import({EmailOutboxService.class, EmailOutboxDispatcher.class, PasswordTokenStore.class})
+    static class TestConfig {
+        @Bean
+        StubEmailServiceClient emailServiceClient() {
+            return new StubEmailServiceClient();
+        }
+    }
+
+    /**
+     * Servicio de correo local: falla las primeras {@code failures} llamadas y registra los envíos exitosos.
+     */
+    static class StubEmailServiceClient implements EmailServiceClient {
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+        final List<String> delivered = new CopyOnWriteArrayList<>();
+        final List<String> resetLinks = new CopyOnWriteArrayList<>();
+
+        @Override
+        public ResponseEntity<Map<String, Object>> sendPasswordResetEmail(String to, String resetLink, String username) {
+            resetLinks.add(resetLink);
+            return respond(to + " " + resetLink);
+        }
+
+        @Override
+        public ResponseEntity<Map<String, Object>> sendPasswordChangedNotification(String to, String username) {
+            return respond(to);
+        }
+
+        private ResponseEntity<Map<String, Object>> respond(String delivery) {
+            calls.incrementAndGet();
+            if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+            delivered.add(delivery);
+            return ResponseEntity.ok(Map.of("status", "sent"));
+        }
+    }
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    private EmailOutboxDispatcher emailOutboxDispatcher;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private StubEmailServiceClient emailServiceClient;
+
+    @Autowired
+    private PasswordTokenStore passwordTokenStore;
+
+    @Autowired
+    private PasswordTokenRepository passwordTokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    private Integer userId;
+
+    @BeforeEach
+    void setUp() {
+        emailOutboxRepository.deleteAll();
+        passwordTokenRepository.deleteAll();
+        userRepository.deleteAll();
+        roleRepository.deleteAll();
+        emailServiceClient.failures.set(0);
+        emailServiceClient.calls.set(0);
+        emailServiceClient.delivered.clear();
+        emailServiceClient.resetLinks.clear();
+
+        Role role = new Role();
+        role.setName("USER");
+        role = roleRepository.save(role);
+
+        User user = new User();
+        user.setUsername("a@pucp.edu.pe");
+        user.setPassword("x");
+        user.setCode("20200002");
+        user.setRole(role);
+        user.setState("1");
+        user.setName("A");
+        user.setLastname("Test");
+        user.setCreatedAt(LocalDateTime.now());
+        userId = userRepository.save(user).getId();
+    }
+
+    @Test
+    void retriesUntilTheEmailServiceAccepts() {
+        emailServiceClient.failures.set(1);
+        Integer id = emailOutboxService.enqueuePasswordReset("a@pucp.edu.pe", userId, "http://reset", "A").getId();
+
+        assertEquals(0, emailOutboxDispatcher.dispatch());
+        EmailOutbox afterFailure = emailOutboxRepository.findById(id).orElseThrow();
+        assertEquals(EmailOutbox.Status.PENDING, afterFailure.getStatus());
+        assertEquals(1, afterFailure.getAttempts());
+        assertNotNull(afterFailure.getLastError());
+
+        assertEquals(1, emailOutboxDispatcher.dispatch());
+        EmailOutbox sent = emailOutboxRepository.findById(id).orElseThrow();
+        assertEquals(EmailOutbox.Status.SENT, sent.getStatus());
+        assertEquals(1, emailServiceClient.delivered.size());
+        assertTrue(emailServiceClient.delivered.get(0).startsWith("a@pucp.edu.pe http://reset?token="));
+
+        // Cada intento genera un token nuevo: solo el del enlace enviado sigue siendo válido
+        assertEquals(2, emailServiceClient.resetLinks.size());
+        assertTrue(passwordTokenStore.find(token(emailServiceClient.resetLinks.get(0))).isEmpty());
+        assertEquals(userId, passwordTokenStore.find(token(emailServiceClient.resetLinks.get(1))).orElseThrow().userId());
+
+        // Ya enviado: no se vuelve a enviar
+        assertEquals(0, emailOutboxDispatcher.dispatch());
+        assertEquals(2, emailServiceClient.calls.get());
+    }
+
+    @Test
+    void discardsResetEmailsForMissingUsers() {
+        Integer id = emailOutboxService.enqueuePasswordReset("x@pucp.edu.pe", -1, "http://reset", "X").getId();
+
+        assertEquals(0, emailOutboxDispatcher.dispatch());
+
+        EmailOutbox failed = emailOutboxRepository.findById(id).orElseThrow();
+        assertEquals(EmailOutbox.Status.FAILED, failed.getStatus());
+        assertEquals(0, emailServiceClient.calls.get());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        emailServiceClient.failures.set(Integer.MAX_VALUE);
+        Integer id = emailOutboxService.enqueuePasswordChanged("b@pucp.edu.pe", "B").getId();
+
+        for (int i = 0; i < 5; i++) {
+            emailOutboxDispatcher.dispatch();
+        }
+
+        EmailOutbox failed = emailOutboxRepository.findById(id).orElseThrow();
+        assertEquals(EmailOutbox.Status.FAILED, failed.getStatus());
+        assertEquals(3, failed.getAttempts());
+        assertEquals(3, emailServiceClient.calls.get());
+    }
+
+    private static String token(String resetLink) {
+        return resetLink.substring(resetLink.indexOf("?token=") + "?token=".length());
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.Entity.Role;
+import com.example.userservicemodule.Entity.User;
+import com.example.userservicemodule.Repository.PasswordTokenRepository;
+import com.example.userservicemodule.Repository.RoleRepository;
+import com.example.userservicemodule.Repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Caché con expiración y barrido por tramos de {@link PasswordTokenStore}.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:tokens;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+        "spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+        "password.reset-token.cache-ttl-seconds=60",
+        "password.reset-token.sweep-chunk-size=2"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PasswordTokenStoreTest {
+
+    @Configuration
+    @EntityScan("com.example.userservicemodule.Entity")
+    @EnableJpaRepositories("com.example.userservicemodule.Repository")
+    @Import(PasswordTokenStore.class)
+    static class TestConfig {
+    }
+
+    @Autowired
+    private PasswordTokenStore passwordTokenStore;
+
+    @Autowired
+    private PasswordTokenRepository passwordTokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    private Role role;
+
+    @BeforeEach
+    void setUp() {
+        passwordTokenRepository.deleteAll();
+        userRepository.deleteAll();
+        roleRepository.deleteAll();
+
+        role = new Role();
+        role.setName("USER");
+        role = roleRepository.save(role);
+    }
+
+    @Test
+    void storesOnlyTheHash() {
+        String token = passwordTokenStore.issue(newUser(1));
+
+        String stored = passwordTokenRepository.findAll().get(0).getToken();
+        assertNotEquals(token, stored);
+        assertEquals(64, stored.length());
+    }
+
+    @Test
+    void rejectsTheStoredHashAsAToken() {
+        PasswordTokenStore noCache = new PasswordTokenStore(passwordTokenRepository, 24, 0, 10000, 2);
+        noCache.issue(newUser(1));
+
+        String stored = passwordTokenRepository.findAll().get(0).getToken();
+        assertTrue(noCache.find(stored).isEmpty());
+    }
+
+    @Test
+    void answersFromTheCacheWithinTheTtl() {
+        User user = newUser(1);
+        String token = passwordTokenStore.issue(user);
+
+        // Se borra la fila sin pasar por el store: la verificación sale de la caché
+        passwordTokenRepository.deleteAll();
+
+        assertEquals(user.getId(), passwordTokenStore.find(token).orElseThrow().userId());
+    }
+
+    @Test
+    void goesBackToTheDatabaseOnceTheCacheEntryExpires() {
+        PasswordTokenStore noCache = new PasswordTokenStore(passwordTokenRepository, 24, 0, 10000, 2);
+        String token = noCache.issue(newUser(1));
+
+        passwordTokenRepository.deleteAll();
+
+        assertTrue(noCache.find(token).isEmpty());
+    }
+
+    @Test
+    void sweepsExpiredTokensInChunksAndKeepsValidOnes() {
+        LocalDateTime past = LocalDateTime.now().minusHours(1);
+        for (int i = 1; i <= 5; i++) {
+            passwordTokenStore.save(newUser(i), "expired-" + i, past);
+        }
+        User valid = newUser(6);
+        String validToken = passwordTokenStore.issue(valid);
+
+        // Cinco expirados con tramos de dos: tres sentencias DELETE ... LIMIT 2
+        assertEquals(5, passwordTokenStore.sweepExpired());
+
+        assertEquals(1, passwordTokenRepository.count());
+        assertTrue(passwordTokenStore.find("expired-1").isEmpty());
+        assertEquals(valid.getId(), passwordTokenStore.find(validToken).orElseThrow().userId());
+        assertEquals(0, passwordTokenStore.sweepExpired());
+    }
+
+    private User newUser(int n) {
+        User user = new User();
+        user.setUsername("token" + n + "@pucp.edu.pe");
+        user.setPassword("x");
+        user.setCode("2020100" + n);
+        user.setRole(role);
+        user.setState("1");
+        user.setName("Token");
+        user.setLastname("Test " + n);
+        user.setCreatedAt(LocalDateTime.now());
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.userservicemodule.Service;
+
+import com.example.userservicemodule.BeansRequest.ResourceRequirementRequest;
+import com.example.userservicemodule.DTO.QuotaReservation;
+import com.example.userservicemodule.Entity.Resource;
+import com.example.userservicemodule.Entity.Role;
+import com.example.userservicemodule.Entity.User;
+import com.example.userservicemodule.Repository.QuotaHoldRepository;
+import com.example.userservicemodule.Repository.ResourceRepository;
+import com.example.userservicemodule.Repository.RoleRepository;
+import com.example.userservicemodule.Repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Prueba de estrés: muchos hilos reservan cuota del mismo usuario a la vez.
+ * Ninguna actualización debe perderse y el uso nunca debe superar la cuota.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:quota;MODE=MySQL;LOCK_TIMEOUT=30000;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+        "spring.jpa.properties.hibernate.globally_quoted_identifiers=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class QuotaReservationServiceConcurrencyTest {
+
+    private static final int CPU_QUOTA = 100;
+    private static final int THREADS = 32;
+    private static final int ATTEMPTS_PER_THREAD = 50;
+
+    @Configuration
+    @EntityScan("com.example.userservicemodule.Entity")
+    @EnableJpaRepositories("com.example.userservicemodule.Repository")
+    @Import(QuotaReservationService.class)
+    static class TestConfig {
+    }
+
+    @Autowired
+    private QuotaReservationService quotaReservationService;
+
+    @Autowired
+    private ResourceRepository resourceRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private QuotaHoldRepository quotaHoldRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    private Integer userId;
+
+    @BeforeEach
+    void setUp() {
+        quotaHoldRepository.deleteAll();
+        resourceRepository.deleteAll();
+        userRepository.deleteAll();
+        roleRepository.deleteAll();
+
+        Role role = new Role();
+        role.setName("USER");
+        role = roleRepository.save(role);
+
+        User user = new User();
+        user.setUsername("stress@pucp.edu.pe");
+        user.setPassword("x");
+        user.setCode("20200001");
+        user.setRole(role);
+        user.setState("1");
+        user.setName("Stress");
+        user.setLastname("Test");
+        user.setCreatedAt(LocalDateTime.now());
+        user = userRepository.save(user);
+        userId = user.getId();
+
+        Resource resource = new Resource();
+        resource.setUser(user);
+        resource.setCpu(CPU_QUOTA);
+        resource.setRam(CPU_QUOTA * 1024);
+        resource.setDisk(new BigDecimal("1000.00"));
+        resource.setSlices(CPU_QUOTA);
+        resource.setUsedCpu(0);
+        resource.setUsedRam(0);
+        resource.setUsedDisk(BigDecimal.ZERO);
+        resource.setUsedSlices(0);
+        resourceRepository.save(resource);
+    }
+
+    @Test
+    void concurrentReservationsNeverExceedQuota() throws Exception {
+        ResourceRequirementRequest oneCpu = new ResourceRequirementRequest();
+        oneCpu.setCpu(1);
+        oneCpu.setRam(1024);
+        oneCpu.setDisk(new BigDecimal("1.50"));
+        oneCpu.setSlices(1);
+
+        ConcurrentLinkedQueue<QuotaReservation> reserved = new ConcurrentLinkedQueue<>();
+        AtomicInteger rejected = new AtomicInteger();
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                        QuotaReservationService.ReservationOutcome outcome = quotaReservationService.reserve(userId, oneCpu);
+                        if (outcome.getStatus() == QuotaReservationService.ReservationStatus.RESERVED) {
+                            reserved.add(outcome.getReservation());
+                        } else {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(2, TimeUnit.MINUTES), "Las reservas no terminaron a tiempo");
+        pool.shutdown();
+
+        assertTrue(errors.isEmpty(), () -> "Errores durante las reservas: " + errors);
+        assertEquals(CPU_QUOTA, reserved.size());
+        assertEquals(THREADS * ATTEMPTS_PER_THREAD - CPU_QUOTA, rejected.get());
+
+        Resource afterReserve = resourceRepository.findByUserId(userId).orElseThrow();
+        assertEquals(CPU_QUOTA, afterReserve.getUsedCpu());
+        assertEquals(CPU_QUOTA * 1024, afterReserve.getUsedRam());
+        assertEquals(0, new BigDecimal("150.00").compareTo(afterReserve.getUsedDisk()));
+        assertEquals(CPU_QUOTA, afterReserve.getUsedSlices());
+
+        // Liberar la mitad y confirmar la otra mitad, también de forma concurrente
+        List<QuotaReservation> all = List.copyOf(reserved);
+        ExecutorService finisher = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < all.size(); i++) {
+            QuotaReservation reservation = all.get(i);
+            boolean release = i % 2 == 0;
+            finisher.execute(() -> {
+                try {
+                    boolean found = release
+                            ? quotaReservationService.release(reservation.getId()).isPresent()
+                            : quotaReservationService.commit(reservation.getId()).isPresent();
+                    if (!found) {
+                        errors.add(new AssertionError("Reserva " + reservation.getId() + " no encontrada"));
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+        }
+        finisher.shutdown();
+        assertTrue(finisher.awaitTermination(2, TimeUnit.MINUTES));
+        assertTrue(errors.isEmpty(), () -> "Errores al confirmar o liberar: " + errors);
+
+        Resource afterRelease = resourceRepository.findByUserId(userId).orElseThrow();
+        assertEquals(CPU_QUOTA / 2, afterRelease.getUsedCpu());
+        assertEquals(CPU_QUOTA / 2, afterRelease.getUsedSlices());
+        assertEquals(0, quotaReservationService.getPendingReservations());
+    }
+}